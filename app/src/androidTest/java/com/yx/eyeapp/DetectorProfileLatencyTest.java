@@ -0,0 +1,102 @@
+package com.yx.eyeapp;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.yx.eyeapp.model.FrameMetadata;
+import com.yx.eyeapp.util.DetectorProfile;
+import com.yx.eyeapp.util.FaceProcessor;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * 在录制的帧上比较各个DetectorProfile的检测耗时。
+ *
+ * 帧是放在应用外部存储frames目录下的NV21原始数据，文件名为“宽x高_旋转角度_序号.nv21”，例如：
+ * adb push 640x480_270_0001.nv21 /sdcard/Android/data/com.yx.eyeapp/files/frames/
+ * 没有录制的帧时跳过。结果以“DetectorLatency”为标签输出到logcat。
+ */
+@RunWith(AndroidJUnit4.class)
+public class DetectorProfileLatencyTest {
+    private static final String TAG = "DetectorLatency";
+    private static final Pattern FRAME_NAME = Pattern.compile("(\\d+)x(\\d+)_(\\d+)_.*\\.nv21");
+    private static final int WARM_UP_FRAMES = 3;
+    private static final int ROUNDS = 3;
+
+    private final List<ByteBuffer> frames = new ArrayList<>();
+    private final List<FrameMetadata> metadata = new ArrayList<>();
+
+    @Before
+    public void loadFrames() throws IOException {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        File dir = context.getExternalFilesDir("frames");
+        File[] files = dir != null ? dir.listFiles() : null;
+        if (files == null) return;
+        Arrays.sort(files);
+        for (File file : files) {
+            Matcher matcher = FRAME_NAME.matcher(file.getName());
+            if (!matcher.matches()) continue;
+            int width = Integer.parseInt(matcher.group(1));
+            int height = Integer.parseInt(matcher.group(2));
+            int rotation = Integer.parseInt(matcher.group(3));
+            ByteBuffer data = ByteBuffer.allocateDirect((int) file.length());
+            try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+                in.getChannel().read(data);
+            }
+            data.flip();
+            frames.add(data);
+            metadata.add(new FrameMetadata(width, height, rotation));
+        }
+    }
+
+    @Test
+    public void compareProfiles() throws Exception {
+        assumeTrue("no recorded frames", !frames.isEmpty());
+        for (DetectorProfile profile : DetectorProfile.values()) {
+            FaceProcessor processor = new FaceProcessor(profile);
+            try {
+                for (int i = 0; i < WARM_UP_FRAMES; i++) {
+                    processor.detect(frames.get(i % frames.size()), metadata.get(i % frames.size()));
+                }
+                long[] nanos = new long[frames.size() * ROUNDS];
+                int detected = 0;
+                for (int round = 0; round < ROUNDS; round++) {
+                    for (int i = 0; i < frames.size(); i++) {
+                        long start = System.nanoTime();
+                        int faces = processor.detect(frames.get(i), metadata.get(i)).size();
+                        nanos[round * frames.size() + i] = System.nanoTime() - start;
+                        if (faces > 0) detected++;
+                    }
+                }
+                Arrays.sort(nanos);
+                long sum = 0;
+                for (long n : nanos) sum += n;
+                Log.i(TAG, profile
+                        + ": frames=" + nanos.length
+                        + ", detected=" + detected
+                        + ", mean=" + sum / nanos.length / 1000 + "us"
+                        + ", p50=" + nanos[nanos.length / 2] / 1000 + "us"
+                        + ", p90=" + nanos[nanos.length * 9 / 10] / 1000 + "us");
+            } finally {
+                processor.close();
+            }
+        }
+    }
+}
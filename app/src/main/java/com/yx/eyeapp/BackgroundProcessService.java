@@ -8,130 +8,112 @@ import android.app.NotificationManager;
 import android.app.Service;
 import android.content.Context;
 import android.content.Intent;
-import android.content.pm.PackageManager;
-import android.graphics.ImageFormat;
-import android.hardware.camera2.CameraAccessException;
-import android.hardware.camera2.CameraCaptureSession;
-import android.hardware.camera2.CameraCharacteristics;
-import android.hardware.camera2.CameraDevice;
-import android.hardware.camera2.CameraManager;
-import android.hardware.camera2.CaptureRequest;
-import android.media.Image;
-import android.media.ImageReader;
 import android.os.Build;
 import android.os.Handler;
 import android.os.IBinder;
+import android.os.Process;
+import android.os.SystemClock;
 import android.util.Log;
 import android.widget.Toast;
 
-import androidx.annotation.NonNull;
 import androidx.annotation.RequiresPermission;
 import androidx.core.app.NotificationCompat;
-import androidx.core.content.ContextCompat;
 
-import com.yx.eyeapp.util.BitmapUtils;
+import com.yx.eyeapp.model.FaceProfile;
+import com.yx.eyeapp.model.FaceProfileStore;
+import com.yx.eyeapp.model.TheFaceProfile;
+import com.yx.eyeapp.pipeline.AdaptiveScheduler;
+import com.yx.eyeapp.pipeline.CaptureGate;
+import com.yx.eyeapp.pipeline.CaptureProfile;
+import com.yx.eyeapp.pipeline.DistanceDecisionSink;
+import com.yx.eyeapp.pipeline.DutyCycleController;
+import com.yx.eyeapp.pipeline.FramePipeline;
+import com.yx.eyeapp.pipeline.RecordingSink;
+import com.yx.eyeapp.pipeline.ReplayFrameSource;
+import com.yx.eyeapp.pipeline.SharedPipeline;
+import com.yx.eyeapp.pipeline.Tracer;
+import com.yx.eyeapp.util.DetectorProfile;
 import com.yx.eyeapp.util.FaceProcessor;
-import com.yx.eyeapp.model.FrameMetadata;
 
-import java.nio.ByteBuffer;
-import java.util.Arrays;
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.IOException;
+import java.io.PrintWriter;
 
 /**
  * 在服务中进行人脸采样，并于预设人脸信息比较，根据比较结果显示提示信息
  * 明明已经设置为前台服务了，但是切换到其他app时，检测能够正确进行，
  * 日志中能正常的打印检测结果，但是toast提示信息有时不显示？？
  *
- * 实现与CmaeraSourc类似
+ * 与CameraSource共用FramePipeline（SharedPipeline），由界面切换过来时沿用已经打开的相机，
+ * 由DistanceDecisionSink判断距离。界面带着预览重新打开相机时服务的流水线被关闭，
+ * 下一次startService时沿用检测器和DistanceDecisionSink重新acquire。
+ * 采样间隔由AdaptiveScheduler根据与阈值的距离在MIN_INTERVAL和MAX_INTERVAL之间调整，
+ * 读数稳定时DutyCycleController停止相机输出IDLE_INTERVAL，只间歇地采样几帧
+ *
+ * 进程被杀后系统重启服务（START_STICKY）时，从FaceProfileStore读取预设人脸，不需要经过界面；
+ * 启动时ML Kit预热与查找、打开相机同时进行，第一帧到达后立即采样；
+ * 从进程启动到第一次得到距离判断的时间以及第一帧的时间打印在日志中。没有保存过预设人脸时停止服务。
+ *
+ * 各阶段的耗时直方图和丢帧计数可以用
+ * adb shell dumpsys activity service com.yx.eyeapp/.BackgroundProcessService 查看
+ *
+ * 调试用的extra，文件名相对于getExternalFilesDir：
+ * EXTRA_RECORD录制检测的每一帧（EXTRA_RECORD_DELTA为true时差分编码）；
+ * EXTRA_REPLAY不打开相机，回放录制的文件，EXTRA_REPLAY_REALTIME为false时尽快回放、不丢帧，
+ * 同一个文件每次得到同样的结果，例如
+ * adb shell am start-foreground-service -n com.yx.eyeapp/.BackgroundProcessService
+ * --es replay session.eyerec --ez replay_realtime false
  */
 public class BackgroundProcessService extends Service {
     private final String TAG = "BackgroundProcessService";
     private static final String CHANNEL_ID = "ForegroundServiceChannel";
-    private final int IMAGE_FORMAT = ImageFormat.YUV_420_888;
+    public static final String EXTRA_RECORD = "record";
+    public static final String EXTRA_RECORD_DELTA = "record_delta";
+    public static final String EXTRA_REPLAY = "replay";
+    public static final String EXTRA_REPLAY_REALTIME = "replay_realtime";
     private FaceProcessor faceProcessor;
-    private CameraDevice opened_camera;
-    private ImageReader imageReader;
-    private Handler handler;
-    private ProcessRunnable runnable;
-    private Thread processThread;
-    private final Object processLock = new Object();
-    //检测时间间隔
-    private static final long INTERVAL = 300;
+    //决策线程通过dutyCycle读取
+    private volatile FramePipeline pipeline;
+    //回放时不共用流水线，为null
+    private SharedPipeline.Lease lease;
+    //重新acquire时使用，回放时为null
+    private FramePipeline.Builder sharedBuilder;
+    private RecordingSink recordingSink;
+    //dump在binder线程读取
+    private volatile DistanceDecisionSink decisionSink;
+    private AdaptiveScheduler scheduler;
+    private DutyCycleController dutyCycle;
+    //最快、最慢的检测时间间隔
+    private static final long MIN_INTERVAL = 100;
+    private static final long MAX_INTERVAL = 2000;
+    //间歇采样时两次采样之间相机停止输出的时间
+    private static final long IDLE_INTERVAL = 3000;
     private boolean shouldShowToast = false;
     private Toast currentToast;
     private Context context;
-
-
-    /**
-     * 人脸检测线程
-     */
-    private class ProcessRunnable implements Runnable{
-        private final Object lock = new Object();
-        private boolean activy;
-        private ByteBuffer frameData;
-
-        public void setNextFrameData(ByteBuffer data){
-            synchronized(lock){
-                if(frameData != null){
-                    frameData = null;
-                    Log.d(TAG, "update the frmeData");
-                }
-                frameData = data;
-                lock.notifyAll();
-            }
-        }
-        @Override
-        public void run() {
-            ByteBuffer data;
-
-            while (true) {
-                synchronized (lock) {
-                    //等待帧数据更新
-                    while (activy && frameData == null) {
-                        try {
-                            lock.wait();
-                        } catch (Exception e) {
-                            e.printStackTrace();
-                        }
-                    }
-                    if (!activy) return;
-
-                    data = frameData;
-                    frameData = null;
-                }
-                //处理图像帧数据
-                try {
-                    synchronized (processLock) {
-                        Log.d(TAG, "run: processing");
-                        faceProcessor.processBytebuffer(data, new FrameMetadata.Builder()
-                                .setWidth(600)
-                                .setHeight(600)
-                                .setRotation(270)
-                                .build(), null);
-                        Log.d(TAG, "run: process done");
-                    }
-                } catch (Exception e) {
-                    throw new RuntimeException(e);
-                }
-            }
-        }
-
-        public void setActivy(boolean activy) {
-            this.activy = activy;
-        }
-    }
+    //用于统计到第一次距离判断的时间
+    private long createdAtMillis;
+    private boolean decided;
 
     @Override
     public void onCreate() {
         super.onCreate();
+        createdAtMillis = SystemClock.elapsedRealtime();
+        Tracer.init(this);
         Notification notification = createNotification();
         startForeground(1, notification);
-        // 创建 Handler 对象
-        handler = new Handler();
-
-        // 创建检测线程对象
-        runnable = new ProcessRunnable();
-        processThread = new Thread(runnable);
         context = this;
+        TheFaceProfile theFaceProfile = TheFaceProfile.getInstance();
+        if (theFaceProfile.getFaceProfile() == null) {
+            long start = SystemClock.elapsedRealtimeNanos();
+            FaceProfile saved = new FaceProfileStore(this).load();
+            if (saved != null) {
+                theFaceProfile.setFaceProfile(saved);
+            }
+            Log.d(TAG, "onCreate: loaded face profile " + (saved != null)
+                    + " in " + (SystemClock.elapsedRealtimeNanos() - start) / 1000 + "us");
+        }
     }
 
 
@@ -139,128 +121,166 @@ public class BackgroundProcessService extends Service {
     @RequiresPermission(Manifest.permission.CAMERA)
     @Override
     public int onStartCommand(Intent intent, int flags, int startId) {
+        if (pipeline != null && pipeline.isRunning()) return START_STICKY;
+        if (sharedBuilder != null) {
+            //流水线被界面关闭了，检测器和决策沿用
+            acquireShared();
+            return START_STICKY;
+        }
+        //回放已经结束
+        if (faceProcessor != null) return START_NOT_STICKY;
+        if (TheFaceProfile.getInstance().getFaceProfile() == null) {
+            Log.w(TAG, "onStartCommand: no face profile, calibrate in CameraPreviewActivity first");
+            stopSelf();
+            return START_NOT_STICKY;
+        }
 
-        // 初始化相机源和人脸检测器
-        faceProcessor = new FaceProcessor(this);
-        createCamera();
-        //开始检测
-        runnable.setActivy(true);
-        processThread.start();
+        // 初始化人脸检测器和处理流水线
+        //只需要人脸框判断距离
+        faceProcessor = new FaceProcessor(DetectorProfile.DISTANCE);
+        //在ML Kit的线程上加载模型，同时在这里打开相机
+        faceProcessor.warmUp();
+        scheduler = new AdaptiveScheduler(MIN_INTERVAL, MAX_INTERVAL);
+        //release返回后决策线程不再调用decisionSink；onDestroy之后pipeline为null，以防万一先检查
+        DutyCycleController.Streaming streaming = millis -> {
+            FramePipeline current = pipeline;
+            if (current != null) {
+                current.pauseStreaming(millis);
+            }
+        };
+        dutyCycle = new DutyCycleController.Builder(scheduler, streaming)
+                .setIdleMillis(IDLE_INTERVAL)
+                .build();
+        decisionSink = new DistanceDecisionSink(new DistanceDecisionSink.Listener() {
+            @Override
+            public void onTooClose() {
+                onDecision();
+                showToast();
+            }
+
+            @Override
+            public void onDistanceOk() {
+                onDecision();
+                stopToast();
+            }
+        }, dutyCycle);
+        FramePipeline.Builder builder = new FramePipeline.Builder(this)
+                .setProcessor(faceProcessor)
+                .setSink(decisionSink)
+                .setCaptureGate(dutyCycle)
+                //传感器帧率只需覆盖最快的检测速率，3A收敛后锁定
+                .setCaptureProfile(new CaptureProfile.Builder()
+                        .setTargetFps(1000f / MIN_INTERVAL)
+                        .setLock3a(true)
+                        .build())
+                //只需要人脸尺寸，关键帧之间跟踪人脸框
+                .setKeyframeTracking(true);
+        //系统重启服务时intent为null
+        String record = intent != null ? intent.getStringExtra(EXTRA_RECORD) : null;
+        if (record != null) {
+            recordingSink = new RecordingSink(new File(getExternalFilesDir(null), record),
+                    intent.getBooleanExtra(EXTRA_RECORD_DELTA, false), decisionSink);
+            builder.setSink(recordingSink);
+        }
+        String replay = intent != null ? intent.getStringExtra(EXTRA_REPLAY) : null;
+        if (replay != null) {
+            boolean realtime = intent.getBooleanExtra(EXTRA_REPLAY_REALTIME, true);
+            try {
+                builder.setFrameSource(new ReplayFrameSource(
+                        new File(getExternalFilesDir(null), replay), realtime));
+            } catch (IOException e) {
+                Log.e(TAG, "onStartCommand: cannot open " + replay, e);
+                decisionSink.shutdown();
+                faceProcessor.close();
+                faceProcessor = null;
+                stopSelf();
+                return START_NOT_STICKY;
+            }
+            if (!realtime) {
+                //处理每一帧，结果不受采样间隔的影响
+                builder.setCaptureGate(CaptureGate.ALWAYS);
+            }
+            pipeline = builder.build();
+            pipeline.start();
+            return START_NOT_STICKY;
+        }
+        sharedBuilder = builder;
+        acquireShared();
         return START_STICKY;
     }
 
-
-    @Override
-    public void onDestroy() {
-        super.onDestroy();
+    //开始检测，界面刚关闭时接管它的相机
+    @RequiresPermission(Manifest.permission.CAMERA)
+    private void acquireShared() {
+        lease = SharedPipeline.acquire(sharedBuilder, this::onLeaseInvalidated);
+        pipeline = lease.getPipeline();
     }
 
-    @Override
-    public IBinder onBind(Intent intent) {
-        return null;
+    //主线程调用，界面带着预览打开了相机，等下一次onStartCommand
+    private void onLeaseInvalidated(SharedPipeline.Lease invalidated) {
+        if (invalidated != lease) return;
+        Log.i(TAG, "onLeaseInvalidated: camera taken over, waiting for the next start");
+        lease = null;
+        pipeline = null;
     }
 
-    //打开相机
-    @RequiresPermission(Manifest.permission.CAMERA)
-    private  void createCamera(){
-        Log.d(TAG, "createCamera: ");
-        CameraManager cameraManager = (CameraManager) this.getSystemService(Context.CAMERA_SERVICE);
-        try {
-            String frontCameraId = null;
-            CameraCharacteristics characteristics = null;
-            try {
-                for (String cameraId : cameraManager.getCameraIdList()) {
-                    characteristics = cameraManager.getCameraCharacteristics(cameraId);
-                    Integer facing = characteristics.get(CameraCharacteristics.LENS_FACING);
-                    if (facing != null && facing == CameraCharacteristics.LENS_FACING_FRONT) {
-                        frontCameraId = cameraId;
-                        break;
-                    }
-                }
-            } catch (CameraAccessException e) {
-                Log.d(TAG, "createCamera: no front camera");
-            }
-
-            //打开相机
-            cameraManager.openCamera(frontCameraId, new CameraDevice.StateCallback() {
-                @Override
-                public void onOpened(@NonNull CameraDevice camera) {
-                    opened_camera = camera;
-                    startPreview();
-                }
-
-                @Override
-                public void onDisconnected(@NonNull CameraDevice camera) {
-                    Log.d(TAG, "onDisconnected: ");
-                }
-
-                @Override
-                public void onError(@NonNull CameraDevice camera, int error) {
 
-                }
-            }, null);
+    //主线程调用
+    private void onDecision() {
+        //流水线被界面关闭之前投递的结果
+        FramePipeline current = pipeline;
+        if (decided || current == null) return;
+        decided = true;
+        long now = SystemClock.elapsedRealtime();
+        Log.i(TAG, "first decision: " + (now - createdAtMillis) + "ms after onCreate, "
+                + (now - Process.getStartElapsedRealtime()) + "ms after process start, "
+                + "first frame " + current.getFirstFrameMillis() + "ms after pipeline start");
+    }
 
-        } catch (CameraAccessException e) {
-            throw new RuntimeException(e);
+    @Override
+    public void onDestroy() {
+        //流水线可能已经被界面关闭，只剩检测器和决策
+        if (faceProcessor != null) {
+            if (lease != null) {
+                lease.release();
+                lease = null;
+            } else if (pipeline != null) {
+                pipeline.stop();
+            }
+            pipeline = null;
+            sharedBuilder = null;
+            if (recordingSink != null) {
+                recordingSink.close();
+                recordingSink = null;
+            }
+            Log.d(TAG, "onDestroy: " + dutyCycle);
+            decisionSink.shutdown();
+            faceProcessor.close();
         }
+        super.onDestroy();
     }
 
-    //开始捕获图像
-    private void startPreview(){
-        //设置ImageReader
-        imageReader = ImageReader.newInstance(600
-                ,600
-                ,IMAGE_FORMAT
-                ,3);
-        Log.d(TAG, "imagereader width:" + imageReader.getWidth() + "  " + imageReader.getHeight());
-        //创建会话
-        try {
-            CaptureRequest.Builder requestBuilder = opened_camera.createCaptureRequest(CameraDevice.TEMPLATE_PREVIEW);
-            requestBuilder.addTarget(imageReader.getSurface());
-            opened_camera.createCaptureSession(Arrays.asList(imageReader.getSurface()),
-                    new CameraCaptureSession.StateCallback() {
-                        @Override
-                        public void onConfigured(@NonNull CameraCaptureSession session) {
-                            try {
-                                // 开启预览
-                                Log.d(TAG, "startPreview: preview session is created.");
-                                session.setRepeatingRequest(requestBuilder.build(), null, null);
-                                // 添加定时发送照片的任务
-                                handler.postDelayed(new Runnable() {
-                                    @Override
-                                    public void run() {
-                                        sendImage();
-                                        // 每0.3秒发送一张照片
-                                        handler.postDelayed(this, INTERVAL);
-                                    }
-
-                                }, INTERVAL);
-                            } catch (CameraAccessException e) {
-                                throw new RuntimeException(e);
-                            }
-                        }
-
-                        @Override
-                        public void onConfigureFailed(@NonNull CameraCaptureSession session) {
-
-                        }
-                    }, null);
-        } catch (CameraAccessException e) {
-            throw new RuntimeException(e);
+    @Override
+    protected void dump(FileDescriptor fd, PrintWriter writer, String[] args) {
+        FaceProfile profile = TheFaceProfile.getInstance().getFaceProfile();
+        writer.println("profile: " + (profile != null ? profile.getDistanceCm() + "cm" : "none"));
+        //在binder线程调用，onDestroy可能同时把字段置为null，各读取一次
+        FramePipeline current = pipeline;
+        DistanceDecisionSink sink = decisionSink;
+        if (current == null || sink == null) {
+            writer.println("not running");
+            return;
         }
-
+        writer.println("pipeline: " + current.getStats());
+        writer.println("duty cycle: " + dutyCycle);
+        writer.println("latency:");
+        writer.print(current.getMetrics());
+        writer.println(sink.getDecisionLatency());
     }
 
-    /**
-     * 更新图像帧
-     */
-    private void sendImage(){
-        Image image = imageReader.acquireLatestImage();
-        if (image == null) return;
-        Image.Plane[] planes = image.getPlanes();
-        ByteBuffer buffer = BitmapUtils.yuv420ThreePlanesToNV21(planes, 600, 600);
-        runnable.setNextFrameData(buffer);
-        image.close();
+    @Override
+    public IBinder onBind(Intent intent) {
+        return null;
     }
 
 
@@ -9,32 +9,48 @@ import android.Manifest;
 import android.content.Intent;
 import android.content.pm.PackageManager;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
 import android.util.Log;
 import android.view.SurfaceView;
+import android.view.TextureView;
 import android.view.View;
 import android.widget.Button;
 import android.widget.TextView;
+import android.widget.Toast;
 
-import com.yx.eyeapp.model.FrameMetadata;
+import com.yx.eyeapp.model.FaceProfileStore;
+import com.yx.eyeapp.model.TheFaceProfile;
+import com.yx.eyeapp.pipeline.Tracer;
+import com.yx.eyeapp.util.DetectorProfile;
+import com.yx.eyeapp.util.FaceProcessor;
+import com.yx.eyeapp.util.ProfileCalibrator;
 
 import java.io.IOException;
-import java.nio.ByteBuffer;
 
 public class CameraPreviewActivity extends AppCompatActivity {
     private CameraSource cameraSource;
     private GraphicOverlay graphicOverlay;
     private final String TAG = "CameraPreviewActivity";
     private Button btn_take;
+    //长按预览显示的调试面板
+    private TextView debugHud;
+    private final Handler hudHandler = new Handler(Looper.getMainLooper());
+    private final Runnable hudUpdater = this::updateDebugHud;
+    private static final long HUD_INTERVAL_MS = 500;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_camera_preview);
+        Tracer.init(this);
 
         Log.d(TAG, "onCreate: " + TAG);
 
         graphicOverlay = findViewById(R.id.graphic_view);
-        cameraSource = new CameraSource(this, graphicOverlay);
+        //相机直接输出到TextureView，GraphicOverlay只绘制检测结果
+        TextureView previewView = findViewById(R.id.preview_view);
+        cameraSource = new CameraSource(this, previewView, graphicOverlay);
         btn_take = findViewById(R.id.take_photo);
 
         TextView text = findViewById(R.id.text);
@@ -43,34 +59,22 @@ public class CameraPreviewActivity extends AppCompatActivity {
         TextView text2 = findViewById(R.id.text2);
         text2.setVisibility(View.INVISIBLE);
 
+        debugHud = findViewById(R.id.debug_hud);
+        graphicOverlay.setOnLongClickListener(v -> {
+            toggleDebugHud();
+            return true;
+        });
+
 
         btn_take.setOnClickListener(v -> {
-            ByteBuffer image = cameraSource.getPhoto();
-            if (image == null) {
-                Log.d(TAG, "onClick: null");
-                return;
-            }
-            Log.d(TAG, "1");
-            cameraSource.setProfile(image, new FrameMetadata(600, 600, 270));
-
-            AlertDialog.Builder builder = new AlertDialog.Builder(CameraPreviewActivity.this);
-            builder.setMessage("确定要使用该图片作为测量的阈值吗？");
-            builder.setPositiveButton("Yes", (dialog, which) -> {
-                cameraSource.stop();
-                Intent serviceIntent = new Intent(CameraPreviewActivity.this, BackgroundProcessService.class);
-
-                startService(serviceIntent);
-                dialog.dismiss();
-
-                //显示服务已启动
-                text2.setVisibility(View.VISIBLE);
-                text.setVisibility(View.INVISIBLE);
-
-            });
-            builder.setNegativeButton("Retake", (dialog, which) -> {
-                dialog.dismiss();
-            });
-            builder.show();
+            //连续检测多帧，期间预览照常绘制
+            btn_take.setEnabled(false);
+            cameraSource.calibrate(ProfileCalibrator.DEFAULT_FRAMES)
+                    .addOnFailureListener(e -> {
+                        btn_take.setEnabled(true);
+                        Toast.makeText(this, "没有拍到清晰的人脸，请重试", Toast.LENGTH_SHORT).show();
+                    })
+                    .addOnSuccessListener(this::confirmCalibration);
         });
 
 
@@ -83,6 +87,59 @@ public class CameraPreviewActivity extends AppCompatActivity {
 
     }
 
+    private void confirmCalibration(ProfileCalibrator.Result calibration) {
+        btn_take.setEnabled(true);
+        TextView text = findViewById(R.id.text);
+        TextView text2 = findViewById(R.id.text2);
+        //确认期间预热后台服务要用的检测器，DetectorPool把它直接交给服务
+        FaceProcessor standby = new FaceProcessor(DetectorProfile.DISTANCE);
+        standby.warmUp();
+        AlertDialog.Builder builder = new AlertDialog.Builder(CameraPreviewActivity.this);
+        builder.setMessage("确定要使用该图片作为测量的阈值吗？（质量：" + Math.round(calibration.getQuality() * 100) + "%）");
+        builder.setPositiveButton("Yes", (dialog, which) -> {
+            TheFaceProfile.getInstance().setFaceProfile(calibration.getProfile());
+            //服务被系统重启时直接读取，不需要重新拍摄
+            new FaceProfileStore(this).save(calibration.getProfile());
+            cameraSource.stop();
+            Intent serviceIntent = new Intent(CameraPreviewActivity.this, BackgroundProcessService.class);
+
+            startService(serviceIntent);
+            dialog.dismiss();
+
+            //显示服务已启动
+            text2.setVisibility(View.VISIBLE);
+            text.setVisibility(View.INVISIBLE);
+
+        });
+        builder.setNegativeButton("Retake", (dialog, which) -> {
+            dialog.dismiss();
+        });
+        builder.setOnDismissListener(dialog -> standby.close());
+        builder.show();
+    }
+
+    private void toggleDebugHud() {
+        if (debugHud.getVisibility() == View.VISIBLE) {
+            debugHud.setVisibility(View.GONE);
+            hudHandler.removeCallbacks(hudUpdater);
+        } else {
+            debugHud.setVisibility(View.VISIBLE);
+            updateDebugHud();
+        }
+    }
+
+    private void updateDebugHud() {
+        String diagnostics = cameraSource.getDiagnostics();
+        debugHud.setText(diagnostics != null ? diagnostics : "camera stopped");
+        hudHandler.postDelayed(hudUpdater, HUD_INTERVAL_MS);
+    }
+
+    @Override
+    protected void onDestroy() {
+        hudHandler.removeCallbacks(hudUpdater);
+        super.onDestroy();
+    }
+
     private void checkPermission() {
         if (ContextCompat.checkSelfPermission(this, Manifest.permission.CAMERA) != PackageManager.PERMISSION_GRANTED) {
             ActivityCompat.requestPermissions(this, new String[]{Manifest.permission.CAMERA}, 1);
@@ -2,59 +2,82 @@ package com.yx.eyeapp;
 
 import android.Manifest;
 import android.app.Activity;
-import android.content.Context;
-import android.graphics.ImageFormat;
+import android.graphics.Matrix;
 import android.graphics.Point;
+import android.graphics.SurfaceTexture;
 import android.hardware.camera2.CameraAccessException;
-import android.hardware.camera2.CameraCaptureSession;
-import android.hardware.camera2.CameraCharacteristics;
-import android.hardware.camera2.CameraDevice;
-import android.hardware.camera2.CameraManager;
-import android.hardware.camera2.CaptureRequest;
-import android.media.Image;
-import android.media.ImageReader;
 import android.util.Log;
 import android.util.Size;
 import android.view.Display;
+import android.view.Surface;
+import android.view.TextureView;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.annotation.RequiresPermission;
 
-import com.yx.eyeapp.util.BitmapUtils;
-import com.yx.eyeapp.util.FaceProcessor;
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.TaskCompletionSource;
+import com.google.mlkit.vision.face.Face;
+import com.yx.eyeapp.model.FaceProfile;
+import com.yx.eyeapp.model.FaceProfiles;
 import com.yx.eyeapp.model.FrameMetadata;
+import com.yx.eyeapp.pipeline.CameraStreamConfig;
+import com.yx.eyeapp.pipeline.FramePipeline;
+import com.yx.eyeapp.pipeline.OverlaySink;
+import com.yx.eyeapp.pipeline.SharedPipeline;
+import com.yx.eyeapp.pipeline.StreamSizeSelector;
+import com.yx.eyeapp.util.DetectorProfile;
+import com.yx.eyeapp.util.FaceProcessor;
+import com.yx.eyeapp.util.ProfileCalibrator;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
-import java.util.Arrays;
+import java.util.List;
 
 /**
  * 相机预览源，负责相机实时预览并绘制人脸检测结果。
  *
- * ImageReader接收相机预览，并更新帧数据。
- * 人脸检测线程维护一张图像帧数据，并进行实时检测。
- * GraphicOverlay绘制检测结果。
+ * 采集、转换、检测由FramePipeline完成，OverlaySink在GraphicOverlay上绘制检测结果。
+ * 输出尺寸和旋转角度由CameraStreamConfig根据相机能力选择，预览和GraphicOverlay都按它换算。
+ *
+ * 设置了TextureView时，相机会话同时输出到TextureView，由硬件以传感器帧率显示预览，
+ * 预览不再依赖检测速度，GraphicOverlay只绘制人脸框和特征点。
+ *
+ * 流水线由SharedPipeline共用，stop后相机保持打开一小段时间，随后启动的后台服务直接接管。
  */
 public class CameraSource {
     private GraphicOverlay graphicOverlay;
+    @Nullable
+    private final TextureView previewView;
+    private Surface previewSurface;
     private Activity activity;
-    private static final int IMAGE_FORMAT = ImageFormat.YUV_420_888;
-    private CameraDevice opened_camera;
-    private CameraCaptureSession cameraCaptureSession;
-    private ImageReader imageReader;
     private Size screeenSize;
-    private Thread processingThread;
-    private final FrameProcessingRunnable processingRunnable;
     private FaceProcessor processor;
-    private final Object processorLock = new Object();
+    //拍摄预设人脸时使用，用到时才创建
+    private FaceProcessor calibrationProcessor;
+    private FramePipeline pipeline;
+    private SharedPipeline.Lease lease;
+    private CameraStreamConfig streamConfig;
+    private boolean started;
+    //拍照时等待下一帧的最长时间
+    private static final long PHOTO_TIMEOUT_MS = 1000;
     private static final String TAG = "CameraSource";
 
     public CameraSource(Activity activity, GraphicOverlay graphicOverlay){
+        this(activity, null, graphicOverlay);
+    }
+
+    /**
+     * @param previewView 相机预览直接输出的目标，为null时由GraphicOverlay绘制检测帧作为预览
+     */
+    public CameraSource(Activity activity, @Nullable TextureView previewView,
+                        GraphicOverlay graphicOverlay){
         this.activity = activity;
+        this.previewView = previewView;
         this.graphicOverlay = graphicOverlay;
         graphicOverlay.clear();
-        processingRunnable = new FrameProcessingRunnable();
-        processor = new FaceProcessor();
+        processor = new FaceProcessor(DetectorProfile.OVERLAY);
     }
 
     /**
@@ -63,236 +86,213 @@ public class CameraSource {
     @RequiresPermission(Manifest.permission.CAMERA)
     public synchronized CameraSource start() throws IOException{
         Log.d(TAG, "start: ");
-        if(opened_camera != null) return this;
-        //开启预览
-        createCamera();
-        //开启人脸检测
-        processingThread = new Thread(processingRunnable);
-        processingRunnable.setActivy(true);
-        processingThread.start();
-        return this;
-    }
+        if(started) return this;
+        if(processor == null){
+            //stop时关闭了
+            processor = new FaceProcessor(DetectorProfile.OVERLAY);
+        }
 
-    @RequiresPermission(Manifest.permission.CAMERA)
-    private  void createCamera(){
-        //选择前置摄像头
-        Log.d(TAG, "createCamera: ");
-        CameraManager cameraManager = (CameraManager) activity.getSystemService(Context.CAMERA_SERVICE);
+        //获取屏幕大小
+        Display display = activity.getWindowManager().getDefaultDisplay();
+        Point size = new Point();
+        display.getSize(size);
+        screeenSize = new Size(size.x, size.y);
+
+        //根据相机能力选择输出尺寸
         try {
-            String frontCameraId = null;
-            CameraCharacteristics characteristics = null;
-            try {
-                for (String cameraId : cameraManager.getCameraIdList()) {
-                    characteristics = cameraManager.getCameraCharacteristics(cameraId);
-                    Integer facing = characteristics.get(CameraCharacteristics.LENS_FACING);
-                    if (facing != null && facing == CameraCharacteristics.LENS_FACING_FRONT) {
-                        frontCameraId = cameraId;
-                        break;
-                    }
-                }
-            } catch (CameraAccessException e) {
-                Log.d(TAG, "createCamera: no front camera");
-            }
+            streamConfig = CameraStreamConfig.selectFrontCamera(activity, new StreamSizeSelector(),
+                    display.getRotation(), previewView != null);
+        } catch (CameraAccessException e) {
+            throw new IOException("Cannot read camera characteristics", e);
+        }
+        if(streamConfig == null) throw new IOException("No usable front camera");
+        started = true;
 
-            //获取屏幕大小
-            Display display = activity.getWindowManager().getDefaultDisplay();
-            Point size = new Point();
-            display.getSize(size);
-            screeenSize = new Size(size.x, size.y);
+        //设置画笔缩放
+        graphicOverlay.setScaleFactor(screeenSize,
+                streamConfig.getUprightWidth(), streamConfig.getUprightHeight());
+        Log.d(TAG, "screen width:" + size.x + "screen height:" + size.y + "   " + (float)size.y/size.x);
 
-            //设置画笔缩放
-            graphicOverlay.setScaleFactor(screeenSize);
+        startPipeline();
+        return this;
+    }
 
-            Log.d(TAG, "screen width:" + size.x + "screen height:" + size.y + "   " + (float)size.y/size.x);
-            //打开相机
-            cameraManager.openCamera(frontCameraId, new CameraDevice.StateCallback() {
+    @RequiresPermission(Manifest.permission.CAMERA)
+    private synchronized void startPipeline(){
+        if(!started || pipeline != null) return;
+        //等待TextureView可用后再打开相机
+        if(previewView != null && !previewView.isAvailable()){
+            previewView.setSurfaceTextureListener(new TextureView.SurfaceTextureListener() {
                 @Override
-                public void onOpened(@NonNull CameraDevice camera) {
-                    opened_camera = camera;
-                    Log.d(TAG, "onOpened: ");
-                    startPreview();
+                @SuppressWarnings("MissingPermission")
+                public void onSurfaceTextureAvailable(@NonNull SurfaceTexture surface, int width, int height) {
+                    startPipeline();
                 }
 
                 @Override
-                public void onDisconnected(@NonNull CameraDevice camera) {
-                    Log.d(TAG, "onDisconnected: ");
+                public void onSurfaceTextureSizeChanged(@NonNull SurfaceTexture surface, int width, int height) {
+                    configurePreviewTransform();
                 }
 
                 @Override
-                public void onError(@NonNull CameraDevice camera, int error) {
-
+                public boolean onSurfaceTextureDestroyed(@NonNull SurfaceTexture surface) {
+                    return true;
                 }
-            }, null);
-
-        } catch (CameraAccessException e) {
-            throw new RuntimeException(e);
-        }
-        Log.d(TAG, "createCamera: camera opened");
-    }
-
-    private void startPreview(){
-        //设置ImageReader
-        imageReader = ImageReader.newInstance(600
-                ,600
-                ,IMAGE_FORMAT
-                ,2);
-
-        imageReader.setOnImageAvailableListener(new ImageReader.OnImageAvailableListener() {
-            @Override
-            public void onImageAvailable(ImageReader reader) {
-                //更新图像帧数据
-                Image image = reader.acquireLatestImage();
-                if(image == null) return;
-                Image.Plane[] planes = image.getPlanes();
-                ByteBuffer buffer = BitmapUtils.yuv420ThreePlanesToNV21(planes,600, 600);
 
-                if(image != null) image.close();
-                processingRunnable.setNextFrameData(buffer);
-            }
-        }, null);
-
-        //创建会话
-        try {
-            CaptureRequest.Builder requestBuilder = opened_camera.createCaptureRequest(CameraDevice.TEMPLATE_PREVIEW);
-            requestBuilder.addTarget(imageReader.getSurface());
-            opened_camera.createCaptureSession(Arrays.asList(imageReader.getSurface()),
-                    new CameraCaptureSession.StateCallback() {
                 @Override
-                public void onConfigured(@NonNull CameraCaptureSession session) {
-                    try {
-                        //开启预览
-                        Log.d(TAG, "startPreview: preview session is created.");
-                        cameraCaptureSession = session;
-                        session.setRepeatingRequest(requestBuilder.build(), null, null);
-                    } catch (CameraAccessException e) {
-                        throw new RuntimeException(e);
-                    }
+                public void onSurfaceTextureUpdated(@NonNull SurfaceTexture surface) {
                 }
-
-                @Override
-                public void onConfigureFailed(@NonNull CameraCaptureSession session) {
-
-                }
-            }, null);
-        } catch (CameraAccessException e) {
-            throw new RuntimeException(e);
+            });
+            return;
         }
 
+        FramePipeline.Builder builder = new FramePipeline.Builder(activity)
+                .setStreamConfig(streamConfig)
+                .setProcessor(processor)
+                .setSink(new OverlaySink(graphicOverlay, previewView == null));
+        if(previewView != null){
+            //预览与检测使用相同尺寸，GraphicOverlay的坐标换算保持不变
+            SurfaceTexture texture = previewView.getSurfaceTexture();
+            texture.setDefaultBufferSize(streamConfig.getWidth(), streamConfig.getHeight());
+            previewSurface = new Surface(texture);
+            builder.setPreviewSurface(previewSurface);
+            configurePreviewTransform();
+        }
+        lease = SharedPipeline.acquire(builder);
+        pipeline = lease.getPipeline();
     }
 
     /**
-     * 设置预设图片，（用于比较确定脸部与屏幕的距离）
+     * TextureView会把相机画面拉伸到整个视图。
+     * 这里把它缩放为与视图等高、保持正立图像宽高比、水平居中，与GraphicOverlay.setScaleFactor的换算一致。
      */
-    public void setProfile(ByteBuffer image, FrameMetadata metadata) {
-        synchronized (processorLock){
-            processor.settingTheFaceProfile(true);
-            processor.processBytebuffer(image, metadata, null);
-            processor.settingTheFaceProfile(false);
-        }
-        
+    private void configurePreviewTransform(){
+        if(previewView == null || streamConfig == null) return;
+        int viewWidth = previewView.getWidth();
+        int viewHeight = previewView.getHeight();
+        if(viewWidth == 0 || viewHeight == 0) return;
+        float imageAspect = (float) streamConfig.getUprightWidth() / streamConfig.getUprightHeight();
+        Matrix matrix = new Matrix();
+        matrix.setScale(viewHeight * imageAspect / viewWidth, 1.0f, viewWidth / 2f, viewHeight / 2f);
+        activity.runOnUiThread(() -> previewView.setTransform(matrix));
     }
 
     /**
-     * 人脸检测线程，维护一张图像帧数据，并对其进行检测
+     * 拍摄预设人脸（用于比较确定脸部与屏幕的距离）：在后台线程上连续取frames帧检测，
+     * 剔除离群值后取中位数。预览和人脸绘制不受影响。
+     * 结果不会自动设为预设人脸，由调用方根据质量决定是否使用（TheFaceProfile.setFaceProfile）。
+     *
+     * @return 有效帧太少、相机停止或者检测失败时以异常结束
      */
-    private class FrameProcessingRunnable implements Runnable{
-        private Object lock = new Object();
-        private boolean activy;
-        private ByteBuffer frameData;
-
-        //更新图像帧
-        void setNextFrameData(ByteBuffer data){
-            synchronized(lock){
-                if(frameData != null){
-                    frameData = null;
-                }
-                frameData = data;
-                lock.notifyAll();
+    public Task<ProfileCalibrator.Result> calibrate(int frames) {
+        TaskCompletionSource<ProfileCalibrator.Result> result = new TaskCompletionSource<>();
+        FramePipeline current;
+        FaceProcessor detector;
+        FrameMetadata metadata;
+        synchronized (this){
+            if(pipeline == null || streamConfig == null){
+                result.setException(new IllegalStateException("Camera is not started"));
+                return result.getTask();
+            }
+            if(calibrationProcessor == null){
+                calibrationProcessor = new FaceProcessor(DetectorProfile.CALIBRATION);
             }
+            current = pipeline;
+            detector = calibrationProcessor;
+            metadata = streamConfig.getFrameMetadata();
         }
-        @Override
-        public void run() {
-            ByteBuffer data;
-            while(true){
-                synchronized (lock){
-                    //等待帧数据更新
-                    while(activy && frameData == null){
-                        try{
-                            lock.wait();
-                        }catch (Exception e){
-                            Log.d(TAG, "Frame process lopp terminated.");
-                            e.printStackTrace();
-                        }
+        ProfileCalibrator calibrator = new ProfileCalibrator(frames);
+        new Thread(() -> {
+            try {
+                while (!calibrator.isComplete()) {
+                    ByteBuffer image = current.takeSnapshot(PHOTO_TIMEOUT_MS);
+                    if (image == null) {
+                        throw new IllegalStateException("No frame from camera");
                     }
-                    if(!activy) return;
-
-                    data = frameData;
-                    frameData = null;
-                }
-                //处理图像帧数据
-                try {
-                    synchronized (processorLock){
-                        processor.processBytebuffer(data,
-                                new FrameMetadata.Builder()
-                                        .setWidth(600)
-                                        .setHeight(600)
-                                        .setRotation(270)
-                                        .build(),
-                                graphicOverlay);
+                    List<Face> faces = detector.detect(image, metadata);
+                    if (faces.isEmpty()) {
+                        calibrator.addMiss();
+                    } else {
+                        FaceProfile face = FaceProfiles.fromFace(faces.get(0));
+                        calibrator.addFace(face.getWidth(), face.getHeight(), face.getEyeDistance());
                     }
-                } catch (Exception e) {
-                    throw new RuntimeException(e);
                 }
+                ProfileCalibrator.Result calibration =
+                        calibrator.build(metadata.getDistanceEstimator());
+                if (calibration == null) {
+                    throw new IllegalStateException("Too few frames with a face");
+                }
+                Log.d(TAG, "calibrate: " + calibration);
+                result.setResult(calibration);
+            } catch (Exception e) {
+                Log.e(TAG, "calibrate: failed", e);
+                result.setException(e);
             }
-        }
-        public void setActivy(boolean activy) {
-            this.activy = activy;
-        }
+        }, TAG + "-calibrate").start();
+        return result.getTask();
     }
 
     /**
-     *捕获单张图片
+     * getPhoto返回的图像的尺寸和旋转角度，start之前为null
      */
+    @Nullable
+    public FrameMetadata getFrameMetadata(){
+        return streamConfig != null ? streamConfig.getFrameMetadata() : null;
+    }
+
+    /**
+     *捕获单张图片，相机还未开始输出时返回null
+     */
+    @Nullable
     public ByteBuffer getPhoto(){
-        while(true){
-            Image image = imageReader.acquireLatestImage();
-            if(image != null){
-                try{
-                    Image.Plane[] planes = image.getPlanes();
-                    ByteBuffer buffer = BitmapUtils.yuv420ThreePlanesToNV21(planes,600, 600);
-                    return buffer;
-                }catch (Exception e){
-                    e.printStackTrace();
-                    return null;
-                }finally {
-                    image.close();
-                }
-            }
+        FramePipeline current;
+        synchronized (this){
+            current = pipeline;
         }
+        if(current == null) return null;
+        return current.takeSnapshot(PHOTO_TIMEOUT_MS);
     }
 
-    public void stop(){
-
-        processingRunnable.setActivy(false);
-
-        Log.d(TAG, "stop: 3");
-        if(cameraCaptureSession != null){
-            try {
-                cameraCaptureSession.stopRepeating();
-                cameraCaptureSession.close();
-                cameraCaptureSession = null;
-            }catch (Exception e){
-                e.printStackTrace();
-            }
+    /**
+     * 调试面板显示的帧计数和各阶段耗时，相机还未开始时返回null
+     */
+    @Nullable
+    public String getDiagnostics(){
+        FramePipeline current;
+        synchronized (this){
+            current = pipeline;
+        }
+        if(current == null) return null;
+        return "captured=" + current.getCapturedFrames()
+                + " overwritten=" + current.getOverwrittenFrames()
+                + " dropped=" + current.getDroppedFrames() + "\n"
+                + current.getMetrics()
+                + graphicOverlay.getDrawLatency();
+    }
 
+    public synchronized void stop(){
+        started = false;
+        if(lease != null){
+            //返回后不再输出到预览，之后才能释放预览的Surface
+            lease.release();
+            lease = null;
+            pipeline = null;
         }
-        Log.d(TAG, "stop: 4");
-        if(opened_camera != null) {
-            opened_camera.close();
-            opened_camera = null;
+        if(processor != null){
+            //归还给DetectorPool，正在进行的检测完成后才会真正关闭
+            processor.close();
+            processor = null;
         }
 
-        Log.d(TAG, "stop: 5");
+        if(previewSurface != null){
+            previewSurface.release();
+            previewSurface = null;
+        }
+        if(calibrationProcessor != null){
+            //正在进行的检测完成后才会真正关闭
+            calibrationProcessor.close();
+            calibrationProcessor = null;
+        }
         graphicOverlay.clear();
     }
 
@@ -3,17 +3,22 @@ package com.yx.eyeapp;
 import android.content.Context;
 import android.graphics.Canvas;
 import android.util.AttributeSet;
-import android.util.Log;
 import android.util.Size;
 import android.view.View;
 
+import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
+import com.yx.eyeapp.pipeline.LatencyHistogram;
+import com.yx.eyeapp.pipeline.Tracer;
+
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * 一个呈现最终检测结果的试图，通过添加他的子类Graphic绘制检测结果
+ * Graphic由使用者复用，绘制时不分配对象；每次onDraw的耗时记录在getDrawLatency中
  */
 public class GraphicOverlay extends View {
     private final Object lock = new Object();
@@ -22,6 +27,9 @@ public class GraphicOverlay extends View {
     private int startx;
     private int scaledWidth;
     private final String TAG = "GraphicOverlay";
+    private final LatencyHistogram drawLatency = new LatencyHistogram("draw");
+    //setGraphics交来、还没有绘制的帧序号，没有时为-1
+    private final AtomicLong pendingSequence = new AtomicLong(-1);
 
     /**
      * 抽象内部类，用于定义需要绘制的图像，由子类实现。
@@ -50,7 +58,27 @@ public class GraphicOverlay extends View {
      */
     public void redraw(){
         postInvalidate();
-        Log.d(TAG, "insssss: " + graphics.size());
+    }
+
+    /**
+     * 一次换上新的一组Graphic并重绘，可以在任意线程调用。
+     * 在lock中替换，onDraw要么画完整的旧内容，要么画完整的新内容；返回后旧的Graphic不会再被绘制，
+     * 调用方可以修改它们用于下一帧。sequence是这次内容对应的帧序号，用于Tracer.RENDER
+     */
+    public void setGraphics(@NonNull List<? extends Graphic> newGraphics, long sequence){
+        synchronized (lock){
+            graphics.clear();
+            for (int i = 0; i < newGraphics.size(); i++) {
+                graphics.add(newGraphics.get(i));
+            }
+        }
+        Tracer.beginAsync(Tracer.RENDER, sequence);
+        long replaced = pendingSequence.getAndSet(sequence);
+        if (replaced >= 0) {
+            //上一帧还没来得及绘制就被替换了
+            Tracer.endAsync(Tracer.RENDER, replaced);
+        }
+        postInvalidate();
     }
 
     public void clear(){
@@ -74,12 +102,14 @@ public class GraphicOverlay extends View {
 
     /**
      *从imagereader到屏幕的坐标系转化，以下几个方法并不规范，不同手机显示效果可能不一样
+     * @param imageWidth 旋转后（正立）检测图像的宽度
+     * @param imageHeight 旋转后（正立）检测图像的高度
      */
-    public void setScaleFactor(Size screenSize){
-        scaleFactor = (float)screenSize.getHeight()/600;
+    public void setScaleFactor(Size screenSize, int imageWidth, int imageHeight){
+        scaleFactor = (float)screenSize.getHeight()/imageHeight;
 
         int screenWidth = screenSize.getWidth();
-        scaledWidth = (int)(600*scaleFactor);
+        scaledWidth = (int)(imageWidth*scaleFactor);
 
         startx = (screenWidth - scaledWidth )/2;
     }
@@ -89,14 +119,27 @@ public class GraphicOverlay extends View {
         return scaleFactor;
     }
 
+    /** onDraw的耗时 */
+    @NonNull
+    public LatencyHistogram getDrawLatency() {
+        return drawLatency;
+    }
+
     @Override
     protected void onDraw(Canvas canvas){
         super.onDraw(canvas);
-        Log.d(TAG, "onDraw: graphics:" + graphics.size());
+        long start = System.nanoTime();
+        Tracer.beginSection(Tracer.DRAW);
         synchronized(lock){
-            for(Graphic graphic : graphics){
-                graphic.draw(canvas);
+            for(int i = 0; i < graphics.size(); i++){
+                graphics.get(i).draw(canvas);
             }
         }
+        Tracer.endSection();
+        drawLatency.record(System.nanoTime() - start);
+        long drawn = pendingSequence.getAndSet(-1);
+        if (drawn >= 0) {
+            Tracer.endAsync(Tracer.RENDER, drawn);
+        }
     }
 }
@@ -4,23 +4,61 @@ import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.Matrix;
 import android.graphics.Paint;
+import android.graphics.RectF;
 
 import com.yx.eyeapp.GraphicOverlay;
 
 /**
  * 相机预览图画笔
+ *
+ * 位图保持传感器方向，旋转和镜像在绘制时通过画布的Matrix完成，不再额外生成旋转后的位图。
+ * 一个实例反复使用，每一帧用setBitmap换上新的位图；Matrix和Paint预先创建，绘制时不分配对象。
  */
 public class CameraGraphic extends GraphicOverlay.Graphic {
     private Bitmap bitmap;
+    private final int rotation;
+    private final boolean mirror;
+    private final Matrix matrix = new Matrix();
+    private final RectF bounds = new RectF();
+    private final Paint paint = new Paint();
+
     public CameraGraphic(Bitmap bitmap, GraphicOverlay overlay){
+        this(bitmap, 0, false, overlay);
+    }
+
+    /**
+     * @param rotation 顺时针旋转角度
+     * @param mirror 旋转后是否水平翻转（前置摄像头）
+     */
+    public CameraGraphic(Bitmap bitmap, int rotation, boolean mirror, GraphicOverlay overlay){
         super(overlay);
         this.bitmap = bitmap;
+        this.rotation = rotation;
+        this.mirror = mirror;
+    }
+
+    /** 换上下一帧的位图，只在不在屏幕上时调用（见GraphicOverlay.setGraphics） */
+    public void setBitmap(Bitmap bitmap) {
+        this.bitmap = bitmap;
+    }
+
+    public int getRotation() {
+        return rotation;
     }
+
     @Override
     public void draw(Canvas canvas) {
-        Matrix matrix = new Matrix();
-        matrix.setScale(getScale(), getScale());
+        matrix.setRotate(rotation);
+        if (mirror) {
+            matrix.postScale(-1.0f, 1.0f);
+        }
+        //把旋转后的图像移回原点
+        bounds.set(0, 0, bitmap.getWidth(), bitmap.getHeight());
+        matrix.mapRect(bounds);
+        matrix.postTranslate(-bounds.left, -bounds.top);
+
+        matrix.postScale(getScale(), getScale());
         matrix.postTranslate(getStartx(), 0);
-        canvas.drawBitmap(bitmap, matrix, new Paint());
+        canvas.drawBitmap(bitmap, matrix, paint);
     }
 }
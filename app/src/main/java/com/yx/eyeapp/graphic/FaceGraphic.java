@@ -4,14 +4,19 @@ import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Paint;
 import android.graphics.PointF;
-import android.util.Log;
+import android.graphics.Rect;
 
 import com.google.mlkit.vision.face.Face;
 import com.google.mlkit.vision.face.FaceContour;
 import com.yx.eyeapp.GraphicOverlay;
 
+import java.util.List;
+
 /**
  * 人脸特征点画笔
+ *
+ * 一个实例反复使用：setFace把人脸框和所有轮廓点按图像坐标记到复用的数组中，
+ * 绘制时换算到屏幕坐标，特征点用一次drawPoints画出（圆头的点），绘制时不分配对象。
  */
 public class FaceGraphic extends GraphicOverlay.Graphic {
     private static final float FACE_POSITION_RADIUS = 7.0f;
@@ -19,44 +24,89 @@ public class FaceGraphic extends GraphicOverlay.Graphic {
     private static final float FACE_BOUNDING_GAP = 5.0f;
     private static final int FACE_POSITION_COLOR = Color.WHITE;
     private static final int FACE_BOX_COLOR = Color.WHITE;
+    //全部轮廓共133个点
+    private static final int INITIAL_POINTS = 136;
     private final Paint facePositionPaint;
     private final Paint faceBoxPaint;
-    private volatile Face face;
-    private static final String TAG = "FaceGraphic";
+    //人脸框，已经加上检测区域的偏移
+    private final Rect box = new Rect();
+    private boolean hasFace;
+    //轮廓点的图像坐标（x, y交替），已经加上检测区域的偏移
+    private float[] points = new float[INITIAL_POINTS * 2];
+    private float[] screenPoints = new float[INITIAL_POINTS * 2];
+    private int pointCount;
 
-    public FaceGraphic(Face face, GraphicOverlay overlay) {
+    public FaceGraphic(GraphicOverlay overlay) {
         super(overlay);
-        this.face = face;
-
         facePositionPaint = new Paint();
         facePositionPaint.setColor(FACE_POSITION_COLOR);
+        facePositionPaint.setStrokeWidth(FACE_POSITION_RADIUS * 2);
+        facePositionPaint.setStrokeCap(Paint.Cap.ROUND);
         faceBoxPaint = new Paint();
         faceBoxPaint.setStyle(Paint.Style.STROKE);
         faceBoxPaint.setStrokeWidth(FACE_BOUNDING_RADIUS);
         faceBoxPaint.setColor(FACE_BOX_COLOR);
     }
 
+    public FaceGraphic(Face face, GraphicOverlay overlay) {
+        this(face, 0, 0, overlay);
+    }
+
+    public FaceGraphic(Face face, int offsetX, int offsetY, GraphicOverlay overlay) {
+        this(overlay);
+        setFace(face, offsetX, offsetY);
+    }
+
+    /**
+     * 换成新的检测结果，只在不在屏幕上时调用（见GraphicOverlay.setGraphics）
+     *
+     * @param offsetX 人脸坐标相对检测区域时，检测区域在整帧中的位置
+     */
+    public void setFace(Face face, int offsetX, int offsetY) {
+        hasFace = face != null;
+        pointCount = 0;
+        if (face == null) return;
+        Rect bounds = face.getBoundingBox();
+        box.set(bounds.left + offsetX, bounds.top + offsetY,
+                bounds.right + offsetX, bounds.bottom + offsetY);
+        List<FaceContour> contours = face.getAllContours();
+        for (int i = 0; i < contours.size(); i++) {
+            List<PointF> contourPoints = contours.get(i).getPoints();
+            ensureCapacity(pointCount + contourPoints.size());
+            for (int j = 0; j < contourPoints.size(); j++) {
+                PointF point = contourPoints.get(j);
+                points[pointCount * 2] = point.x + offsetX;
+                points[pointCount * 2 + 1] = point.y + offsetY;
+                pointCount++;
+            }
+        }
+    }
+
+    private void ensureCapacity(int count) {
+        if (count * 2 <= points.length) return;
+        float[] grown = new float[Math.max(count * 2, points.length * 2)];
+        System.arraycopy(points, 0, grown, 0, pointCount * 2);
+        points = grown;
+        screenPoints = new float[grown.length];
+    }
 
     @Override
     public void draw(Canvas canvas) {
-        if(face == null) return;
-        Log.d(TAG, "draw: facegraphic");
+        if (!hasFace) return;
 
         //获取矩形框位置
-        float top =  scale(face.getBoundingBox().top) - FACE_BOUNDING_GAP;
-        float bottom = scale(face.getBoundingBox().bottom)- FACE_BOUNDING_GAP;
-        float left = transcalteX(face.getBoundingBox().left + FACE_BOUNDING_GAP);
-        float right = transcalteX(face.getBoundingBox().right + FACE_BOUNDING_GAP);
+        float top =  scale(box.top) - FACE_BOUNDING_GAP;
+        float bottom = scale(box.bottom)- FACE_BOUNDING_GAP;
+        float left = transcalteX(box.left + FACE_BOUNDING_GAP);
+        float right = transcalteX(box.right + FACE_BOUNDING_GAP);
 
         //绘制矩形
         canvas.drawRect(left, top, right, bottom,faceBoxPaint);
         //绘制特诊点
-        for (FaceContour contour : face.getAllContours()) {
-            for (PointF point : contour.getPoints()) {
-                canvas.drawCircle(
-                        transcalteX(point.x), scale(point.y), FACE_POSITION_RADIUS, facePositionPaint);
-                Log.d(TAG, "draw: x " + scale(point.x) + " y:" + scale(point.y));
-            }
+        for (int i = 0; i < pointCount * 2; i += 2) {
+            screenPoints[i] = transcalteX(points[i]);
+            screenPoints[i + 1] = scale(points[i + 1]);
         }
+        canvas.drawPoints(screenPoints, 0, pointCount * 2, facePositionPaint);
     }
 }
@@ -0,0 +1,139 @@
+package com.yx.eyeapp.model;
+
+import android.content.Context;
+import android.util.AtomicFile;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32;
+
+/**
+ * 把拍摄的预设人脸保存到应用私有目录，进程被杀后服务重启时直接读取，不需要重新拍摄。
+ *
+ * 文件是固定长度的二进制记录（大端）：
+ * <pre>
+ * int   MAGIC
+ * int   VERSION
+ * float 人脸框宽度、高度、两眼距离（像素）
+ * float 由两眼距离、人脸框宽度估计的距离（厘米）
+ * long  保存时间（System.currentTimeMillis）
+ * int   以上内容的CRC32
+ * </pre>
+ * 读取时一次读入整个记录按偏移取值，不需要解析。通过AtomicFile写入，写到一半被杀时保留旧的文件。
+ * 版本、长度或校验和不符时当作没有保存过。
+ */
+public class FaceProfileStore {
+    private static final String TAG = "FaceProfileStore";
+    private static final String FILE_NAME = "face_profile.bin";
+    static final int MAGIC = 0x45594550;
+    static final int VERSION = 1;
+    static final int RECORD_SIZE = 4 + 4 + 5 * 4 + 8 + 4;
+
+    private final AtomicFile file;
+
+    public FaceProfileStore(@NonNull Context context) {
+        this.file = new AtomicFile(new File(context.getFilesDir(), FILE_NAME));
+    }
+
+    /** 保存预设人脸，失败时返回false */
+    public boolean save(@NonNull FaceProfile profile) {
+        ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+        encode(profile, System.currentTimeMillis(), record);
+        FileOutputStream out = null;
+        try {
+            out = file.startWrite();
+            out.write(record.array());
+            file.finishWrite(out);
+            return true;
+        } catch (IOException e) {
+            Log.e(TAG, "save: failed", e);
+            if (out != null) {
+                file.failWrite(out);
+            }
+            return false;
+        }
+    }
+
+    /** 读取保存的预设人脸，没有保存过或者文件损坏时返回null */
+    @Nullable
+    public FaceProfile load() {
+        byte[] bytes = new byte[RECORD_SIZE];
+        try (FileInputStream in = file.openRead()) {
+            int read = 0;
+            while (read < bytes.length) {
+                int n = in.read(bytes, read, bytes.length - read);
+                if (n < 0) break;
+                read += n;
+            }
+            if (read < bytes.length || in.read() >= 0) {
+                Log.w(TAG, "load: unexpected file size");
+                return null;
+            }
+        } catch (FileNotFoundException e) {
+            return null;
+        } catch (IOException e) {
+            Log.e(TAG, "load: failed", e);
+            return null;
+        }
+        FaceProfile profile = decode(ByteBuffer.wrap(bytes));
+        if (profile == null) {
+            Log.w(TAG, "load: invalid record");
+        }
+        return profile;
+    }
+
+    /** 删除保存的预设人脸 */
+    public void clear() {
+        file.delete();
+    }
+
+    /** 把profile写入record的当前位置，record至少还有RECORD_SIZE字节 */
+    static void encode(@NonNull FaceProfile profile, long savedMillis, @NonNull ByteBuffer record) {
+        int start = record.position();
+        record.putInt(MAGIC)
+                .putInt(VERSION)
+                .putFloat(profile.getWidth())
+                .putFloat(profile.getHeight())
+                .putFloat(profile.getEyeDistance())
+                .putFloat(profile.getDistanceByEyes())
+                .putFloat(profile.getDistanceByWidth())
+                .putLong(savedMillis);
+        record.putInt(crc(record, start, record.position() - start));
+    }
+
+    /** 从record的当前位置读取一条记录，格式不符时返回null */
+    @Nullable
+    static FaceProfile decode(@NonNull ByteBuffer record) {
+        int start = record.position();
+        if (record.remaining() < RECORD_SIZE) return null;
+        if (record.getInt(start + RECORD_SIZE - 4) != crc(record, start, RECORD_SIZE - 4)) {
+            return null;
+        }
+        if (record.getInt(start) != MAGIC || record.getInt(start + 4) != VERSION) {
+            return null;
+        }
+        float width = record.getFloat(start + 8);
+        float height = record.getFloat(start + 12);
+        if (!(width > 0 && height > 0)) return null;
+        return new FaceProfile(width, height,
+                record.getFloat(start + 16),
+                record.getFloat(start + 20),
+                record.getFloat(start + 24));
+    }
+
+    private static int crc(ByteBuffer record, int offset, int length) {
+        CRC32 crc = new CRC32();
+        ByteBuffer slice = record.duplicate();
+        slice.limit(offset + length).position(offset);
+        crc.update(slice);
+        return (int) crc.getValue();
+    }
+}
@@ -0,0 +1,41 @@
+package com.yx.eyeapp.model;
+
+import android.graphics.PointF;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.mlkit.vision.face.Face;
+import com.google.mlkit.vision.face.FaceLandmark;
+
+/**
+ * 由ML Kit检测到的Face创建FaceProfile：人脸框的尺寸，有双眼特征点时加上两眼中心的距离
+ */
+public final class FaceProfiles {
+
+    private FaceProfiles() {
+    }
+
+    @NonNull
+    public static FaceProfile fromFace(@NonNull Face face) {
+        return fromFace(face, null);
+    }
+
+    @NonNull
+    public static FaceProfile fromFace(@NonNull Face face, @Nullable DistanceEstimator estimator) {
+        return new FaceProfile(face.getBoundingBox().width(), face.getBoundingBox().height(),
+                getEyeDistance(face), estimator);
+    }
+
+    /** 两眼中心的像素距离，没有特征点时为NaN */
+    public static float getEyeDistance(@NonNull Face face) {
+        FaceLandmark leftEye = face.getLandmark(FaceLandmark.LEFT_EYE);
+        FaceLandmark rightEye = face.getLandmark(FaceLandmark.RIGHT_EYE);
+        if (leftEye == null || rightEye == null) {
+            return Float.NaN;
+        }
+        PointF left = leftEye.getPosition();
+        PointF right = rightEye.getPosition();
+        return (float) Math.hypot(left.x - right.x, left.y - right.y);
+    }
+}
@@ -3,15 +3,14 @@ package com.yx.eyeapp.model;
 
 import android.util.Log;
 
-import com.google.mlkit.vision.face.Face;
-
 /**
  * 预设的人脸信息，采用单例模式，与采样的人脸进行比较从而确定距离
  */
 public class TheFaceProfile {
     private static String TAG = "TheProfileImage";
     private static TheFaceProfile instance;
-    private static FaceProfile faceProfile;
+    //在主线程替换，在决策线程读取；FaceProfile不可变，volatile保证读到完整的新对象
+    private static volatile FaceProfile faceProfile;
 
     private TheFaceProfile(){
     };
@@ -21,11 +20,13 @@ public class TheFaceProfile {
         }
         return instance;
     }
-    public void setFaceProfile(Face face) {
-        faceProfile = new FaceProfile(face);
-        Log.d(TAG, "setFaceProfile: height:" + faceProfile.getHeight() + " width:" + faceProfile.getWidth() + " area:" + faceProfile.getArea());
-
+    /** 设置预设人脸，例如ProfileCalibrator多帧汇总的结果 */
+    public void setFaceProfile(FaceProfile profile) {
+        faceProfile = profile;
+        Log.d(TAG, "setFaceProfile: height:" + profile.getHeight() + " width:" + profile.getWidth() + " area:" + profile.getArea()
+                + " distance:" + profile.getDistanceCm() + "cm");
     }
+
     public FaceProfile getFaceProfile() {
         return faceProfile;
     }
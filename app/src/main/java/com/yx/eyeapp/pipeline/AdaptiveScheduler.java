@@ -0,0 +1,172 @@
+package com.yx.eyeapp.pipeline;
+
+import androidx.annotation.NonNull;
+
+/**
+ * 根据最近的检测结果自适应调整采样间隔的CaptureGate，取代固定的采样间隔。
+ *
+ * 检测结果用人脸尺寸与预设人脸尺寸之比（sizeRatio，1表示正好在阈值上）描述：
+ * <ul>
+ *     <li>离阈值越近采样越快，离阈值超过farMargin时按最慢的速率采样；</li>
+ *     <li>人脸尺寸正在向阈值变化时，保证在预计到达阈值之前至少再采样两次；</li>
+ *     <li>距离判断的置信度高（状态短时间内不会变化）时，间隔向最慢的速率拉长；</li>
+ *     <li>没有检测到人脸时间隔逐次加倍，直到最慢的速率。</li>
+ * </ul>
+ * shouldCapture只在采集线程调用，onResult只在决策线程调用。
+ */
+public class AdaptiveScheduler implements CaptureGate, DetectionFeedback {
+    /** 离阈值在这个比例以内时按最快的速率采样 */
+    public static final float DEFAULT_NEAR_MARGIN = 0.05f;
+    /** 离阈值超过这个比例时按最慢的速率采样 */
+    public static final float DEFAULT_FAR_MARGIN = 0.5f;
+    //尺寸变化速度的平滑系数
+    private static final float VELOCITY_SMOOTHING = 0.5f;
+    private static final long NANOS_PER_MILLI = 1_000_000L;
+    private static final double NANOS_PER_SECOND = 1e9;
+
+    private final long minIntervalNanos;
+    private final long maxIntervalNanos;
+    private final float nearMargin;
+    private final float farMargin;
+
+    //决策线程写，采集线程读
+    private volatile long intervalNanos;
+
+    //采集线程写
+    private volatile long lastCaptureNanos = Long.MIN_VALUE;
+    private volatile long firstCaptureNanos = Long.MIN_VALUE;
+    private volatile long captures;
+
+    //只在决策线程访问
+    private float lastRatio = Float.NaN;
+    private long lastResultNanos;
+    //每秒的尺寸比变化，正数表示靠近屏幕
+    private float velocity;
+    private volatile long results;
+    private volatile long busyNanos;
+
+    /**
+     * @param minIntervalMillis 最快的采样间隔
+     * @param maxIntervalMillis 最慢的采样间隔
+     */
+    public AdaptiveScheduler(long minIntervalMillis, long maxIntervalMillis) {
+        this(minIntervalMillis, maxIntervalMillis, DEFAULT_NEAR_MARGIN, DEFAULT_FAR_MARGIN);
+    }
+
+    public AdaptiveScheduler(long minIntervalMillis, long maxIntervalMillis,
+                             float nearMargin, float farMargin) {
+        if (minIntervalMillis <= 0 || maxIntervalMillis < minIntervalMillis) {
+            throw new IllegalArgumentException(
+                    "invalid interval range: " + minIntervalMillis + ".." + maxIntervalMillis);
+        }
+        if (nearMargin < 0 || farMargin <= nearMargin) {
+            throw new IllegalArgumentException(
+                    "invalid margins: " + nearMargin + ", " + farMargin);
+        }
+        this.minIntervalNanos = minIntervalMillis * NANOS_PER_MILLI;
+        this.maxIntervalNanos = maxIntervalMillis * NANOS_PER_MILLI;
+        this.nearMargin = nearMargin;
+        this.farMargin = farMargin;
+        //还没有结果时按最快的速率采样，尽快得到第一个结果
+        this.intervalNanos = minIntervalNanos;
+    }
+
+    @Override
+    public boolean shouldCapture(long nowNanos) {
+        if (lastCaptureNanos != Long.MIN_VALUE && nowNanos - lastCaptureNanos < intervalNanos) {
+            return false;
+        }
+        lastCaptureNanos = nowNanos;
+        if (firstCaptureNanos == Long.MIN_VALUE) {
+            firstCaptureNanos = nowNanos;
+        }
+        captures++;
+        return true;
+    }
+
+    /**
+     * 根据一帧的检测结果决定下一次采样的间隔，detectNanos用于统计检测器的占空比
+     */
+    @Override
+    public void onResult(long nowNanos, float sizeRatio, float confidence, long detectNanos) {
+        results++;
+        busyNanos += detectNanos;
+        if (Float.isNaN(sizeRatio)) {
+            lastRatio = Float.NaN;
+            velocity = 0;
+            intervalNanos = Math.min(maxIntervalNanos, intervalNanos * 2);
+            return;
+        }
+
+        if (!Float.isNaN(lastRatio) && nowNanos > lastResultNanos) {
+            float instant = (float) ((sizeRatio - lastRatio)
+                    / ((nowNanos - lastResultNanos) / NANOS_PER_SECOND));
+            velocity += VELOCITY_SMOOTHING * (instant - velocity);
+        }
+        lastRatio = sizeRatio;
+        lastResultNanos = nowNanos;
+
+        float distance = Math.abs(1f - sizeRatio);
+        long next;
+        if (distance <= nearMargin) {
+            next = minIntervalNanos;
+        } else if (distance >= farMargin) {
+            next = maxIntervalNanos;
+        } else {
+            float t = (distance - nearMargin) / (farMargin - nearMargin);
+            next = minIntervalNanos + (long) (t * (maxIntervalNanos - minIntervalNanos));
+        }
+        //置信度为1时拉长到与最慢速率的中点
+        next += (long) (confidence * (maxIntervalNanos - next) / 2);
+
+        //正在向阈值变化：在预计到达阈值之前至少再采样两次
+        boolean approaching = sizeRatio < 1f ? velocity > 0 : velocity < 0;
+        if (approaching) {
+            double etaNanos = (distance - nearMargin) / Math.abs(velocity) * NANOS_PER_SECOND;
+            next = Math.min(next, (long) Math.max(0, etaNanos / 2));
+        }
+        intervalNanos = Math.max(minIntervalNanos, Math.min(maxIntervalNanos, next));
+    }
+
+    /** 最快的采样间隔 */
+    public long getMinIntervalMillis() {
+        return minIntervalNanos / NANOS_PER_MILLI;
+    }
+
+    /** 当前的采样间隔 */
+    public long getIntervalMillis() {
+        return intervalNanos / NANOS_PER_MILLI;
+    }
+
+    /** 从第一次采样开始的平均采样速率（次/分钟） */
+    public float getDetectionsPerMinute() {
+        long elapsed = lastCaptureNanos - firstCaptureNanos;
+        if (firstCaptureNanos == Long.MIN_VALUE || elapsed <= 0) return 0;
+        return (float) ((captures - 1) * 60 * NANOS_PER_SECOND / elapsed);
+    }
+
+    /** 检测器的占空比：检测所用时间占总时间的比例 */
+    public float getDutyCycle() {
+        long elapsed = lastCaptureNanos - firstCaptureNanos + intervalNanos;
+        if (firstCaptureNanos == Long.MIN_VALUE || elapsed <= 0) return 0;
+        return Math.min(1f, (float) busyNanos / elapsed);
+    }
+
+    public long getCaptures() {
+        return captures;
+    }
+
+    public long getResults() {
+        return results;
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return "AdaptiveScheduler{interval=" + getIntervalMillis() + "ms"
+                + ", captures=" + captures
+                + ", results=" + results
+                + ", perMinute=" + getDetectionsPerMinute()
+                + ", dutyCycle=" + getDutyCycle() + "}";
+    }
+}
@@ -0,0 +1,256 @@
+package com.yx.eyeapp.pipeline;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.graphics.ImageFormat;
+import android.graphics.SurfaceTexture;
+import android.hardware.camera2.CameraAccessException;
+import android.hardware.camera2.CameraCharacteristics;
+import android.hardware.camera2.CameraManager;
+import android.hardware.camera2.params.StreamConfigurationMap;
+import android.util.Log;
+import android.util.Size;
+import android.util.SizeF;
+import android.view.Surface;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.yx.eyeapp.model.DistanceEstimator;
+import com.yx.eyeapp.model.FrameMetadata;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 根据相机的能力选出的前置摄像头和输出配置：YUV输出尺寸以及检测时的旋转角度。
+ * 相机提供了焦距和传感器尺寸时，还包括把人脸尺寸换算为距离的DistanceEstimator。
+ *
+ * 前置摄像头的ID和参数在进程内缓存；ID同时保存在SharedPreferences中，
+ * 服务冷启动时直接读取这个摄像头的参数，不用遍历所有摄像头。
+ */
+public class CameraStreamConfig {
+    private static final String TAG = "CameraStreamConfig";
+    private static final String PREFS_NAME = "camera";
+    private static final String KEY_FRONT_CAMERA_ID = "front_camera_id";
+
+    //进程内缓存，由类锁保护
+    private static String cachedCameraId;
+    private static CameraCharacteristics cachedCharacteristics;
+
+    private final String cameraId;
+    private final CameraCharacteristics characteristics;
+    private final int width;
+    private final int height;
+    private final int rotation;
+    @Nullable
+    private final DistanceEstimator distanceEstimator;
+
+    private CameraStreamConfig(String cameraId, CameraCharacteristics characteristics,
+                               int width, int height, int rotation,
+                               @Nullable DistanceEstimator distanceEstimator) {
+        this.cameraId = cameraId;
+        this.characteristics = characteristics;
+        this.width = width;
+        this.height = height;
+        this.rotation = rotation;
+        this.distanceEstimator = distanceEstimator;
+    }
+
+    /**
+     * 选择前置摄像头及其输出尺寸
+     *
+     * @param displayRotation 屏幕方向，Surface.ROTATION_*
+     * @param withPreview     是否同时输出到TextureView，此时尺寸也必须是SurfaceTexture支持的
+     * @return 没有前置摄像头或者没有可用的尺寸时返回null
+     */
+    @Nullable
+    public static CameraStreamConfig selectFrontCamera(@NonNull Context context,
+                                                       @NonNull StreamSizeSelector selector,
+                                                       int displayRotation,
+                                                       boolean withPreview)
+            throws CameraAccessException {
+        long start = System.nanoTime();
+        String frontCameraId;
+        CameraCharacteristics characteristics;
+        synchronized (CameraStreamConfig.class) {
+            if (cachedCameraId == null) {
+                findFrontCamera(context);
+            }
+            frontCameraId = cachedCameraId;
+            characteristics = cachedCharacteristics;
+        }
+        if (frontCameraId == null) {
+            Log.e(TAG, "selectFrontCamera: no front camera");
+            return null;
+        }
+        Log.d(TAG, "selectFrontCamera: camera " + frontCameraId
+                + " found in " + (System.nanoTime() - start) / 1000 + "us");
+        return select(frontCameraId, characteristics, selector, displayRotation, withPreview);
+    }
+
+    //持有类锁时调用，找到时写入缓存
+    private static void findFrontCamera(Context context) throws CameraAccessException {
+        CameraManager cameraManager = (CameraManager) context.getSystemService(Context.CAMERA_SERVICE);
+        SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        String savedId = prefs.getString(KEY_FRONT_CAMERA_ID, null);
+        if (savedId != null) {
+            try {
+                CameraCharacteristics saved = cameraManager.getCameraCharacteristics(savedId);
+                if (isFront(saved)) {
+                    cachedCameraId = savedId;
+                    cachedCharacteristics = saved;
+                    return;
+                }
+            } catch (IllegalArgumentException e) {
+                //摄像头已经不存在，重新查找
+                Log.w(TAG, "findFrontCamera: saved camera " + savedId + " is gone");
+            }
+        }
+        for (String cameraId : cameraManager.getCameraIdList()) {
+            CameraCharacteristics candidate = cameraManager.getCameraCharacteristics(cameraId);
+            if (isFront(candidate)) {
+                cachedCameraId = cameraId;
+                cachedCharacteristics = candidate;
+                prefs.edit().putString(KEY_FRONT_CAMERA_ID, cameraId).apply();
+                return;
+            }
+        }
+    }
+
+    private static boolean isFront(CameraCharacteristics characteristics) {
+        Integer facing = characteristics.get(CameraCharacteristics.LENS_FACING);
+        return facing != null && facing == CameraCharacteristics.LENS_FACING_FRONT;
+    }
+
+    @Nullable
+    static CameraStreamConfig select(@NonNull String cameraId,
+                                     @NonNull CameraCharacteristics characteristics,
+                                     @NonNull StreamSizeSelector selector,
+                                     int displayRotation,
+                                     boolean withPreview) {
+        StreamConfigurationMap map =
+                characteristics.get(CameraCharacteristics.SCALER_STREAM_CONFIGURATION_MAP);
+        if (map == null) {
+            Log.e(TAG, "select: no stream configuration map");
+            return null;
+        }
+        Size[] yuvSizes = map.getOutputSizes(ImageFormat.YUV_420_888);
+        if (yuvSizes == null) yuvSizes = new Size[0];
+        List<Size> sizes = new ArrayList<>(Arrays.asList(yuvSizes));
+        if (withPreview) {
+            Size[] previewSizes = map.getOutputSizes(SurfaceTexture.class);
+            Set<Size> supported = new HashSet<>(
+                    Arrays.asList(previewSizes != null ? previewSizes : new Size[0]));
+            sizes.retainAll(supported);
+        }
+        int[] widths = new int[sizes.size()];
+        int[] heights = new int[sizes.size()];
+        for (int i = 0; i < sizes.size(); i++) {
+            widths[i] = sizes.get(i).getWidth();
+            heights[i] = sizes.get(i).getHeight();
+        }
+
+        float[] focalLengths =
+                characteristics.get(CameraCharacteristics.LENS_INFO_AVAILABLE_FOCAL_LENGTHS);
+        SizeF sensorSize = characteristics.get(CameraCharacteristics.SENSOR_INFO_PHYSICAL_SIZE);
+        float focalLength = focalLengths != null && focalLengths.length > 0 ? focalLengths[0] : 0;
+        float sensorWidth = sensorSize != null ? sensorSize.getWidth() : 0;
+        float sensorHeight = sensorSize != null ? sensorSize.getHeight() : 0;
+        int index = selector.select(widths, heights, focalLength, sensorWidth, sensorHeight);
+        if (index < 0) {
+            Log.e(TAG, "select: no usable YUV size in " + sizes);
+            return null;
+        }
+
+        Integer sensorOrientation = characteristics.get(CameraCharacteristics.SENSOR_ORIENTATION);
+        int rotation = StreamSizeSelector.getRotation(
+                sensorOrientation != null ? sensorOrientation : 0,
+                toDegrees(displayRotation), true);
+        DistanceEstimator estimator = DistanceEstimator.fromIntrinsics(
+                focalLength, sensorWidth, sensorHeight, widths[index], heights[index]);
+        CameraStreamConfig config = new CameraStreamConfig(
+                cameraId, characteristics, widths[index], heights[index], rotation, estimator);
+        Log.d(TAG, "select: " + config + " by " + selector
+                + " (sizes " + sizes
+                + ", focalLength=" + focalLength + "mm"
+                + ", sensor=" + sensorSize + "mm"
+                + ", sensorOrientation=" + sensorOrientation
+                + ", facePixels=" + (focalLength > 0 && sensorSize != null
+                        ? selector.getFacePixels(widths[index], heights[index],
+                                focalLength, sensorWidth, sensorHeight)
+                        : "unknown") + ")");
+        return config;
+    }
+
+    private static int toDegrees(int displayRotation) {
+        switch (displayRotation) {
+            case Surface.ROTATION_90:
+                return 90;
+            case Surface.ROTATION_180:
+                return 180;
+            case Surface.ROTATION_270:
+                return 270;
+            default:
+                return 0;
+        }
+    }
+
+    @NonNull
+    public String getCameraId() {
+        return cameraId;
+    }
+
+    @NonNull
+    public CameraCharacteristics getCharacteristics() {
+        return characteristics;
+    }
+
+    /** 相机输出的宽度（传感器方向） */
+    public int getWidth() {
+        return width;
+    }
+
+    /** 相机输出的高度（传感器方向） */
+    public int getHeight() {
+        return height;
+    }
+
+    /** 检测时图像需要顺时针旋转的角度 */
+    public int getRotation() {
+        return rotation;
+    }
+
+    /** 旋转后（正立）图像的宽度 */
+    public int getUprightWidth() {
+        return rotation % 180 == 0 ? width : height;
+    }
+
+    /** 旋转后（正立）图像的高度 */
+    public int getUprightHeight() {
+        return rotation % 180 == 0 ? height : width;
+    }
+
+    /** 缺少焦距或传感器尺寸时为null */
+    @Nullable
+    public DistanceEstimator getDistanceEstimator() {
+        return distanceEstimator;
+    }
+
+    @NonNull
+    public FrameMetadata getFrameMetadata() {
+        return new FrameMetadata(width, height, rotation, distanceEstimator);
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return "CameraStreamConfig{camera=" + cameraId
+                + ", size=" + width + "x" + height
+                + ", rotation=" + rotation
+                + ", " + distanceEstimator + "}";
+    }
+}
@@ -0,0 +1,14 @@
+package com.yx.eyeapp.pipeline;
+
+/**
+ * 决定相机的某一帧是否进入流水线，不需要的帧在采集阶段直接关闭，不做任何转换。
+ */
+public interface CaptureGate {
+    /** 每一帧都进入流水线 */
+    CaptureGate ALWAYS = nowNanos -> true;
+
+    /** 丢弃所有帧，例如流水线暂时没有使用者时 */
+    CaptureGate NEVER = nowNanos -> false;
+
+    boolean shouldCapture(long nowNanos);
+}
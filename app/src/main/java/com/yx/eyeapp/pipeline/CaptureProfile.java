@@ -0,0 +1,111 @@
+package com.yx.eyeapp.pipeline;
+
+import androidx.annotation.NonNull;
+
+/**
+ * 相机重复请求的配置：传感器帧率以及是否在3A收敛后锁定。
+ *
+ * 后台检测每秒只需要几帧，传感器和ISP没有必要按满帧率运行、持续做自动曝光/白平衡/对焦。
+ * targetFps为0时使用设备默认的帧率范围。
+ */
+public class CaptureProfile {
+    /** 前台预览：默认帧率，持续3A */
+    public static final CaptureProfile PREVIEW = new Builder().build();
+
+    private final float targetFps;
+    private final boolean lock3a;
+    private final int convergedFrames;
+    private final int relockLumaDelta;
+
+    private CaptureProfile(Builder builder) {
+        this.targetFps = builder.targetFps;
+        this.lock3a = builder.lock3a;
+        this.convergedFrames = builder.convergedFrames;
+        this.relockLumaDelta = builder.relockLumaDelta;
+    }
+
+    /** 需要覆盖的最低帧率，0表示不限制 */
+    public float getTargetFps() {
+        return targetFps;
+    }
+
+    public boolean isLock3a() {
+        return lock3a;
+    }
+
+    /** 连续多少帧3A都收敛后锁定 */
+    public int getConvergedFrames() {
+        return convergedFrames;
+    }
+
+    /** 锁定后平均亮度（0~255）变化超过该值时解锁重新收敛 */
+    public int getRelockLumaDelta() {
+        return relockLumaDelta;
+    }
+
+    /**
+     * 在设备支持的帧率范围中选择上限不低于targetFps的最低的一个，上限相同时选下限更低的（允许在暗处降帧）。
+     * 都达不到targetFps时选上限最高的。
+     *
+     * @return 选中的下标，没有可选范围时返回-1
+     */
+    public static int chooseFpsRange(@NonNull int[] lowers, @NonNull int[] uppers, float targetFps) {
+        int best = -1;
+        for (int i = 0; i < uppers.length; i++) {
+            if (best < 0) {
+                best = i;
+                continue;
+            }
+            boolean covers = uppers[i] >= targetFps;
+            boolean bestCovers = uppers[best] >= targetFps;
+            if (covers != bestCovers) {
+                if (covers) best = i;
+            } else if (uppers[i] != uppers[best]) {
+                if (covers == (uppers[i] < uppers[best])) best = i;
+            } else if (lowers[i] < lowers[best]) {
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return "CaptureProfile{targetFps=" + targetFps
+                + ", lock3a=" + lock3a
+                + ", convergedFrames=" + convergedFrames
+                + ", relockLumaDelta=" + relockLumaDelta + "}";
+    }
+
+    public static class Builder {
+        private float targetFps;
+        private boolean lock3a;
+        private int convergedFrames = 5;
+        private int relockLumaDelta = 40;
+
+        public Builder setTargetFps(float targetFps) {
+            this.targetFps = targetFps;
+            return this;
+        }
+
+        public Builder setLock3a(boolean lock3a) {
+            this.lock3a = lock3a;
+            return this;
+        }
+
+        public Builder setConvergedFrames(int convergedFrames) {
+            this.convergedFrames = convergedFrames;
+            return this;
+        }
+
+        public Builder setRelockLumaDelta(int relockLumaDelta) {
+            this.relockLumaDelta = relockLumaDelta;
+            return this;
+        }
+
+        public CaptureProfile build() {
+            return new CaptureProfile(this);
+        }
+    }
+}
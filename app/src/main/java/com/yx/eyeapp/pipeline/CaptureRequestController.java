@@ -0,0 +1,230 @@
+package com.yx.eyeapp.pipeline;
+
+import android.hardware.camera2.CameraAccessException;
+import android.hardware.camera2.CameraCaptureSession;
+import android.hardware.camera2.CameraCharacteristics;
+import android.hardware.camera2.CameraDevice;
+import android.hardware.camera2.CaptureRequest;
+import android.hardware.camera2.CaptureResult;
+import android.hardware.camera2.TotalCaptureResult;
+import android.media.Image;
+import android.os.Handler;
+import android.util.Log;
+import android.util.Range;
+import android.view.Surface;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 按CaptureProfile构建并维护相机的重复请求。
+ *
+ * 选择帧率范围；开启3A锁定时，在连续若干帧AE/AWB/AF都收敛后锁定，
+ * 锁定期间画面平均亮度变化过大时解锁重新收敛。所有方法都在采集线程上调用。
+ */
+class CaptureRequestController {
+    private static final String TAG = "CaptureRequest";
+    //亮度采样的网格大小
+    private static final int LUMA_GRID = 16;
+
+    private final CaptureProfile profile;
+    private final CaptureRequest.Builder requestBuilder;
+    private final boolean aeLockAvailable;
+    private final boolean awbLockAvailable;
+    private final boolean afTriggerAvailable;
+    private CameraCaptureSession session;
+    private Handler handler;
+
+    private boolean paused;
+    private boolean locked;
+    private int convergedFrames;
+    private int lockedLuma = -1;
+    private volatile long locks;
+    private volatile long unlocks;
+
+    CaptureRequestController(@NonNull CameraDevice camera,
+                             @NonNull CameraCharacteristics characteristics,
+                             @NonNull CaptureProfile profile,
+                             @NonNull List<Surface> targets) throws CameraAccessException {
+        this.profile = profile;
+        requestBuilder = camera.createCaptureRequest(CameraDevice.TEMPLATE_PREVIEW);
+        for (Surface surface : targets) {
+            requestBuilder.addTarget(surface);
+        }
+
+        Boolean aeLock = characteristics.get(CameraCharacteristics.CONTROL_AE_LOCK_AVAILABLE);
+        Boolean awbLock = characteristics.get(CameraCharacteristics.CONTROL_AWB_LOCK_AVAILABLE);
+        int[] afModes = characteristics.get(CameraCharacteristics.CONTROL_AF_AVAILABLE_MODES);
+        aeLockAvailable = aeLock != null && aeLock;
+        awbLockAvailable = awbLock != null && awbLock;
+        afTriggerAvailable = afModes != null && afModes.length > 1;
+
+        Range<Integer>[] fpsRanges =
+                characteristics.get(CameraCharacteristics.CONTROL_AE_AVAILABLE_TARGET_FPS_RANGES);
+        Range<Integer> fpsRange = null;
+        if (profile.getTargetFps() > 0 && fpsRanges != null) {
+            fpsRange = chooseFpsRange(fpsRanges, profile.getTargetFps());
+            if (fpsRange != null) {
+                requestBuilder.set(CaptureRequest.CONTROL_AE_TARGET_FPS_RANGE, fpsRange);
+            }
+        }
+        Log.d(TAG, profile + " -> fpsRange=" + fpsRange
+                + " (available " + Arrays.toString(fpsRanges)
+                + ", aeLock=" + aeLockAvailable
+                + ", awbLock=" + awbLockAvailable
+                + ", afModes=" + Arrays.toString(afModes)
+                + ", hardwareLevel="
+                + characteristics.get(CameraCharacteristics.INFO_SUPPORTED_HARDWARE_LEVEL) + ")");
+    }
+
+    @Nullable
+    private static Range<Integer> chooseFpsRange(Range<Integer>[] ranges, float targetFps) {
+        int[] lowers = new int[ranges.length];
+        int[] uppers = new int[ranges.length];
+        for (int i = 0; i < ranges.length; i++) {
+            lowers[i] = ranges[i].getLower();
+            uppers[i] = ranges[i].getUpper();
+        }
+        int index = CaptureProfile.chooseFpsRange(lowers, uppers, targetFps);
+        return index < 0 ? null : ranges[index];
+    }
+
+    /**
+     * 会话配置完成后开始重复请求
+     */
+    void start(@NonNull CameraCaptureSession session, @NonNull Handler handler)
+            throws CameraAccessException {
+        this.session = session;
+        this.handler = handler;
+        setRepeating();
+    }
+
+    /**
+     * 停止重复请求，会话和相机保持打开
+     */
+    void pause() throws CameraAccessException {
+        session.stopRepeating();
+        paused = true;
+    }
+
+    void resume() throws CameraAccessException {
+        setRepeating();
+        paused = false;
+    }
+
+    private void setRepeating() throws CameraAccessException {
+        session.setRepeatingRequest(requestBuilder.build(),
+                profile.isLock3a() ? captureCallback : null, handler);
+    }
+
+    private final CameraCaptureSession.CaptureCallback captureCallback =
+            new CameraCaptureSession.CaptureCallback() {
+        @Override
+        public void onCaptureCompleted(@NonNull CameraCaptureSession session,
+                                       @NonNull CaptureRequest request,
+                                       @NonNull TotalCaptureResult result) {
+            if (locked) return;
+            convergedFrames = isConverged(result) ? convergedFrames + 1 : 0;
+            if (convergedFrames >= profile.getConvergedFrames()) {
+                setLocked(true);
+            }
+        }
+    };
+
+    private static boolean isConverged(CaptureResult result) {
+        Integer ae = result.get(CaptureResult.CONTROL_AE_STATE);
+        Integer awb = result.get(CaptureResult.CONTROL_AWB_STATE);
+        Integer af = result.get(CaptureResult.CONTROL_AF_STATE);
+        boolean aeConverged = ae == null
+                || ae == CaptureResult.CONTROL_AE_STATE_CONVERGED
+                || ae == CaptureResult.CONTROL_AE_STATE_FLASH_REQUIRED;
+        boolean awbConverged = awb == null || awb == CaptureResult.CONTROL_AWB_STATE_CONVERGED;
+        //定焦的前置摄像头AF一直是INACTIVE
+        boolean afConverged = af == null
+                || af == CaptureResult.CONTROL_AF_STATE_INACTIVE
+                || af == CaptureResult.CONTROL_AF_STATE_PASSIVE_FOCUSED
+                || af == CaptureResult.CONTROL_AF_STATE_FOCUSED_LOCKED;
+        return aeConverged && awbConverged && afConverged;
+    }
+
+    /**
+     * 锁定期间报告一帧的亮度，变化过大时解锁
+     */
+    void onImage(@NonNull Image image) {
+        if (!locked) return;
+        int luma = sampleMeanLuma(image);
+        if (lockedLuma < 0) {
+            lockedLuma = luma;
+        } else if (Math.abs(luma - lockedLuma) > profile.getRelockLumaDelta()) {
+            Log.d(TAG, "onImage: luma " + lockedLuma + " -> " + luma + ", unlocking 3A");
+            setLocked(false);
+        }
+    }
+
+    private void setLocked(boolean lock) {
+        //暂停后仍可能收到之前请求的结果，此时不能重新开始重复请求
+        if (session == null || paused) return;
+        try {
+            if (aeLockAvailable) {
+                requestBuilder.set(CaptureRequest.CONTROL_AE_LOCK, lock);
+            }
+            if (awbLockAvailable) {
+                requestBuilder.set(CaptureRequest.CONTROL_AWB_LOCK, lock);
+            }
+            setRepeating();
+            if (afTriggerAvailable) {
+                //连续对焦模式下AF_TRIGGER_START锁定焦点，CANCEL恢复连续对焦
+                requestBuilder.set(CaptureRequest.CONTROL_AF_TRIGGER, lock
+                        ? CaptureRequest.CONTROL_AF_TRIGGER_START
+                        : CaptureRequest.CONTROL_AF_TRIGGER_CANCEL);
+                session.capture(requestBuilder.build(), null, handler);
+                requestBuilder.set(CaptureRequest.CONTROL_AF_TRIGGER,
+                        CaptureRequest.CONTROL_AF_TRIGGER_IDLE);
+            }
+        } catch (CameraAccessException | IllegalStateException e) {
+            Log.w(TAG, "setLocked: " + lock + " failed", e);
+            return;
+        }
+        locked = lock;
+        convergedFrames = 0;
+        lockedLuma = -1;
+        if (lock) {
+            locks++;
+        } else {
+            unlocks++;
+        }
+    }
+
+    /**
+     * 在Y平面上按网格稀疏采样，估计画面平均亮度
+     */
+    private static int sampleMeanLuma(Image image) {
+        Image.Plane plane = image.getPlanes()[0];
+        ByteBuffer y = plane.getBuffer();
+        int rowStride = plane.getRowStride();
+        int pixelStride = plane.getPixelStride();
+        int width = image.getWidth();
+        int height = image.getHeight();
+        long sum = 0;
+        for (int i = 0; i < LUMA_GRID; i++) {
+            int row = (2 * i + 1) * height / (2 * LUMA_GRID);
+            for (int j = 0; j < LUMA_GRID; j++) {
+                int col = (2 * j + 1) * width / (2 * LUMA_GRID);
+                sum += y.get(row * rowStride + col * pixelStride) & 0xFF;
+            }
+        }
+        return (int) (sum / (LUMA_GRID * LUMA_GRID));
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return "CaptureRequestController{locked=" + locked
+                + ", locks=" + locks
+                + ", unlocks=" + unlocks + "}";
+    }
+}
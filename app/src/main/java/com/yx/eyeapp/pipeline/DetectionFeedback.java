@@ -0,0 +1,14 @@
+package com.yx.eyeapp.pipeline;
+
+/**
+ * 接收每一帧与距离阈值的比较结果，用于决定之后如何采样。只在决策线程上调用。
+ */
+public interface DetectionFeedback {
+    /**
+     * @param nowNanos    得到结果的时间
+     * @param sizeRatio   滤波后人脸尺寸与预设人脸尺寸之比，没有检测到人脸时为NaN
+     * @param confidence  当前距离判断的置信度（见DistanceFilter），0到1
+     * @param detectNanos 检测所用的时间
+     */
+    void onResult(long nowNanos, float sizeRatio, float confidence, long detectNanos);
+}
@@ -0,0 +1,105 @@
+package com.yx.eyeapp.pipeline;
+
+import android.graphics.Rect;
+
+import androidx.annotation.NonNull;
+
+import com.google.mlkit.vision.face.Face;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 一帧的检测结果，交给FrameSink处理。帧缓冲只在FrameSink.onDetection期间有效。
+ *
+ * 只检测了帧的一部分区域时，人脸坐标相对该区域，加上offsetX/offsetY才是整帧（正立图像）中的坐标。
+ * 人脸的尺寸不受影响。
+ * 关键帧之间由LumaTracker跟踪的帧没有Face，只有跟踪得到的人脸框（整帧正立图像中的坐标），
+ * 以int保存，跟踪的帧不分配Rect。
+ */
+public class DetectionResult {
+    private final Frame frame;
+    private final List<Face> faces;
+    private final int offsetX;
+    private final int offsetY;
+    private final boolean tracked;
+    private final int trackedLeft;
+    private final int trackedTop;
+    private final int trackedRight;
+    private final int trackedBottom;
+    private final long detectNanos;
+
+    public DetectionResult(@NonNull Frame frame, @NonNull List<Face> faces,
+                           int offsetX, int offsetY, long detectNanos) {
+        this.frame = frame;
+        this.faces = faces;
+        this.offsetX = offsetX;
+        this.offsetY = offsetY;
+        this.tracked = false;
+        this.trackedLeft = 0;
+        this.trackedTop = 0;
+        this.trackedRight = 0;
+        this.trackedBottom = 0;
+        this.detectNanos = detectNanos;
+    }
+
+    /** 跟踪得到的结果 */
+    public DetectionResult(@NonNull Frame frame, int left, int top, int right, int bottom,
+                           long detectNanos) {
+        this.frame = frame;
+        this.faces = Collections.emptyList();
+        this.offsetX = 0;
+        this.offsetY = 0;
+        this.tracked = true;
+        this.trackedLeft = left;
+        this.trackedTop = top;
+        this.trackedRight = right;
+        this.trackedBottom = bottom;
+        this.detectNanos = detectNanos;
+    }
+
+    @NonNull
+    public Frame getFrame() {
+        return frame;
+    }
+
+    @NonNull
+    public List<Face> getFaces() {
+        return faces;
+    }
+
+    public int getOffsetX() {
+        return offsetX;
+    }
+
+    public int getOffsetY() {
+        return offsetY;
+    }
+
+    /**
+     * 把跟踪得到的人脸框写入out，ML Kit检测的帧返回false
+     */
+    public boolean getTrackedBox(@NonNull Rect out) {
+        if (!tracked) return false;
+        out.set(trackedLeft, trackedTop, trackedRight, trackedBottom);
+        return true;
+    }
+
+    /** 跟踪得到的人脸框的宽度，ML Kit检测的帧为0 */
+    public int getTrackedWidth() {
+        return trackedRight - trackedLeft;
+    }
+
+    public int getTrackedHeight() {
+        return trackedBottom - trackedTop;
+    }
+
+    public boolean isTracked() {
+        return tracked;
+    }
+
+    /** 检测（或跟踪）这一帧所用的时间 */
+    public long getDetectNanos() {
+        return detectNanos;
+    }
+}
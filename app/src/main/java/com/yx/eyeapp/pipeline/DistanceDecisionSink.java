@@ -0,0 +1,136 @@
+package com.yx.eyeapp.pipeline;
+
+import android.graphics.Rect;
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.mlkit.vision.face.Face;
+import com.yx.eyeapp.model.DistanceEstimator;
+import com.yx.eyeapp.model.FaceProfile;
+import com.yx.eyeapp.model.FaceProfiles;
+import com.yx.eyeapp.model.TheFaceProfile;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 把检测到的人脸与预设人脸信息比较，在主线程上通知距离是否过近。
+ * 关键帧之间跟踪的帧使用跟踪得到的人脸框尺寸。帧带有DistanceEstimator时按距离比较（见FaceProfile），
+ * 后台检测的分辨率可以与拍摄预设人脸时不同。
+ * 单帧的读数先经过DistanceFilter滤波，带滞回地判断，避免结果来回跳变；预设人脸改变时重新开始滤波。
+ * 设置了DetectionFeedback时，把每一帧与阈值的距离反馈给它，决定之后如何采样。
+ * 从传感器曝光到主线程收到判断结果的时间记录在getDecisionLatency中。
+ * 每一帧不分配对象：直接与预设人脸比较尺寸，主线程只回调最新的判断，还没回调时不重复post。
+ */
+public class DistanceDecisionSink implements FrameSink {
+
+    /** 距离判断结果的回调，在主线程调用 */
+    public interface Listener {
+        void onTooClose();
+
+        void onDistanceOk();
+    }
+
+    private final TheFaceProfile theFaceProfile = TheFaceProfile.getInstance();
+    private final Listener listener;
+    @Nullable
+    private final DetectionFeedback feedback;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Runnable notifier = this::notifyListener;
+    //决策线程写、主线程读的最新判断；notifyPending为true时notifier已经post，还没有运行
+    private volatile boolean latestTooClose;
+    private volatile long latestCaptureNanos;
+    private final AtomicBoolean notifyPending = new AtomicBoolean();
+    private volatile boolean shutdown;
+    //只在决策线程访问
+    private final DistanceFilter filter;
+    @Nullable
+    private FaceProfile filteredThreshold;
+    private final LatencyHistogram decisionLatency = new LatencyHistogram("decision");
+
+    public DistanceDecisionSink(@NonNull Listener listener) {
+        this(listener, null);
+    }
+
+    public DistanceDecisionSink(@NonNull Listener listener, @Nullable DetectionFeedback feedback) {
+        this(listener, feedback, new DistanceFilter());
+    }
+
+    public DistanceDecisionSink(@NonNull Listener listener, @Nullable DetectionFeedback feedback,
+                                @NonNull DistanceFilter filter) {
+        this.listener = listener;
+        this.feedback = feedback;
+        this.filter = filter;
+    }
+
+    @Override
+    public void onDetection(@NonNull DetectionResult result) {
+        long nowNanos = System.nanoTime();
+        FaceProfile threshold = theFaceProfile.getFaceProfile();
+        if (threshold != filteredThreshold) {
+            filter.reset();
+            filteredThreshold = threshold;
+        }
+        float ratio = threshold != null ? getSizeRatio(result, threshold) : Float.NaN;
+        if (Float.isNaN(ratio)) {
+            if (feedback != null) {
+                feedback.onResult(nowNanos, Float.NaN, 0f, result.getDetectNanos());
+            }
+            return;
+        }
+        boolean tooClose = filter.update(nowNanos, ratio);
+        if (feedback != null) {
+            feedback.onResult(nowNanos, filter.getEstimate(), filter.getConfidence(),
+                    result.getDetectNanos());
+        }
+        latestTooClose = tooClose;
+        latestCaptureNanos = result.getFrame().getCaptureNanos();
+        if (notifyPending.compareAndSet(false, true)) {
+            mainHandler.post(notifier);
+        }
+    }
+
+    //主线程调用。两个字段分开读取，最多与更新的一帧错开，只影响延迟统计
+    private void notifyListener() {
+        notifyPending.set(false);
+        if (shutdown) return;
+        long captureNanos = latestCaptureNanos;
+        boolean tooClose = latestTooClose;
+        decisionLatency.record(System.nanoTime() - captureNanos);
+        if (tooClose) {
+            listener.onTooClose();
+        } else {
+            listener.onDistanceOk();
+        }
+    }
+
+    /** 从传感器曝光到在主线程回调Listener的时间 */
+    @NonNull
+    public LatencyHistogram getDecisionLatency() {
+        return decisionLatency;
+    }
+
+    /** 检测到的人脸与预设人脸的尺寸之比（见FaceProfile.getSizeRatio），没有人脸时为NaN */
+    private static float getSizeRatio(DetectionResult result, FaceProfile threshold) {
+        DistanceEstimator estimator = result.getFrame().getMetadata().getDistanceEstimator();
+        if (result.isTracked()) {
+            return threshold.getSizeRatioOf(result.getTrackedWidth(), result.getTrackedHeight(),
+                    Float.NaN, estimator);
+        }
+        if (result.getFaces().isEmpty()) {
+            return Float.NaN;
+        }
+        Face face = result.getFaces().get(0);
+        Rect box = face.getBoundingBox();
+        return threshold.getSizeRatioOf(box.width(), box.height(),
+                FaceProfiles.getEyeDistance(face), estimator);
+    }
+
+    /** 停止后不再回调 */
+    public void shutdown() {
+        shutdown = true;
+        mainHandler.removeCallbacks(notifier);
+    }
+}
@@ -0,0 +1,145 @@
+package com.yx.eyeapp.pipeline;
+
+import androidx.annotation.NonNull;
+
+/**
+ * 对人脸尺寸比（与预设人脸之比，1表示正好在阈值上）做时间滤波并带滞回地判断距离是否过近，
+ * 避免单帧的检测误差让结果来回跳变。
+ *
+ * 滤波是一维卡尔曼滤波，把尺寸比看作随机游走：过程噪声按两次读数之间的时间累积，
+ * 测量噪声由最近windowSize次读数的逐次差估计（差分消除了人在移动造成的缓慢变化）。
+ * 滤波值超过enterRatio时进入过近状态，低于exitRatio时才退出。
+ * 置信度表示滤波值离切换边界有几个标准差，达到3个标准差时为1，
+ * 读数不满一个窗口时按比例降低。置信度高说明状态短时间内不会变化，可以放慢采样。
+ * 读数保存在float环形缓冲中，update不分配内存。只在一个线程上调用。
+ */
+public class DistanceFilter {
+    /** 滤波值超过该值时进入过近状态 */
+    public static final float DEFAULT_ENTER_RATIO = 1f;
+    /** 滤波值低于该值时退出过近状态 */
+    public static final float DEFAULT_EXIT_RATIO = 0.95f;
+    public static final int DEFAULT_WINDOW_SIZE = 8;
+    //尺寸比每秒的方差（一秒内的变化标准差约0.07），对应人正常前后移动的速度
+    private static final float PROCESS_NOISE = 0.005f;
+    //读数太少时使用的测量噪声方差（标准差约0.05）
+    private static final float INITIAL_MEASUREMENT_NOISE = 0.0025f;
+    //测量噪声方差的下限，避免完全相信单次读数
+    private static final float MIN_MEASUREMENT_NOISE = 0.0001f;
+    //置信度为1时离边界的标准差个数
+    private static final float CONFIDENT_SIGMAS = 3f;
+    private static final double NANOS_PER_SECOND = 1e9;
+
+    private final float enterRatio;
+    private final float exitRatio;
+    private final float[] window;
+    private int windowCount;
+    private int windowNext;
+
+    private boolean initialized;
+    private float estimate;
+    private float variance;
+    private long lastNanos;
+    private boolean tooClose;
+    private float confidence;
+
+    public DistanceFilter() {
+        this(DEFAULT_ENTER_RATIO, DEFAULT_EXIT_RATIO, DEFAULT_WINDOW_SIZE);
+    }
+
+    public DistanceFilter(float enterRatio, float exitRatio, int windowSize) {
+        if (exitRatio > enterRatio) {
+            throw new IllegalArgumentException(
+                    "exitRatio must not exceed enterRatio: " + exitRatio + " > " + enterRatio);
+        }
+        if (windowSize < 2) {
+            throw new IllegalArgumentException("windowSize must be at least 2: " + windowSize);
+        }
+        this.enterRatio = enterRatio;
+        this.exitRatio = exitRatio;
+        this.window = new float[windowSize];
+    }
+
+    /**
+     * 加入一次读数，返回滤波后是否过近。没有人脸（NaN）时不改变状态
+     */
+    public boolean update(long nowNanos, float sizeRatio) {
+        if (Float.isNaN(sizeRatio)) {
+            return tooClose;
+        }
+        record(sizeRatio);
+        if (!initialized) {
+            initialized = true;
+            estimate = sizeRatio;
+            variance = INITIAL_MEASUREMENT_NOISE;
+        } else {
+            float seconds = (float) (Math.max(0, nowNanos - lastNanos) / NANOS_PER_SECOND);
+            float predicted = variance + PROCESS_NOISE * seconds;
+            float gain = predicted / (predicted + measurementNoise());
+            estimate += gain * (sizeRatio - estimate);
+            variance = (1 - gain) * predicted;
+        }
+        lastNanos = nowNanos;
+
+        if (tooClose ? estimate < exitRatio : estimate > enterRatio) {
+            tooClose = !tooClose;
+        }
+        float margin = tooClose ? estimate - exitRatio : enterRatio - estimate;
+        float sigma = (float) Math.sqrt(variance);
+        confidence = Math.max(0f, Math.min(1f, margin / (CONFIDENT_SIGMAS * sigma)));
+        //读数还不满一个窗口时测量噪声的估计不可靠
+        confidence *= (float) windowCount / window.length;
+        return tooClose;
+    }
+
+    private void record(float sizeRatio) {
+        window[windowNext] = sizeRatio;
+        windowNext = (windowNext + 1) % window.length;
+        if (windowCount < window.length) {
+            windowCount++;
+        }
+    }
+
+    //相邻读数之差的方差是测量噪声方差的两倍
+    private float measurementNoise() {
+        if (windowCount < 3) return INITIAL_MEASUREMENT_NOISE;
+        int oldest = (windowNext - windowCount + window.length) % window.length;
+        float sum = 0;
+        for (int i = 1; i < windowCount; i++) {
+            float diff = window[(oldest + i) % window.length]
+                    - window[(oldest + i - 1) % window.length];
+            sum += diff * diff;
+        }
+        return Math.max(MIN_MEASUREMENT_NOISE, sum / (windowCount - 1) / 2);
+    }
+
+    /** 清除历史，例如重新拍摄了预设人脸 */
+    public void reset() {
+        initialized = false;
+        windowCount = 0;
+        windowNext = 0;
+        tooClose = false;
+        confidence = 0;
+    }
+
+    public boolean isTooClose() {
+        return tooClose;
+    }
+
+    /** 滤波后的尺寸比，还没有读数时为NaN */
+    public float getEstimate() {
+        return initialized ? estimate : Float.NaN;
+    }
+
+    /** 当前状态的置信度，0到1 */
+    public float getConfidence() {
+        return confidence;
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return "DistanceFilter{estimate=" + getEstimate()
+                + ", tooClose=" + tooClose
+                + ", confidence=" + confidence + "}";
+    }
+}
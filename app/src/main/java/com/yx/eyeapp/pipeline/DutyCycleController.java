@@ -0,0 +1,229 @@
+package com.yx.eyeapp.pipeline;
+
+import androidx.annotation.NonNull;
+
+/**
+ * 在连续采样和间歇（burst）采样之间切换的CaptureGate。
+ *
+ * 连续模式下由AdaptiveScheduler决定采样间隔。最近windowSize次读数都稳定时切换到间歇模式：
+ * 停止相机的重复请求（相机保持打开）idleMillis，恢复后采样burstFrames帧做一次判断，
+ * 读数仍然稳定就继续休眠，否则立即回到连续模式。
+ *
+ * 读数稳定指：一直没有人脸；或者每次都有人脸，并且尺寸比的波动不超过stableSpread、离阈值至少minDistance，
+ * 或者距离判断的置信度（见DistanceFilter）不低于stableConfidence。
+ * shouldCapture只在采集线程调用，onResult只在决策线程调用。
+ */
+public class DutyCycleController implements CaptureGate, DetectionFeedback {
+
+    /** 暂停相机输出，由FramePipeline.pauseStreaming实现 */
+    public interface Streaming {
+        void pauseFor(long millis);
+    }
+
+    public enum Mode {
+        CONTINUOUS,
+        BURST
+    }
+
+    private static final long NANOS_PER_MILLI = 1_000_000L;
+
+    private final AdaptiveScheduler scheduler;
+    private final Streaming streaming;
+    private final int burstFrames;
+    private final long idleMillis;
+    private final long burstSpacingNanos;
+    private final float stableSpread;
+    private final float minDistance;
+    private final float stableConfidence;
+
+    //决策线程写，采集线程读
+    private volatile Mode mode = Mode.CONTINUOUS;
+
+    //只在采集线程访问
+    private long lastBurstCapture = Long.MIN_VALUE;
+
+    //只在决策线程访问
+    private final float[] window;
+    private int windowCount;
+    private int windowNext;
+    private float lastConfidence;
+    private int burstResults;
+    private long resumeAtNanos = Long.MIN_VALUE;
+    private volatile long bursts;
+    private volatile long modeSwitches;
+
+    private DutyCycleController(Builder builder) {
+        this.scheduler = builder.scheduler;
+        this.streaming = builder.streaming;
+        this.burstFrames = builder.burstFrames;
+        this.idleMillis = builder.idleMillis;
+        this.burstSpacingNanos = builder.burstSpacingMillis * NANOS_PER_MILLI;
+        this.stableSpread = builder.stableSpread;
+        this.minDistance = builder.minDistance;
+        this.stableConfidence = builder.stableConfidence;
+        this.window = new float[builder.windowSize];
+    }
+
+    @Override
+    public boolean shouldCapture(long nowNanos) {
+        if (mode == Mode.CONTINUOUS) {
+            return scheduler.shouldCapture(nowNanos);
+        }
+        if (lastBurstCapture != Long.MIN_VALUE && nowNanos - lastBurstCapture < burstSpacingNanos) {
+            return false;
+        }
+        lastBurstCapture = nowNanos;
+        return true;
+    }
+
+    @Override
+    public void onResult(long nowNanos, float sizeRatio, float confidence, long detectNanos) {
+        scheduler.onResult(nowNanos, sizeRatio, confidence, detectNanos);
+        record(sizeRatio);
+        lastConfidence = confidence;
+        if (mode == Mode.CONTINUOUS) {
+            if (isStable()) {
+                mode = Mode.BURST;
+                modeSwitches++;
+                idle(nowNanos);
+            }
+            return;
+        }
+        //暂停之前已经在流水线中的帧
+        if (nowNanos < resumeAtNanos) return;
+        if (!isStable()) {
+            mode = Mode.CONTINUOUS;
+            modeSwitches++;
+            return;
+        }
+        if (++burstResults >= burstFrames) {
+            idle(nowNanos);
+        }
+    }
+
+    private void idle(long nowNanos) {
+        burstResults = 0;
+        resumeAtNanos = nowNanos + idleMillis * NANOS_PER_MILLI;
+        bursts++;
+        streaming.pauseFor(idleMillis);
+    }
+
+    private void record(float sizeRatio) {
+        window[windowNext] = sizeRatio;
+        windowNext = (windowNext + 1) % window.length;
+        if (windowCount < window.length) {
+            windowCount++;
+        }
+    }
+
+    private boolean isStable() {
+        if (windowCount < window.length) return false;
+        int missing = 0;
+        float min = Float.MAX_VALUE;
+        float max = -Float.MAX_VALUE;
+        for (float ratio : window) {
+            if (Float.isNaN(ratio)) {
+                missing++;
+                continue;
+            }
+            min = Math.min(min, ratio);
+            max = Math.max(max, ratio);
+        }
+        if (missing == window.length) return true;
+        if (missing > 0) return false;
+        if (lastConfidence >= stableConfidence) return true;
+        return max - min <= stableSpread
+                && Math.abs(1f - min) >= minDistance
+                && Math.abs(1f - max) >= minDistance
+                //不能跨过阈值
+                && (max < 1f || min > 1f);
+    }
+
+    @NonNull
+    public Mode getMode() {
+        return mode;
+    }
+
+    /** 进入休眠的次数 */
+    public long getBursts() {
+        return bursts;
+    }
+
+    public long getModeSwitches() {
+        return modeSwitches;
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return "DutyCycleController{mode=" + mode
+                + ", bursts=" + bursts
+                + ", modeSwitches=" + modeSwitches
+                + ", " + scheduler + "}";
+    }
+
+    public static class Builder {
+        private final AdaptiveScheduler scheduler;
+        private final Streaming streaming;
+        private int burstFrames = 3;
+        private long idleMillis = 3000;
+        private long burstSpacingMillis;
+        private int windowSize = 5;
+        private float stableSpread = 0.05f;
+        private float minDistance = 0.15f;
+        private float stableConfidence = 0.9f;
+
+        public Builder(@NonNull AdaptiveScheduler scheduler, @NonNull Streaming streaming) {
+            this.scheduler = scheduler;
+            this.streaming = streaming;
+            this.burstSpacingMillis = scheduler.getMinIntervalMillis();
+        }
+
+        /** 每次醒来采样的帧数 */
+        public Builder setBurstFrames(int burstFrames) {
+            this.burstFrames = burstFrames;
+            return this;
+        }
+
+        /** 两次采样之间停止相机输出的时间 */
+        public Builder setIdleMillis(long idleMillis) {
+            this.idleMillis = idleMillis;
+            return this;
+        }
+
+        /** 一次采样中相邻两帧的最小间隔，默认为连续模式最快的采样间隔 */
+        public Builder setBurstSpacingMillis(long burstSpacingMillis) {
+            this.burstSpacingMillis = burstSpacingMillis;
+            return this;
+        }
+
+        /** 判断是否稳定时参考的最近读数个数 */
+        public Builder setWindowSize(int windowSize) {
+            this.windowSize = windowSize;
+            return this;
+        }
+
+        public Builder setStableSpread(float stableSpread) {
+            this.stableSpread = stableSpread;
+            return this;
+        }
+
+        public Builder setMinDistance(float minDistance) {
+            this.minDistance = minDistance;
+            return this;
+        }
+
+        /** 距离判断的置信度不低于该值时，不论波动和离阈值的距离都认为读数稳定 */
+        public Builder setStableConfidence(float stableConfidence) {
+            this.stableConfidence = stableConfidence;
+            return this;
+        }
+
+        public DutyCycleController build() {
+            if (burstFrames <= 0 || windowSize <= 0 || idleMillis <= 0) {
+                throw new IllegalStateException("burstFrames, windowSize and idleMillis must be positive");
+            }
+            return new DutyCycleController(this);
+        }
+    }
+}
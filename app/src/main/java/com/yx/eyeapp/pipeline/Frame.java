@@ -0,0 +1,73 @@
+package com.yx.eyeapp.pipeline;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.yx.eyeapp.model.FrameMetadata;
+import com.yx.eyeapp.util.FrameBufferPool;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 流水线中传递的一帧NV21图像。缓冲来自FrameBufferPool，处理结束后由流水线调用release归还。
+ */
+public class Frame {
+    private final ByteBuffer data;
+    private final FrameMetadata metadata;
+    private final long sequence;
+    private final long timestampNanos;
+    private final long captureNanos;
+    @Nullable
+    private final FrameBufferPool pool;
+
+    /**
+     * @param captureNanos 传感器时间戳换算到System.nanoTime的时间，用于计算帧的延迟
+     */
+    public Frame(@NonNull ByteBuffer data, @NonNull FrameMetadata metadata, long sequence,
+                 long timestampNanos, long captureNanos, @Nullable FrameBufferPool pool) {
+        this.data = data;
+        this.metadata = metadata;
+        this.sequence = sequence;
+        this.timestampNanos = timestampNanos;
+        this.captureNanos = captureNanos;
+        this.pool = pool;
+    }
+
+    @NonNull
+    public ByteBuffer getData() {
+        return data;
+    }
+
+    @NonNull
+    public FrameMetadata getMetadata() {
+        return metadata;
+    }
+
+    /** 帧序号，从0开始递增 */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /** 传感器时间戳（Image.getTimestamp） */
+    public long getTimestampNanos() {
+        return timestampNanos;
+    }
+
+    /** 传感器曝光时的System.nanoTime */
+    public long getCaptureNanos() {
+        return captureNanos;
+    }
+
+    /** 从传感器曝光到现在的时间 */
+    public long getAgeNanos() {
+        return System.nanoTime() - captureNanos;
+    }
+
+    /** 把缓冲归还到缓冲池，之后不能再访问数据。同时结束这一帧的Tracer.FRAME */
+    public void release() {
+        Tracer.endAsync(Tracer.FRAME, sequence);
+        if (pool != null) {
+            pool.release(data);
+        }
+    }
+}
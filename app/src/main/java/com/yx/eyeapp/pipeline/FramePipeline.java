@@ -0,0 +1,1059 @@
+package com.yx.eyeapp.pipeline;
+
+import android.Manifest;
+import android.content.Context;
+import android.graphics.ImageFormat;
+import android.hardware.camera2.CameraAccessException;
+import android.hardware.camera2.CameraCaptureSession;
+import android.hardware.camera2.CameraCharacteristics;
+import android.hardware.display.DisplayManager;
+import android.hardware.camera2.CameraDevice;
+import android.hardware.camera2.CameraManager;
+import android.media.Image;
+import android.media.ImageReader;
+import android.os.Handler;
+import android.graphics.Rect;
+import android.os.HandlerThread;
+import android.os.SystemClock;
+import android.util.Log;
+import android.view.Display;
+import android.view.Surface;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.RequiresPermission;
+
+import com.google.mlkit.vision.face.Face;
+import com.yx.eyeapp.model.FrameMetadata;
+import com.yx.eyeapp.util.BitmapUtils;
+import com.yx.eyeapp.util.FaceProcessor;
+import com.yx.eyeapp.util.FrameBufferPool;
+import com.yx.eyeapp.util.LumaTracker;
+import com.yx.eyeapp.util.Nv21Cropper;
+import com.yx.eyeapp.util.YuvPlaneCopier;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 相机帧处理流水线：采集 → 转换 → 检测 → 决策，CameraSource和BackgroundProcessService共用。
+ *
+ * 每个阶段运行在自己的线程上，相邻阶段之间用有界的单生产者/单消费者队列连接：
+ * 采集线程（相机回调）按CaptureGate挑选帧；转换线程把YUV_420_888转换为NV21；
+ * 检测线程同步运行ML Kit；决策线程把结果交给FrameSink（绘制或者距离判断）。
+ * 因此第N帧检测的同时第N+1帧已经在转换。下游队列已满时上游直接丢帧，不做无用的转换。
+ * 开启关键帧跟踪时，检测线程只在关键帧上运行ML Kit，其余帧在亮度平面上跟踪上一次的人脸框。
+ * 各阶段和每一帧的trace见Tracer。
+ *
+ * 设置了FrameSource（例如回放录制的文件）时不打开相机，由回放线程代替采集和转换阶段。
+ *
+ * 一个实例只能start/stop一次。运行中可以用retarget换成新的使用者（检测器、FrameSink、CaptureGate、
+ * 重复请求配置），相机和会话保持打开，见SharedPipeline。
+ */
+public class FramePipeline {
+    private static final String TAG = "FramePipeline";
+    private static final int IMAGE_FORMAT = ImageFormat.YUV_420_888;
+    //转换队列一张、正在转换一张，acquireLatestImage还需要两张
+    private static final int MAX_IMAGES = 4;
+    //转换中一帧、检测队列一帧、检测中一帧、决策队列两帧、决策中一帧
+    private static final int POOL_SIZE = 6;
+    private static final long JOIN_TIMEOUT_MS = 500;
+    //尽快回放时检测队列已满的等待间隔
+    private static final long REPLAY_WAIT_NANOS = 1_000_000L;
+    //park后队列中剩下的帧交给它，不再交给原来的使用者
+    private static final FrameSink DISCARD = result -> { };
+
+    /** 有输入队列的阶段 */
+    public enum Stage {
+        CONVERT,
+        DETECT,
+        DECIDE
+    }
+
+    private final Context context;
+    private final StreamSizeSelector sizeSelector;
+    //start时根据相机能力确定
+    @Nullable
+    private volatile CameraStreamConfig streamConfig;
+    @Nullable
+    private volatile FrameMetadata metadata;
+    //retarget时更换，各阶段每一帧读取一次
+    private volatile FaceProcessor processor;
+    private volatile FrameSink sink;
+    //决策线程调用sink时持有，更换sink时等待正在进行的onDetection结束
+    private final Object sinkLock = new Object();
+    private volatile CaptureGate captureGate;
+    //持有cameraLock时访问
+    private CaptureProfile captureProfile;
+    @Nullable
+    private final Surface previewSurface;
+    @Nullable
+    private final FrameSource frameSource;
+    //重复请求是否输出到预览，持有cameraLock时访问
+    private boolean previewTargeted;
+
+    private final FrameBufferPool bufferPool = new FrameBufferPool(POOL_SIZE);
+    private final YuvPlaneCopier planeCopier = new YuvPlaneCopier();
+    private final boolean roiTracking;
+    //只在检测线程访问，为null时每帧检测整帧
+    @Nullable
+    private RoiTracker roiTracker;
+    @Nullable
+    private ByteBuffer cropBuffer;
+    private volatile boolean keyframeTracking;
+    //只在检测线程访问，keyframeTracking为false时每一帧都运行ML Kit
+    @Nullable
+    private LumaTracker lumaTracker;
+    @Nullable
+    private KeyframeScheduler keyframeScheduler;
+    private FrameTransform frameTransform;
+    private final int[] trackedRect = new int[4];
+    private final SpscQueue<Image> convertQueue = new SpscQueue<>("convert", 1);
+    private final SpscQueue<Frame> detectQueue = new SpscQueue<>("detect", 1);
+    private final SpscQueue<DetectionResult> decideQueue = new SpscQueue<>("decide", 2);
+
+    private final Object cameraLock = new Object();
+    private volatile boolean running;
+    private boolean started;
+    private HandlerThread captureThread;
+    private Handler captureHandler;
+    private Thread convertThread;
+    private Thread detectThread;
+    private Thread decideThread;
+    //设置了frameSource时代替captureThread和convertThread
+    private Thread replayThread;
+    private CameraDevice camera;
+    private CameraCaptureSession session;
+    private ImageReader imageReader;
+    //只在采集线程访问
+    private CaptureRequestController requestController;
+    private long streamingSinceNanos = -1;
+    //采集线程写
+    private volatile long streamingNanos;
+    private volatile long startNanos;
+    private volatile long stopNanos;
+    //启动耗时，采集线程写，还没有发生时为0
+    private volatile long cameraOpenedNanos;
+    private volatile long sessionConfiguredNanos;
+    private volatile long firstFrameNanos;
+
+    private final PipelineMetrics metrics = new PipelineMetrics();
+    //传感器时间戳是否与SystemClock.elapsedRealtimeNanos同一时基，否则与System.nanoTime相同
+    private boolean realtimeTimestamps;
+    //采集线程写
+    private volatile long capturedFrames;
+    private volatile long gatedFrames;
+    //ImageReader中还没来得及处理就被更新的帧覆盖的帧
+    private volatile long overwrittenFrames;
+    //转换线程写
+    private volatile long skippedFrames;
+    private long nextSequence;
+    //检测线程写
+    private volatile long failedDetections;
+
+    private final ArrayBlockingQueue<ByteBuffer> snapshots = new ArrayBlockingQueue<>(1);
+    private volatile boolean snapshotRequested;
+
+    private FramePipeline(Builder builder) {
+        this.context = builder.context;
+        this.sizeSelector = builder.sizeSelector;
+        this.streamConfig = builder.streamConfig;
+        this.processor = builder.processor;
+        this.sink = builder.sink;
+        this.captureGate = builder.captureGate;
+        this.captureProfile = builder.captureProfile;
+        this.previewSurface = builder.previewSurface;
+        this.previewTargeted = builder.previewSurface != null;
+        this.frameSource = builder.frameSource;
+        this.roiTracking = builder.roiTracking;
+        this.keyframeTracking = builder.keyframeTracking;
+    }
+
+    /**
+     * 按相机能力确定输出尺寸，启动各阶段线程并打开前置摄像头。设置了FrameSource时开始回放
+     */
+    @RequiresPermission(Manifest.permission.CAMERA)
+    public void start() {
+        synchronized (cameraLock) {
+            if (started) return;
+            started = true;
+        }
+        FrameMetadata frameMetadata;
+        if (frameSource != null) {
+            frameMetadata = frameSource.getMetadata();
+        } else {
+            CameraStreamConfig config = streamConfig;
+            if (config == null) {
+                try {
+                    config = CameraStreamConfig.selectFrontCamera(
+                            context, sizeSelector, getDisplayRotation(), previewSurface != null);
+                } catch (CameraAccessException e) {
+                    Log.e(TAG, "start: cannot read camera characteristics", e);
+                }
+                if (config == null) return;
+                streamConfig = config;
+            }
+            frameMetadata = config.getFrameMetadata();
+            Integer timestampSource = config.getCharacteristics()
+                    .get(CameraCharacteristics.SENSOR_INFO_TIMESTAMP_SOURCE);
+            realtimeTimestamps = timestampSource != null
+                    && timestampSource == CameraCharacteristics.SENSOR_INFO_TIMESTAMP_SOURCE_REALTIME;
+        }
+        metadata = frameMetadata;
+        int width = frameMetadata.getWidth();
+        int height = frameMetadata.getHeight();
+        int rotation = frameMetadata.getRotation();
+        if (roiTracking) {
+            roiTracker = new RoiTracker(width, height, rotation);
+        }
+        //retarget可能打开关键帧跟踪，总是创建
+        lumaTracker = new LumaTracker();
+        keyframeScheduler = new KeyframeScheduler();
+        frameTransform = new FrameTransform(width, height, rotation);
+        synchronized (cameraLock) {
+            running = true;
+        }
+        startNanos = System.nanoTime();
+        detectThread = new Thread(this::runDetect, TAG + "-detect");
+        decideThread = new Thread(this::runDecide, TAG + "-decide");
+        detectThread.start();
+        decideThread.start();
+        if (frameSource != null) {
+            replayThread = new Thread(this::runReplay, TAG + "-replay");
+            replayThread.start();
+            return;
+        }
+        captureThread = new HandlerThread(TAG + "-capture");
+        captureThread.start();
+        captureHandler = new Handler(captureThread.getLooper());
+        convertThread = new Thread(this::runConvert, TAG + "-convert");
+        convertThread.start();
+        openCamera();
+    }
+
+    /**
+     * 关闭相机，结束各阶段线程并归还所有缓冲
+     */
+    public void stop() {
+        synchronized (cameraLock) {
+            if (!running) return;
+            running = false;
+            if (session != null) {
+                try {
+                    session.stopRepeating();
+                } catch (CameraAccessException | IllegalStateException e) {
+                    Log.w(TAG, "stop: stopRepeating failed", e);
+                }
+                session.close();
+                session = null;
+            }
+            if (camera != null) {
+                camera.close();
+                camera = null;
+            }
+        }
+        //先结束采集（或回放）线程，之后不会再有新的帧进入流水线
+        if (captureThread != null) {
+            captureThread.quitSafely();
+            join(captureThread);
+        }
+        if (replayThread != null) {
+            replayThread.interrupt();
+            join(replayThread);
+        }
+        stopNanos = System.nanoTime();
+        if (streamingSinceNanos >= 0) {
+            streamingNanos += stopNanos - streamingSinceNanos;
+            streamingSinceNanos = -1;
+        }
+
+        convertQueue.close();
+        detectQueue.close();
+        decideQueue.close();
+        for (Thread thread : new Thread[] {convertThread, detectThread, decideThread}) {
+            if (thread == null) continue;
+            thread.interrupt();
+            join(thread);
+        }
+
+        Image image;
+        while ((image = convertQueue.poll()) != null) {
+            image.close();
+        }
+        Frame frame;
+        while ((frame = detectQueue.poll()) != null) {
+            frame.release();
+        }
+        DetectionResult result;
+        while ((result = decideQueue.poll()) != null) {
+            result.getFrame().release();
+        }
+        if (imageReader != null) {
+            imageReader.close();
+            imageReader = null;
+        }
+        planeCopier.release();
+        if (frameSource != null) {
+            frameSource.close();
+        }
+        Log.d(TAG, "stop: " + getStats());
+    }
+
+    private static void join(Thread thread) {
+        try {
+            thread.join(JOIN_TIMEOUT_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private int getDisplayRotation() {
+        DisplayManager displayManager =
+                (DisplayManager) context.getSystemService(Context.DISPLAY_SERVICE);
+        Display display = displayManager.getDisplay(Display.DEFAULT_DISPLAY);
+        return display != null ? display.getRotation() : Surface.ROTATION_0;
+    }
+
+    @RequiresPermission(Manifest.permission.CAMERA)
+    private void openCamera() {
+        CameraManager cameraManager = (CameraManager) context.getSystemService(Context.CAMERA_SERVICE);
+        try {
+            cameraManager.openCamera(streamConfig.getCameraId(), new CameraDevice.StateCallback() {
+                @Override
+                public void onOpened(@NonNull CameraDevice device) {
+                    synchronized (cameraLock) {
+                        if (!running) {
+                            device.close();
+                            return;
+                        }
+                        camera = device;
+                        cameraOpenedNanos = System.nanoTime();
+                        createSession();
+                    }
+                }
+
+                @Override
+                public void onDisconnected(@NonNull CameraDevice device) {
+                    Log.d(TAG, "onDisconnected: ");
+                    device.close();
+                }
+
+                @Override
+                public void onError(@NonNull CameraDevice device, int error) {
+                    Log.e(TAG, "onError: " + error);
+                    device.close();
+                }
+            }, captureHandler);
+        } catch (CameraAccessException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    //在采集线程上调用，持有cameraLock
+    private void createSession() {
+        imageReader = ImageReader.newInstance(
+                metadata.getWidth(), metadata.getHeight(), IMAGE_FORMAT, MAX_IMAGES);
+        imageReader.setOnImageAvailableListener(this::onImageAvailable, captureHandler);
+
+        List<Surface> outputs = new ArrayList<>();
+        outputs.add(imageReader.getSurface());
+        if (previewSurface != null) {
+            outputs.add(previewSurface);
+        }
+        try {
+            camera.createCaptureSession(outputs, new CameraCaptureSession.StateCallback() {
+                @Override
+                public void onConfigured(@NonNull CameraCaptureSession captureSession) {
+                    synchronized (cameraLock) {
+                        if (!running) {
+                            captureSession.close();
+                            return;
+                        }
+                        session = captureSession;
+                        sessionConfiguredNanos = System.nanoTime();
+                        try {
+                            Log.d(TAG, "createSession: preview session is created.");
+                            CaptureRequestController controller = new CaptureRequestController(
+                                    camera, streamConfig.getCharacteristics(), captureProfile,
+                                    getRequestOutputs());
+                            controller.start(captureSession, captureHandler);
+                            requestController = controller;
+                            streamingSinceNanos = System.nanoTime();
+                        } catch (CameraAccessException e) {
+                            throw new RuntimeException(e);
+                        }
+                    }
+                }
+
+                @Override
+                public void onConfigureFailed(@NonNull CameraCaptureSession captureSession) {
+                    Log.e(TAG, "createSession: configure failed");
+                }
+            }, captureHandler);
+        } catch (CameraAccessException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * 采集阶段：取最新的一帧，不需要的帧或者转换队列已满时直接关闭
+     */
+    private void onImageAvailable(ImageReader reader) {
+        Tracer.beginSection(Tracer.CAPTURE);
+        try {
+            captureImage(reader);
+        } finally {
+            Tracer.endSection();
+        }
+    }
+
+    private void captureImage(ImageReader reader) {
+        Image image = acquireLatestImage(reader);
+        if (image == null) return;
+        metrics.record(PipelineMetrics.Metric.ACQUIRE, sensorClockNanos() - image.getTimestamp());
+        if (capturedFrames++ == 0) {
+            firstFrameNanos = System.nanoTime();
+            Log.d(TAG, "onImageAvailable: first frame after " + getFirstFrameMillis()
+                    + "ms (camera opened " + (cameraOpenedNanos - startNanos) / 1_000_000L
+                    + "ms, session configured " + (sessionConfiguredNanos - startNanos) / 1_000_000L
+                    + "ms)");
+        }
+        if (requestController != null) {
+            requestController.onImage(image);
+        }
+        if (!running || (!snapshotRequested && !captureGate.shouldCapture(System.nanoTime()))) {
+            gatedFrames++;
+            image.close();
+            return;
+        }
+        if (!convertQueue.offer(image)) {
+            image.close();
+        }
+    }
+
+    /**
+     * 与ImageReader.acquireLatestImage相同，同时统计被跳过的旧帧
+     */
+    @Nullable
+    private Image acquireLatestImage(ImageReader reader) {
+        Image image = null;
+        try {
+            Image next;
+            while ((next = reader.acquireNextImage()) != null) {
+                if (image != null) {
+                    image.close();
+                    overwrittenFrames++;
+                }
+                image = next;
+            }
+        } catch (IllegalStateException e) {
+            //已经取出了maxImages帧，先处理拿到的最新一帧
+            if (image == null) throw e;
+        }
+        return image;
+    }
+
+    //与传感器时间戳同一时基的当前时间
+    private long sensorClockNanos() {
+        return realtimeTimestamps ? SystemClock.elapsedRealtimeNanos() : System.nanoTime();
+    }
+
+    /**
+     * 转换阶段：YUV_420_888转换为NV21。检测队列已满时跳过，避免转换之后又被丢弃
+     */
+    private void runConvert() {
+        int frameSize = BitmapUtils.getNV21BufferSize(metadata.getWidth(), metadata.getHeight());
+        Image image;
+        while ((image = convertQueue.take()) != null) {
+            if (detectQueue.isFull() && !snapshotRequested) {
+                skippedFrames++;
+                image.close();
+                continue;
+            }
+            ByteBuffer buffer = bufferPool.acquire(frameSize);
+            long sequence = nextSequence++;
+            Tracer.beginAsync(Tracer.FRAME, sequence);
+            Tracer.beginSection(Tracer.CONVERT);
+            long startNanos = System.nanoTime();
+            long timestamp;
+            try {
+                BitmapUtils.yuv420ThreePlanesToNV21(image.getPlanes(),
+                        metadata.getWidth(), metadata.getHeight(), buffer, planeCopier);
+                timestamp = image.getTimestamp();
+            } catch (IllegalStateException e) {
+                //ImageReader已关闭
+                Log.w(TAG, "runConvert: image is no longer valid", e);
+                bufferPool.release(buffer);
+                Tracer.endAsync(Tracer.FRAME, sequence);
+                continue;
+            } finally {
+                image.close();
+                Tracer.endSection();
+            }
+            long endNanos = System.nanoTime();
+            metrics.record(PipelineMetrics.Metric.CONVERT, endNanos - startNanos);
+            long captureNanos = timestamp - sensorClockNanos() + endNanos;
+            Frame frame = new Frame(buffer, metadata, sequence, timestamp, captureNanos, bufferPool);
+            offerSnapshot(frame);
+            if (!detectQueue.offer(frame)) {
+                frame.release();
+            }
+        }
+    }
+
+    /**
+     * 回放阶段：代替采集和转换，从FrameSource取帧交给检测阶段。
+     * 按录制速度回放时与相机一样，检测队列已满就丢帧；尽快回放时等待检测阶段，不丢帧
+     */
+    private void runReplay() {
+        FrameSource source = frameSource;
+        Frame frame;
+        try {
+            while (running && (frame = source.next()) != null) {
+                Tracer.beginAsync(Tracer.FRAME, frame.getSequence());
+                if (capturedFrames++ == 0) {
+                    firstFrameNanos = System.nanoTime();
+                }
+                if (!snapshotRequested && !captureGate.shouldCapture(System.nanoTime())) {
+                    gatedFrames++;
+                    frame.release();
+                    continue;
+                }
+                offerSnapshot(frame);
+                if (!source.isRealtime()) {
+                    while (running && detectQueue.isFull()) {
+                        LockSupport.parkNanos(REPLAY_WAIT_NANOS);
+                    }
+                }
+                if (!running || !detectQueue.offer(frame)) {
+                    frame.release();
+                }
+            }
+        } catch (InterruptedException e) {
+            return;
+        }
+        Log.d(TAG, "runReplay: finished after " + capturedFrames + " frames");
+    }
+
+    /**
+     * 检测阶段：同步运行ML Kit。跟踪到人脸时只检测人脸附近的区域，没有检测到再检测整帧
+     */
+    private void runDetect() {
+        Frame frame;
+        while ((frame = detectQueue.take()) != null) {
+            DetectionResult result;
+            long startNanos = System.nanoTime();
+            Tracer.beginSection(Tracer.DETECT);
+            try {
+                result = detect(frame, startNanos);
+            } catch (InterruptedException e) {
+                frame.release();
+                break;
+            } catch (ExecutionException e) {
+                failedDetections++;
+                Log.e(TAG, "runDetect: detection failed", e);
+                frame.release();
+                continue;
+            } finally {
+                Tracer.endSection();
+            }
+            metrics.record(PipelineMetrics.Metric.DETECT, result.getDetectNanos());
+            if (!decideQueue.offer(result)) {
+                frame.release();
+            }
+        }
+    }
+
+    private DetectionResult detect(Frame frame, long startNanos)
+            throws ExecutionException, InterruptedException {
+        if (!keyframeTracking) {
+            if (lumaTracker.isTracking()) {
+                lumaTracker.reset();
+                keyframeScheduler.onLost();
+            }
+            return detectFaces(frame, startNanos);
+        }
+        if (!keyframeScheduler.isKeyframeDue()) {
+            DetectionResult tracked = trackFace(frame, startNanos);
+            if (tracked != null) {
+                return tracked;
+            }
+        }
+        DetectionResult result = detectFaces(frame, startNanos);
+        startTracking(frame, result);
+        return result;
+    }
+
+    /**
+     * 在亮度平面上跟踪上一次的人脸框，跟丢时返回null，由调用方运行ML Kit
+     */
+    @Nullable
+    private DetectionResult trackFace(Frame frame, long startNanos) {
+        FrameMetadata frameMetadata = frame.getMetadata();
+        int width = frameMetadata.getWidth();
+        Tracer.beginSection(Tracer.TRACK);
+        boolean tracked;
+        try {
+            tracked = lumaTracker.track(frame.getData(), width, width, frameMetadata.getHeight());
+        } finally {
+            Tracer.endSection();
+        }
+        if (!tracked) {
+            keyframeScheduler.onLost();
+            return null;
+        }
+        keyframeScheduler.onTracked(lumaTracker.getConfidence());
+        lumaTracker.getBox(trackedRect);
+        frameTransform.rawToUpright(trackedRect);
+        if (roiTracker != null) {
+            roiTracker.onFace(trackedRect[0], trackedRect[1], trackedRect[2], trackedRect[3]);
+        }
+        return new DetectionResult(frame, trackedRect[0], trackedRect[1], trackedRect[2],
+                trackedRect[3], System.nanoTime() - startNanos);
+    }
+
+    /**
+     * 用关键帧上检测到的人脸框重新开始跟踪
+     */
+    private void startTracking(Frame frame, DetectionResult result) {
+        boolean found = false;
+        if (!result.getFaces().isEmpty()) {
+            Rect box = result.getFaces().get(0).getBoundingBox();
+            trackedRect[0] = box.left + result.getOffsetX();
+            trackedRect[1] = box.top + result.getOffsetY();
+            trackedRect[2] = box.right + result.getOffsetX();
+            trackedRect[3] = box.bottom + result.getOffsetY();
+            frameTransform.uprightToRaw(trackedRect);
+            FrameMetadata frameMetadata = frame.getMetadata();
+            int width = frameMetadata.getWidth();
+            found = lumaTracker.init(frame.getData(), width, width, frameMetadata.getHeight(),
+                    trackedRect[0], trackedRect[1], trackedRect[2], trackedRect[3]);
+        } else {
+            lumaTracker.reset();
+        }
+        keyframeScheduler.onKeyframe(found);
+    }
+
+    private DetectionResult detectFaces(Frame frame, long startNanos)
+            throws ExecutionException, InterruptedException {
+        FaceProcessor processor = this.processor;
+        RoiTracker.Crop crop = roiTracker != null ? roiTracker.nextCrop() : null;
+        if (crop != null) {
+            if (cropBuffer == null) {
+                cropBuffer = ByteBuffer.allocateDirect(Nv21Cropper.getCroppedSize(
+                        metadata.getWidth(), metadata.getHeight()));
+            }
+            Nv21Cropper.crop(frame.getData(), metadata.getWidth(), metadata.getHeight(),
+                    crop.left, crop.top, crop.width, crop.height, cropBuffer);
+            FrameMetadata cropMetadata = new FrameMetadata(
+                    crop.width, crop.height, metadata.getRotation());
+            List<Face> faces = detectWithMlKit(processor, cropBuffer, cropMetadata);
+            long cropNanos = System.nanoTime() - startNanos;
+            roiTracker.onCropDetection(!faces.isEmpty(), cropNanos);
+            if (!faces.isEmpty()) {
+                track(faces, crop.offsetX, crop.offsetY);
+                return new DetectionResult(frame, faces, crop.offsetX, crop.offsetY, cropNanos);
+            }
+        }
+        long fullStartNanos = System.nanoTime();
+        List<Face> faces = detectWithMlKit(processor, frame.getData(), frame.getMetadata());
+        long endNanos = System.nanoTime();
+        if (roiTracker != null) {
+            roiTracker.onFullDetection(endNanos - fullStartNanos);
+            track(faces, 0, 0);
+        }
+        return new DetectionResult(frame, faces, 0, 0, endNanos - startNanos);
+    }
+
+    private static List<Face> detectWithMlKit(FaceProcessor processor, ByteBuffer data,
+                                              FrameMetadata frameMetadata)
+            throws ExecutionException, InterruptedException {
+        Tracer.beginSection(Tracer.MLKIT);
+        try {
+            return processor.detect(data, frameMetadata);
+        } finally {
+            Tracer.endSection();
+        }
+    }
+
+    private void track(List<Face> faces, int offsetX, int offsetY) {
+        if (faces.isEmpty()) {
+            roiTracker.onLost();
+            return;
+        }
+        Rect box = faces.get(0).getBoundingBox();
+        roiTracker.onFace(box.left + offsetX, box.top + offsetY,
+                box.right + offsetX, box.bottom + offsetY);
+    }
+
+    /**
+     * 决策阶段：交给FrameSink处理，结束后归还帧缓冲
+     */
+    private void runDecide() {
+        DetectionResult result;
+        while ((result = decideQueue.take()) != null) {
+            long startNanos = System.nanoTime();
+            Tracer.beginSection(Tracer.DECIDE);
+            try {
+                synchronized (sinkLock) {
+                    sink.onDetection(result);
+                }
+            } catch (RuntimeException e) {
+                Log.e(TAG, "runDecide: sink failed", e);
+            } finally {
+                result.getFrame().release();
+                Tracer.endSection();
+            }
+            metrics.record(PipelineMetrics.Metric.CALLBACK, System.nanoTime() - startNanos);
+            metrics.record(PipelineMetrics.Metric.AGE, result.getFrame().getAgeNanos());
+        }
+    }
+
+    //持有cameraLock时调用
+    private List<Surface> getRequestOutputs() {
+        List<Surface> outputs = new ArrayList<>();
+        outputs.add(imageReader.getSurface());
+        if (previewTargeted && previewSurface != null) {
+            outputs.add(previewSurface);
+        }
+        return outputs;
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    /** builder的预览输出是否在会话中，不在的话不能retarget，需要新的会话 */
+    public boolean canRetarget(@NonNull Builder builder) {
+        return running && (builder.previewSurface == null || builder.previewSurface == previewSurface);
+    }
+
+    /**
+     * 把运行中的流水线交给新的使用者：换成builder中的检测器、FrameSink、CaptureGate、
+     * 重复请求配置和关键帧跟踪设置，相机和会话保持打开。相机、输出尺寸和ROI设置不变。
+     * builder的预览输出必须是null或者创建时的那一个；为null时重复请求不再输出到预览，
+     * 返回后调用方就可以释放预览的Surface，原来的FrameSink也不会再被调用。
+     * 会等待采集线程换好重复请求，不能在采集线程和决策线程调用
+     */
+    public void retarget(@NonNull Builder builder) {
+        if (builder.processor == null || builder.sink == null) {
+            throw new IllegalStateException("processor and sink must be set");
+        }
+        if (!canRetarget(builder)) {
+            throw new IllegalArgumentException("preview output is not in the running session");
+        }
+        processor = builder.processor;
+        setSink(builder.sink);
+        captureGate = builder.captureGate;
+        keyframeTracking = builder.keyframeTracking;
+        updateRequest(builder.captureProfile, builder.previewSurface != null);
+    }
+
+    /**
+     * 暂时没有使用者：丢弃所有帧，重复请求不再输出到预览，相机保持打开并继续3A。
+     * 队列中剩下的帧不再交给原来的FrameSink。与retarget一样会等待采集线程和决策线程
+     */
+    public void park() {
+        captureGate = CaptureGate.NEVER;
+        setSink(DISCARD);
+        CaptureProfile profile;
+        synchronized (cameraLock) {
+            profile = captureProfile;
+        }
+        updateRequest(profile, false);
+    }
+
+    //返回时决策线程上正在进行的onDetection已经结束，之后不会再调用原来的FrameSink
+    private void setSink(FrameSink newSink) {
+        synchronized (sinkLock) {
+            sink = newSink;
+        }
+    }
+
+    private void updateRequest(CaptureProfile profile, boolean withPreview) {
+        //回放时没有相机
+        if (!running || captureHandler == null) return;
+        CountDownLatch done = new CountDownLatch(1);
+        if (!captureHandler.post(() -> {
+            try {
+                applyRequest(profile, withPreview);
+            } finally {
+                done.countDown();
+            }
+        })) {
+            return;
+        }
+        try {
+            if (!done.await(JOIN_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                Log.w(TAG, "updateRequest: timed out");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    //在采集线程上调用。会话还没有建立时只记下配置，建立后使用
+    private void applyRequest(CaptureProfile profile, boolean withPreview) {
+        synchronized (cameraLock) {
+            captureProfile = profile;
+            previewTargeted = withPreview;
+            if (!running || session == null) return;
+            try {
+                CaptureRequestController controller = new CaptureRequestController(
+                        camera, streamConfig.getCharacteristics(), profile, getRequestOutputs());
+                controller.start(session, captureHandler);
+                requestController = controller;
+            } catch (CameraAccessException | IllegalStateException e) {
+                Log.w(TAG, "applyRequest: failed", e);
+                return;
+            }
+            //暂停中的话新的重复请求已经恢复了输出
+            if (streamingSinceNanos < 0) {
+                streamingSinceNanos = System.nanoTime();
+            }
+        }
+    }
+
+    /**
+     * 停止相机输出millis毫秒后自动恢复，相机和会话保持打开。可以在任意线程调用
+     */
+    public void pauseStreaming(long millis) {
+        if (captureHandler == null) return;
+        captureHandler.post(() -> {
+            if (requestController == null || streamingSinceNanos < 0) return;
+            try {
+                requestController.pause();
+            } catch (CameraAccessException | IllegalStateException e) {
+                Log.w(TAG, "pauseStreaming: failed", e);
+                return;
+            }
+            streamingNanos += System.nanoTime() - streamingSinceNanos;
+            streamingSinceNanos = -1;
+            captureHandler.postDelayed(this::resumeStreaming, millis);
+        });
+    }
+
+    //在采集线程上调用
+    private void resumeStreaming() {
+        if (!running || requestController == null || streamingSinceNanos >= 0) return;
+        try {
+            requestController.resume();
+        } catch (CameraAccessException | IllegalStateException e) {
+            Log.w(TAG, "resumeStreaming: failed", e);
+            return;
+        }
+        streamingSinceNanos = System.nanoTime();
+    }
+
+    /** 相机实际输出帧的累计时间，不包括当前这一段 */
+    public long getStreamingMillis() {
+        return streamingNanos / 1_000_000L;
+    }
+
+    /** 相机实际输出帧的时间占运行时间的比例，在stop之后准确 */
+    public float getStreamingRatio() {
+        long end = stopNanos != 0 ? stopNanos : System.nanoTime();
+        long elapsed = end - startNanos;
+        return elapsed <= 0 ? 0 : Math.min(1f, (float) streamingNanos / elapsed);
+    }
+
+    /**
+     * 等待下一帧并返回它的NV21副本，超时返回null。
+     * 会阻塞调用线程，最多timeoutMillis毫秒。
+     */
+    @Nullable
+    public ByteBuffer takeSnapshot(long timeoutMillis) {
+        snapshots.clear();
+        snapshotRequested = true;
+        try {
+            return snapshots.poll(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } finally {
+            snapshotRequested = false;
+        }
+    }
+
+    private void offerSnapshot(Frame frame) {
+        if (!snapshotRequested) return;
+        snapshotRequested = false;
+        ByteBuffer copy = ByteBuffer.allocate(frame.getData().limit());
+        copy.put(frame.getData().duplicate());
+        copy.flip();
+        snapshots.offer(copy);
+    }
+
+    /** 实际的输出尺寸和旋转角度，start之前或者没有可用的相机时为null */
+    @Nullable
+    public FrameMetadata getFrameMetadata() {
+        return metadata;
+    }
+
+    @Nullable
+    public CameraStreamConfig getStreamConfig() {
+        return streamConfig;
+    }
+
+    /** 某个阶段输入队列当前的深度 */
+    public int getQueueDepth(Stage stage) {
+        return getQueue(stage).size();
+    }
+
+    @NonNull
+    public SpscQueue<?> getQueue(Stage stage) {
+        switch (stage) {
+            case CONVERT:
+                return convertQueue;
+            case DETECT:
+                return detectQueue;
+            default:
+                return decideQueue;
+        }
+    }
+
+    /**
+     * 从start到收到第一帧的时间，还没有收到时为-1
+     */
+    public long getFirstFrameMillis() {
+        long first = firstFrameNanos;
+        return first == 0 ? -1 : (first - startNanos) / 1_000_000L;
+    }
+
+    /** 各阶段的耗时 */
+    @NonNull
+    public PipelineMetrics getMetrics() {
+        return metrics;
+    }
+
+    public long getCapturedFrames() {
+        return capturedFrames;
+    }
+
+    public long getOverwrittenFrames() {
+        return overwrittenFrames;
+    }
+
+    /** 因为下一阶段还没处理完而丢弃的帧，不包括CaptureGate不需要的帧 */
+    public long getDroppedFrames() {
+        return convertQueue.getRejected() + skippedFrames
+                + detectQueue.getRejected() + decideQueue.getRejected();
+    }
+
+    @NonNull
+    public String getStats() {
+        return "streaming=" + getStreamingRatio()
+                + ", captured=" + capturedFrames
+                + ", overwritten=" + overwrittenFrames
+                + ", gated=" + gatedFrames
+                + ", dropped=" + getDroppedFrames()
+                + ", skipped=" + skippedFrames
+                + ", failed=" + failedDetections
+                + ", " + roiTracker
+                + ", " + keyframeScheduler
+                + ", " + requestController
+                + ", " + convertQueue
+                + ", " + detectQueue
+                + ", " + decideQueue
+                + ", " + bufferPool
+                + ", " + planeCopier;
+    }
+
+    public static class Builder {
+        private final Context context;
+        private StreamSizeSelector sizeSelector = new StreamSizeSelector();
+        @Nullable
+        private CameraStreamConfig streamConfig;
+        private FaceProcessor processor;
+        private FrameSink sink;
+        private CaptureGate captureGate = CaptureGate.ALWAYS;
+        private CaptureProfile captureProfile = CaptureProfile.PREVIEW;
+        @Nullable
+        private Surface previewSurface;
+        private boolean roiTracking = true;
+        private boolean keyframeTracking;
+        @Nullable
+        private FrameSource frameSource;
+
+        public Builder(@NonNull Context context) {
+            this.context = context.getApplicationContext();
+        }
+
+        /** 按工作距离和最小人脸像素选择输出尺寸，设置了setStreamConfig时不使用 */
+        public Builder setStreamSizeSelector(@NonNull StreamSizeSelector sizeSelector) {
+            this.sizeSelector = sizeSelector;
+            return this;
+        }
+
+        /** 使用已经选好的相机和输出尺寸，例如需要先据此配置预览视图时 */
+        public Builder setStreamConfig(@Nullable CameraStreamConfig streamConfig) {
+            this.streamConfig = streamConfig;
+            return this;
+        }
+
+        public Builder setProcessor(@NonNull FaceProcessor processor) {
+            this.processor = processor;
+            return this;
+        }
+
+        public Builder setSink(@NonNull FrameSink sink) {
+            this.sink = sink;
+            return this;
+        }
+
+        /** 决定哪些帧进入流水线，默认每一帧 */
+        public Builder setCaptureGate(@NonNull CaptureGate captureGate) {
+            this.captureGate = captureGate;
+            return this;
+        }
+
+        /** 重复请求的帧率和3A配置，默认CaptureProfile.PREVIEW */
+        public Builder setCaptureProfile(@NonNull CaptureProfile captureProfile) {
+            this.captureProfile = captureProfile;
+            return this;
+        }
+
+        /** 额外的预览输出，由相机硬件直接渲染 */
+        public Builder setPreviewSurface(@Nullable Surface previewSurface) {
+            this.previewSurface = previewSurface;
+            return this;
+        }
+
+        /** 是否只在上一次检测到的人脸附近检测，默认开启 */
+        public Builder setRoiTracking(boolean roiTracking) {
+            this.roiTracking = roiTracking;
+            return this;
+        }
+
+        /**
+         * 是否只在关键帧上运行ML Kit，其余帧跟踪上一次的人脸框，默认关闭。
+         * 跟踪的帧只有人脸框没有Face（见DetectionResult.getTrackedBox），适合只需要人脸尺寸的FrameSink
+         */
+        public Builder setKeyframeTracking(boolean keyframeTracking) {
+            this.keyframeTracking = keyframeTracking;
+            return this;
+        }
+
+        /**
+         * 不打开相机，改为处理frameSource输出的帧（例如ReplayFrameSource回放录制的文件）。
+         * 相机、输出尺寸和预览的设置都不使用，流水线stop时关闭frameSource
+         */
+        public Builder setFrameSource(@Nullable FrameSource frameSource) {
+            this.frameSource = frameSource;
+            return this;
+        }
+
+        public FramePipeline build() {
+            if (processor == null || sink == null) {
+                throw new IllegalStateException("processor and sink must be set");
+            }
+            return new FramePipeline(this);
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package com.yx.eyeapp.pipeline;
+
+import androidx.annotation.NonNull;
+
+/**
+ * 流水线的最后一个阶段，在决策线程上处理检测结果，例如绘制检测结果或者判断距离。
+ */
+public interface FrameSink {
+    void onDetection(@NonNull DetectionResult result);
+}
@@ -0,0 +1,33 @@
+package com.yx.eyeapp.pipeline;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.yx.eyeapp.model.FrameMetadata;
+
+/**
+ * 不经过相机的NV21帧来源，例如回放录制的文件（ReplayFrameSource）。
+ * 设置给FramePipeline后代替相机的采集和转换阶段，检测和决策阶段不变。
+ */
+public interface FrameSource {
+
+    /** 帧的尺寸、旋转角度和DistanceEstimator */
+    @NonNull
+    FrameMetadata getMetadata();
+
+    /**
+     * 下一帧，按录制速度输出时等到该帧的时间才返回。没有更多的帧时返回null。
+     * 只在FramePipeline的回放线程上调用，帧处理完后由流水线release
+     */
+    @Nullable
+    Frame next() throws InterruptedException;
+
+    /**
+     * 是否按录制时的速度输出。否则尽快输出，流水线等待检测阶段而不丢帧，
+     * 同样的输入每次得到同样的结果
+     */
+    boolean isRealtime();
+
+    /** 流水线停止时调用 */
+    void close();
+}
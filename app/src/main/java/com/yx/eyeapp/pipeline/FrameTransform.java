@@ -0,0 +1,97 @@
+package com.yx.eyeapp.pipeline;
+
+import androidx.annotation.NonNull;
+
+/**
+ * 相机原始图像与旋转后（正立）图像之间的矩形换算，旋转方向与InputImage一致（顺时针）。
+ *
+ * 矩形用int[4]表示：left, top, right, bottom，right和bottom不包含在内。
+ */
+public class FrameTransform {
+    private final int width;
+    private final int height;
+    private final int rotation;
+
+    /**
+     * @param width    原始图像宽度
+     * @param height   原始图像高度
+     * @param rotation 0/90/180/270
+     */
+    public FrameTransform(int width, int height, int rotation) {
+        if (rotation % 90 != 0) {
+            throw new IllegalArgumentException("rotation must be a multiple of 90: " + rotation);
+        }
+        this.width = width;
+        this.height = height;
+        this.rotation = ((rotation % 360) + 360) % 360;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getRotation() {
+        return rotation;
+    }
+
+    public int getUprightWidth() {
+        return rotation % 180 == 0 ? width : height;
+    }
+
+    public int getUprightHeight() {
+        return rotation % 180 == 0 ? height : width;
+    }
+
+    /** 正立图像中的矩形换算到原始图像，结果写回rect */
+    public void uprightToRaw(@NonNull int[] rect) {
+        int ul = rect[0];
+        int ut = rect[1];
+        int ur = rect[2];
+        int ub = rect[3];
+        switch (rotation) {
+            case 90:
+                set(rect, ut, height - ur, ub, height - ul);
+                break;
+            case 180:
+                set(rect, width - ur, height - ub, width - ul, height - ut);
+                break;
+            case 270:
+                set(rect, width - ub, ul, width - ut, ur);
+                break;
+            default:
+                break;
+        }
+    }
+
+    /** 原始图像中的矩形换算到正立图像，结果写回rect */
+    public void rawToUpright(@NonNull int[] rect) {
+        int l = rect[0];
+        int t = rect[1];
+        int r = rect[2];
+        int b = rect[3];
+        switch (rotation) {
+            case 90:
+                set(rect, height - b, l, height - t, r);
+                break;
+            case 180:
+                set(rect, width - r, height - b, width - l, height - t);
+                break;
+            case 270:
+                set(rect, t, width - r, b, width - l);
+                break;
+            default:
+                break;
+        }
+    }
+
+    private static void set(int[] rect, int left, int top, int right, int bottom) {
+        rect[0] = left;
+        rect[1] = top;
+        rect[2] = right;
+        rect[3] = bottom;
+    }
+}
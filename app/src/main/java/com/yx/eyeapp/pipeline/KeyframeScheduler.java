@@ -0,0 +1,104 @@
+package com.yx.eyeapp.pipeline;
+
+import androidx.annotation.NonNull;
+
+/**
+ * 决定检测线程上的哪些帧运行ML Kit（关键帧），其余帧由LumaTracker跟踪上一次的人脸框。
+ *
+ * 间隔是两个关键帧之间的帧数（包括关键帧本身）。两个关键帧之间跟踪的置信度一直很高时间隔加倍，
+ * 有一帧低于highConfidence时间隔减半，跟丢或者关键帧上没有人脸时回到最小间隔并且下一帧就是关键帧。
+ * 只在检测线程上调用，统计值可以在其它线程读取。
+ */
+public class KeyframeScheduler {
+    public static final int DEFAULT_MIN_INTERVAL = 2;
+    public static final int DEFAULT_MAX_INTERVAL = 16;
+    public static final float DEFAULT_HIGH_CONFIDENCE = 0.9f;
+
+    private final int minInterval;
+    private final int maxInterval;
+    private final float highConfidence;
+
+    private volatile int interval;
+    private boolean tracking;
+    //上一个关键帧之后跟踪的帧数，以及其中最低的置信度
+    private int trackedSinceKeyframe;
+    private float lowestConfidence = 1;
+
+    private volatile long keyframes;
+    private volatile long trackedFrames;
+    private volatile long lostFrames;
+
+    public KeyframeScheduler() {
+        this(DEFAULT_MIN_INTERVAL, DEFAULT_MAX_INTERVAL, DEFAULT_HIGH_CONFIDENCE);
+    }
+
+    public KeyframeScheduler(int minInterval, int maxInterval, float highConfidence) {
+        if (minInterval < 1 || maxInterval < minInterval) {
+            throw new IllegalArgumentException(
+                    "invalid interval range: " + minInterval + ".." + maxInterval);
+        }
+        this.minInterval = minInterval;
+        this.maxInterval = maxInterval;
+        this.highConfidence = highConfidence;
+        this.interval = minInterval;
+    }
+
+    /** 下一帧是否需要运行ML Kit */
+    public boolean isKeyframeDue() {
+        return !tracking || trackedSinceKeyframe + 1 >= interval;
+    }
+
+    /**
+     * 报告关键帧的检测结果，found为true时调用方已经用检测到的人脸框重新开始跟踪
+     */
+    public void onKeyframe(boolean found) {
+        keyframes++;
+        if (!found) {
+            tracking = false;
+            interval = minInterval;
+        } else if (tracking && trackedSinceKeyframe > 0) {
+            if (lowestConfidence >= highConfidence) {
+                interval = Math.min(maxInterval, interval * 2);
+            } else {
+                interval = Math.max(minInterval, interval / 2);
+            }
+        }
+        tracking = found;
+        trackedSinceKeyframe = 0;
+        lowestConfidence = 1;
+    }
+
+    /** 报告一帧跟踪成功以及它的置信度 */
+    public void onTracked(float confidence) {
+        trackedFrames++;
+        trackedSinceKeyframe++;
+        lowestConfidence = Math.min(lowestConfidence, confidence);
+    }
+
+    /** 跟丢了，下一帧运行ML Kit */
+    public void onLost() {
+        lostFrames++;
+        tracking = false;
+        interval = minInterval;
+    }
+
+    /** 当前两个关键帧之间的帧数 */
+    public int getInterval() {
+        return interval;
+    }
+
+    /** 不需要运行ML Kit的帧所占的比例 */
+    public float getTrackedRatio() {
+        long total = keyframes + trackedFrames;
+        return total == 0 ? 0 : (float) trackedFrames / total;
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return "KeyframeScheduler{interval=" + interval
+                + ", keyframes=" + keyframes
+                + ", tracked=" + trackedFrames
+                + ", lost=" + lostFrames + "}";
+    }
+}
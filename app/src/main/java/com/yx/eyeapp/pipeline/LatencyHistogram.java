@@ -0,0 +1,120 @@
+package com.yx.eyeapp.pipeline;
+
+import androidx.annotation.NonNull;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 固定桶的耗时直方图，记录和读取都不加锁，可以在流水线线程记录、在任意线程读取。
+ *
+ * 以微秒为单位，每个2的幂区间分为SUB_BUCKETS个等宽的桶，分位数的相对误差不超过25%；
+ * 小于SUB_BUCKETS微秒的值每个微秒一个桶，超出范围的值计入最后一个桶（最大值仍然准确）。
+ * 读取时各个计数不是同一时刻的快照，只用于观察。
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 2;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    //最后一个有效的2的幂区间从2^MAX_EXPONENT微秒（约67秒）开始，更大的值计入之后的溢出桶
+    private static final int MAX_EXPONENT = 26;
+    static final int BUCKETS = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS + 1;
+
+    private final String name;
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sumMicros = new AtomicLong();
+    private final AtomicLong maxMicros = new AtomicLong();
+
+    public LatencyHistogram(@NonNull String name) {
+        this.name = name;
+    }
+
+    /** 记录一次耗时，负数按0计 */
+    public void record(long nanos) {
+        long micros = Math.max(0, nanos / 1000);
+        counts.incrementAndGet(bucketOf(micros));
+        count.incrementAndGet();
+        sumMicros.addAndGet(micros);
+        long max;
+        while (micros > (max = maxMicros.get())) {
+            if (maxMicros.compareAndSet(max, micros)) break;
+        }
+    }
+
+    static int bucketOf(long micros) {
+        if (micros < SUB_BUCKETS) return (int) micros;
+        int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        if (exponent > MAX_EXPONENT) return BUCKETS - 1;
+        int sub = (int) (micros >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    //桶的下界（微秒）
+    static long lowerBound(int bucket) {
+        if (bucket < SUB_BUCKETS) return bucket;
+        int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        int sub = bucket % SUB_BUCKETS;
+        return (long) (SUB_BUCKETS + sub) << (exponent - SUB_BUCKET_BITS);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    public long getMaxMicros() {
+        return maxMicros.get();
+    }
+
+    public long getMeanMicros() {
+        long n = count.get();
+        return n == 0 ? 0 : sumMicros.get() / n;
+    }
+
+    /**
+     * 分位数（微秒），取所在桶的上界，不超过最大值。没有记录时为0
+     *
+     * @param quantile 0到1
+     */
+    public long getPercentileMicros(double quantile) {
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            total += counts.get(i);
+        }
+        if (total == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(quantile * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                long upper = i + 1 < BUCKETS ? lowerBound(i + 1) - 1 : Long.MAX_VALUE;
+                return Math.min(upper, maxMicros.get());
+            }
+        }
+        return maxMicros.get();
+    }
+
+    /** 清空，与并发的record之间可能丢失几次记录 */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        count.set(0);
+        sumMicros.set(0);
+        maxMicros.set(0);
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return name + "{n=" + getCount()
+                + ", mean=" + getMeanMicros() / 1000f + "ms"
+                + ", p50=" + getPercentileMicros(0.5) / 1000f + "ms"
+                + ", p90=" + getPercentileMicros(0.9) / 1000f + "ms"
+                + ", p99=" + getPercentileMicros(0.99) / 1000f + "ms"
+                + ", max=" + getMaxMicros() / 1000f + "ms}";
+    }
+}
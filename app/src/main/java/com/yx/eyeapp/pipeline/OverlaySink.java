@@ -0,0 +1,92 @@
+package com.yx.eyeapp.pipeline;
+
+import android.graphics.Bitmap;
+
+import androidx.annotation.NonNull;
+
+import com.google.mlkit.vision.face.Face;
+import com.yx.eyeapp.GraphicOverlay;
+import com.yx.eyeapp.graphic.CameraGraphic;
+import com.yx.eyeapp.graphic.FaceGraphic;
+import com.yx.eyeapp.model.FrameMetadata;
+import com.yx.eyeapp.util.BitmapUtils;
+import com.yx.eyeapp.util.Nv21ArgbConverter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 把检测结果绘制到GraphicOverlay上。
+ *
+ * 相机预览由TextureView显示时只绘制人脸框和特征点；
+ * 否则把检测帧转换为预览位图一并绘制。
+ * 预览位图、CameraGraphic和FaceGraphic都一直复用，每一帧只更新它们的内容，不创建新的对象：
+ * 它们分为两组轮流使用，在决策线程上更新不在屏幕上的一组，再用GraphicOverlay.setGraphics一次换上，
+ * onDraw不会画出更新了一半的内容，也不会画正在被写入的位图。
+ */
+public class OverlaySink implements FrameSink {
+    private final GraphicOverlay overlay;
+    private final boolean previewBitmapEnabled;
+    private final Nv21ArgbConverter argbConverter = new Nv21ArgbConverter();
+    //只在决策线程访问
+    private final GraphicSet[] graphicSets = {new GraphicSet(), new GraphicSet()};
+    private int nextGraphicSet;
+
+    /** 一起显示的一组图形 */
+    private static class GraphicSet {
+        //这一组的预览位图，只在这一组不在屏幕上时写入
+        Bitmap previewBitmap;
+        CameraGraphic cameraGraphic;
+        final List<FaceGraphic> faceGraphics = new ArrayList<>();
+        //交给GraphicOverlay的列表
+        final List<GraphicOverlay.Graphic> graphics = new ArrayList<>();
+    }
+
+    /**
+     * @param previewBitmapEnabled 是否在GraphicOverlay中绘制相机图像
+     */
+    public OverlaySink(@NonNull GraphicOverlay overlay, boolean previewBitmapEnabled) {
+        this.overlay = overlay;
+        this.previewBitmapEnabled = previewBitmapEnabled;
+    }
+
+    @Override
+    public void onDetection(@NonNull DetectionResult result) {
+        Frame frame = result.getFrame();
+        //上一次setGraphics换上的是另一组，这一组已经不在屏幕上
+        GraphicSet set = graphicSets[nextGraphicSet];
+        nextGraphicSet ^= 1;
+        Bitmap bitmap = previewBitmapEnabled ? renderPreviewBitmap(frame, set) : null;
+        set.graphics.clear();
+        if (bitmap != null) {
+            int rotation = frame.getMetadata().getRotation();
+            if (set.cameraGraphic == null || set.cameraGraphic.getRotation() != rotation) {
+                set.cameraGraphic = new CameraGraphic(bitmap, rotation, true, overlay);
+            } else {
+                set.cameraGraphic.setBitmap(bitmap);
+            }
+            set.graphics.add(set.cameraGraphic);
+        }
+        List<Face> faces = result.getFaces();
+        for (int i = 0; i < faces.size(); i++) {
+            if (i == set.faceGraphics.size()) {
+                set.faceGraphics.add(new FaceGraphic(overlay));
+            }
+            FaceGraphic graphic = set.faceGraphics.get(i);
+            graphic.setFace(faces.get(i), result.getOffsetX(), result.getOffsetY());
+            set.graphics.add(graphic);
+        }
+        overlay.setGraphics(set.graphics, frame.getSequence());
+    }
+
+    /**
+     * 把帧转换到这一组复用的预览位图中，旋转和镜像留到绘制时由CameraGraphic处理
+     */
+    private Bitmap renderPreviewBitmap(Frame frame, GraphicSet set) {
+        FrameMetadata metadata = frame.getMetadata();
+        Bitmap bitmap = BitmapUtils.getUnrotatedBitmap(
+                frame.getData(), metadata, argbConverter, set.previewBitmap);
+        set.previewBitmap = bitmap;
+        return bitmap;
+    }
+}
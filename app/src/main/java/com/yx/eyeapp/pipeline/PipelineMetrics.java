@@ -0,0 +1,60 @@
+package com.yx.eyeapp.pipeline;
+
+import androidx.annotation.NonNull;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * 流水线各阶段的耗时直方图，由FramePipeline记录，可以在任意线程读取（dumpsys、调试面板）。
+ */
+public class PipelineMetrics {
+
+    /** 记录的耗时 */
+    public enum Metric {
+        /** 传感器曝光时间戳到ImageReader回调 */
+        ACQUIRE,
+        /** YUV_420_888转换为NV21 */
+        CONVERT,
+        /** ML Kit检测或者跟踪 */
+        DETECT,
+        /** FrameSink.onDetection */
+        CALLBACK,
+        /** 传感器时间戳到FrameSink处理完，即一帧的端到端延迟 */
+        AGE
+    }
+
+    private final Map<Metric, LatencyHistogram> histograms = new EnumMap<>(Metric.class);
+
+    public PipelineMetrics() {
+        for (Metric metric : Metric.values()) {
+            histograms.put(metric, new LatencyHistogram(metric.name().toLowerCase()));
+        }
+    }
+
+    public void record(@NonNull Metric metric, long nanos) {
+        histograms.get(metric).record(nanos);
+    }
+
+    @NonNull
+    public LatencyHistogram get(@NonNull Metric metric) {
+        return histograms.get(metric);
+    }
+
+    public void reset() {
+        for (LatencyHistogram histogram : histograms.values()) {
+            histogram.reset();
+        }
+    }
+
+    /** 每个阶段一行 */
+    @NonNull
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        for (LatencyHistogram histogram : histograms.values()) {
+            builder.append(histogram).append('\n');
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,73 @@
+package com.yx.eyeapp.pipeline;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.yx.eyeapp.util.FrameRecorder;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * 把检测的每一帧（整帧NV21和传感器时间戳）追加到文件，再交给下一个FrameSink，
+ * 录制的文件可以用ReplayFrameSource回放。
+ * 在决策线程上写文件；写入失败或者文件达到上限后停止录制，不影响检测。
+ */
+public class RecordingSink implements FrameSink {
+    private static final String TAG = "RecordingSink";
+    private final File file;
+    private final boolean delta;
+    private final FrameSink next;
+    //收到第一帧时按它的尺寸创建
+    @Nullable
+    private FrameRecorder recorder;
+    private boolean stopped;
+
+    /**
+     * @param delta 是否差分编码，见FrameRecorder
+     */
+    public RecordingSink(@NonNull File file, boolean delta, @NonNull FrameSink next) {
+        this.file = file;
+        this.delta = delta;
+        this.next = next;
+    }
+
+    @Override
+    public void onDetection(@NonNull DetectionResult result) {
+        record(result.getFrame());
+        next.onDetection(result);
+    }
+
+    private synchronized void record(Frame frame) {
+        if (stopped) return;
+        try {
+            if (recorder == null) {
+                recorder = new FrameRecorder(file, frame.getMetadata(), delta);
+            }
+            if (!recorder.append(frame.getData(), frame.getTimestampNanos())) {
+                Log.w(TAG, "record: file is full");
+                close();
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            //IllegalArgumentException：流水线换了输出尺寸
+            Log.e(TAG, "record: failed", e);
+            close();
+        }
+    }
+
+    /** 写入索引并停止录制 */
+    public synchronized void close() {
+        stopped = true;
+        if (recorder == null) return;
+        try {
+            recorder.close();
+            Log.d(TAG, "close: " + recorder.getFrameCount() + " frames ("
+                    + recorder.getDeltaFrames() + " delta), " + recorder.getBytesWritten() + " bytes");
+        } catch (IOException e) {
+            Log.e(TAG, "close: failed", e);
+        }
+        recorder = null;
+    }
+}
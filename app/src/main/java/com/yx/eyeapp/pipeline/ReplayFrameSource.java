@@ -0,0 +1,114 @@
+package com.yx.eyeapp.pipeline;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.yx.eyeapp.model.FrameMetadata;
+import com.yx.eyeapp.util.FrameBufferPool;
+import com.yx.eyeapp.util.FrameRecording;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 回放FrameRecorder录制的文件。文件整个映射到内存，原始帧直接把映射的内存交给流水线，不拷贝；
+ * 差分编码的帧解码后拷贝到缓冲池中的缓冲。
+ * 帧序号是录制时的序号，时间戳是录制时的传感器时间戳；帧的延迟从回放输出这一帧时算起。
+ */
+public class ReplayFrameSource implements FrameSource {
+    private static final String TAG = "ReplayFrameSource";
+    //检测和决策队列中最多同时有几帧
+    private static final int POOL_SIZE = 4;
+
+    private final FrameRecording recording;
+    private final boolean realtime;
+    @Nullable
+    private final ByteBuffer work;
+    @Nullable
+    private final FrameBufferPool bufferPool;
+    private int nextIndex;
+    private long startNanos;
+    private long firstTimestampNanos;
+
+    /**
+     * @param realtime 为true时按录制时的时间间隔输出，否则尽快输出
+     */
+    public ReplayFrameSource(@NonNull File file, boolean realtime) throws IOException {
+        this.recording = FrameRecording.open(file);
+        this.realtime = realtime;
+        if (recording.hasDeltaFrames()) {
+            work = ByteBuffer.allocateDirect(recording.getFrameSize());
+            bufferPool = new FrameBufferPool(POOL_SIZE);
+        } else {
+            work = null;
+            bufferPool = null;
+        }
+        Log.d(TAG, "open: " + file + ", frames=" + recording.getFrameCount()
+                + ", delta=" + recording.hasDeltaFrames() + ", realtime=" + realtime);
+    }
+
+    @NonNull
+    @Override
+    public FrameMetadata getMetadata() {
+        return recording.getMetadata();
+    }
+
+    @Nullable
+    @Override
+    public Frame next() throws InterruptedException {
+        int index = nextIndex;
+        if (index >= recording.getFrameCount()) return null;
+        nextIndex++;
+        long timestamp = recording.getTimestampNanos(index);
+        if (realtime) {
+            if (index == 0) {
+                startNanos = System.nanoTime();
+                firstTimestampNanos = timestamp;
+            } else {
+                long wait = startNanos + (timestamp - firstTimestampNanos) - System.nanoTime();
+                if (wait > 0) {
+                    TimeUnit.NANOSECONDS.sleep(wait);
+                }
+            }
+        }
+        Tracer.beginSection(Tracer.REPLAY);
+        ByteBuffer data;
+        FrameBufferPool pool = null;
+        try {
+            data = recording.readFrame(index, work);
+            if (data == work) {
+                //work是下一帧的参照，拷贝一份交给流水线
+                pool = bufferPool;
+                ByteBuffer copy = pool.acquire(recording.getFrameSize());
+                copy.put(work.duplicate());
+                copy.flip();
+                data = copy;
+            }
+        } finally {
+            Tracer.endSection();
+        }
+        return new Frame(data, recording.getMetadata(), index, timestamp, System.nanoTime(), pool);
+    }
+
+    @Override
+    public boolean isRealtime() {
+        return realtime;
+    }
+
+    public int getFrameCount() {
+        return recording.getFrameCount();
+    }
+
+    @Override
+    public void close() {
+        try {
+            recording.close();
+        } catch (IOException e) {
+            Log.w(TAG, "close: failed", e);
+        }
+    }
+}
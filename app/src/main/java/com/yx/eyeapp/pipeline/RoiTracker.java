@@ -0,0 +1,183 @@
+package com.yx.eyeapp.pipeline;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * 根据上一次检测到的人脸位置决定下一帧的检测区域（ROI）。
+ *
+ * 人脸框是旋转后（正立）图像中的坐标，裁剪在相机原始的NV21图像上进行，
+ * 所以先把加上运动余量的人脸框换算到原始图像，对齐到偶数后再换算回来得到检测结果的偏移。
+ * 在裁剪图像上检测到的人脸坐标加上偏移即为完整图像中的坐标。
+ * 人脸丢失或者裁剪区域接近整帧时返回null，由调用方检测整帧。只在检测线程上调用。
+ */
+public class RoiTracker {
+    /** 人脸框每边扩大的比例（相对人脸框较长的边） */
+    public static final float DEFAULT_MARGIN = 0.5f;
+    //裁剪区域超过整帧的这个比例时不再裁剪
+    private static final float MAX_AREA_FRACTION = 0.7f;
+    //裁剪区域的最小边长，太小的图像检测器无法可靠地检测
+    private static final int MIN_CROP_SIZE = 96;
+
+    /** 原始图像中的裁剪区域以及检测结果在正立图像中的偏移 */
+    public static class Crop {
+        public int left;
+        public int top;
+        public int width;
+        public int height;
+        public int offsetX;
+        public int offsetY;
+
+        @NonNull
+        @Override
+        public String toString() {
+            return "Crop{" + left + "," + top + " " + width + "x" + height
+                    + ", offset=" + offsetX + "," + offsetY + "}";
+        }
+    }
+
+    private final int width;
+    private final int height;
+    private final FrameTransform transform;
+    private final float margin;
+    private final Crop crop = new Crop();
+    private final int[] rect = new int[4];
+
+    private boolean tracking;
+    private int faceLeft;
+    private int faceTop;
+    private int faceRight;
+    private int faceBottom;
+
+    private volatile long cropAttempts;
+    private volatile long cropHits;
+    private volatile long fullScans;
+    private volatile long cropNanos;
+    private volatile long fullNanos;
+
+    /**
+     * @param width    原始图像宽度
+     * @param height   原始图像高度
+     * @param rotation 检测时的旋转角度，0/90/180/270
+     */
+    public RoiTracker(int width, int height, int rotation) {
+        this(width, height, rotation, DEFAULT_MARGIN);
+    }
+
+    public RoiTracker(int width, int height, int rotation, float margin) {
+        this.width = width;
+        this.height = height;
+        this.transform = new FrameTransform(width, height, rotation);
+        this.margin = margin;
+    }
+
+    /**
+     * 下一帧的裁剪区域，返回的对象会被复用。没有跟踪到人脸时返回null
+     */
+    @Nullable
+    public Crop nextCrop() {
+        if (!tracking) return null;
+        int uprightWidth = transform.getUprightWidth();
+        int uprightHeight = transform.getUprightHeight();
+        int extra = (int) (Math.max(faceRight - faceLeft, faceBottom - faceTop) * margin);
+        int ul = Math.max(0, faceLeft - extra);
+        int ut = Math.max(0, faceTop - extra);
+        int ur = Math.min(uprightWidth, faceRight + extra);
+        int ub = Math.min(uprightHeight, faceBottom + extra);
+        if (ur <= ul || ub <= ut) return null;
+
+        //换算到原始图像
+        rect[0] = ul;
+        rect[1] = ut;
+        rect[2] = ur;
+        rect[3] = ub;
+        transform.uprightToRaw(rect);
+        int l = rect[0];
+        int t = rect[1];
+        int r = rect[2];
+        int b = rect[3];
+        //对齐到偶数并保证最小尺寸
+        l = l & ~1;
+        t = t & ~1;
+        r = Math.min(width, (r + 1) & ~1);
+        b = Math.min(height, (b + 1) & ~1);
+        if (r - l < MIN_CROP_SIZE) {
+            l = Math.max(0, Math.min(l, width - MIN_CROP_SIZE) & ~1);
+            r = Math.min(width, l + MIN_CROP_SIZE);
+        }
+        if (b - t < MIN_CROP_SIZE) {
+            t = Math.max(0, Math.min(t, height - MIN_CROP_SIZE) & ~1);
+            b = Math.min(height, t + MIN_CROP_SIZE);
+        }
+        if ((float) (r - l) * (b - t) > MAX_AREA_FRACTION * width * height) {
+            return null;
+        }
+
+        crop.left = l;
+        crop.top = t;
+        crop.width = r - l;
+        crop.height = b - t;
+        //裁剪区域在正立图像中的左上角
+        rect[0] = l;
+        rect[1] = t;
+        rect[2] = r;
+        rect[3] = b;
+        transform.rawToUpright(rect);
+        crop.offsetX = rect[0];
+        crop.offsetY = rect[1];
+        return crop;
+    }
+
+    /** 报告裁剪区域上的检测结果 */
+    public void onCropDetection(boolean found, long nanos) {
+        cropAttempts++;
+        cropNanos += nanos;
+        if (found) {
+            cropHits++;
+        }
+    }
+
+    /** 报告整帧检测 */
+    public void onFullDetection(long nanos) {
+        fullScans++;
+        fullNanos += nanos;
+    }
+
+    /** 检测到人脸，坐标为完整的正立图像中的人脸框 */
+    public void onFace(int left, int top, int right, int bottom) {
+        tracking = true;
+        faceLeft = left;
+        faceTop = top;
+        faceRight = right;
+        faceBottom = bottom;
+    }
+
+    /** 人脸丢失，下一帧检测整帧 */
+    public void onLost() {
+        tracking = false;
+    }
+
+    /** 裁剪区域中检测到人脸的比例 */
+    public float getHitRate() {
+        return cropAttempts == 0 ? 0 : (float) cropHits / cropAttempts;
+    }
+
+    /**
+     * 与每帧都检测整帧相比节省的检测时间。
+     * 命中的帧省下一次整帧检测，未命中的帧多花了一次裁剪检测。
+     */
+    public long getSavedMillis() {
+        if (fullScans == 0) return 0;
+        long averageFull = fullNanos / fullScans;
+        return (cropHits * averageFull - cropNanos) / 1_000_000L;
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return "RoiTracker{cropAttempts=" + cropAttempts
+                + ", hitRate=" + getHitRate()
+                + ", fullScans=" + fullScans
+                + ", savedMs=" + getSavedMillis() + "}";
+    }
+}
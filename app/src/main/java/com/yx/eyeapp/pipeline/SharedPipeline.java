@@ -0,0 +1,155 @@
+package com.yx.eyeapp.pipeline;
+
+import android.Manifest;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.RequiresPermission;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 进程内共用的FramePipeline，界面和后台服务先后使用同一个打开的相机。
+ *
+ * acquire时已有运行中的流水线就用retarget交给新的使用者，否则按builder创建并启动；
+ * 后acquire的使用者接管检测器、FrameSink、CaptureGate和重复请求配置，先前的使用者不再收到结果。
+ * 新的使用者带有运行中的会话里没有的预览输出时只能关闭相机重新创建，
+ * 这时先前的凭证全部失效，稍后在主线程上通知它们的InvalidationListener，需要的话由使用者重新acquire。
+ * 相机、输出尺寸和ROI沿用最初的配置，距离按DistanceEstimator换算，与分辨率无关。
+ * 所有使用者都release后流水线先park（丢弃所有帧、不再输出到预览），
+ * LINGER_MS内没有新的使用者才真正关闭相机，界面到服务的切换不需要重新打开相机。
+ * 只在主线程上使用。
+ */
+public final class SharedPipeline {
+    //最后一个使用者离开后保持相机打开的时间
+    private static final long LINGER_MS = 3000;
+    private static final String TAG = "SharedPipeline";
+
+    private static final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private static FramePipeline pipeline;
+    private static int references;
+    //没有release的凭证，流水线被替换时通知
+    private static final List<Lease> leases = new ArrayList<>();
+    private static final Runnable stopIdle = SharedPipeline::stopIdle;
+
+    private SharedPipeline() {
+    }
+
+    /** 凭证的流水线被另一个使用者关闭时在主线程上调用 */
+    public interface InvalidationListener {
+        void onInvalidated(@NonNull Lease lease);
+    }
+
+    /** 使用共用流水线的凭证，release一次 */
+    public static final class Lease {
+        private final FramePipeline pipeline;
+        @Nullable
+        private final InvalidationListener listener;
+        private boolean released;
+        private boolean invalidated;
+
+        private Lease(FramePipeline pipeline, @Nullable InvalidationListener listener) {
+            this.pipeline = pipeline;
+            this.listener = listener;
+        }
+
+        @NonNull
+        public FramePipeline getPipeline() {
+            return pipeline;
+        }
+
+        /** 流水线已经因为另一个使用者关闭，不会再有结果；之后release不需要也可以调用 */
+        @MainThread
+        public boolean isInvalidated() {
+            return invalidated;
+        }
+
+        /** 不再使用，返回后流水线不会再输出到这个使用者的预览，可以释放预览的Surface */
+        @MainThread
+        public void release() {
+            if (released) return;
+            released = true;
+            if (invalidated) return;
+            leases.remove(this);
+            SharedPipeline.release(pipeline);
+        }
+    }
+
+    @MainThread
+    @NonNull
+    @RequiresPermission(Manifest.permission.CAMERA)
+    public static Lease acquire(@NonNull FramePipeline.Builder builder) {
+        return acquire(builder, null);
+    }
+
+    /**
+     * @param listener 流水线因为之后acquire的使用者带来新的预览输出而关闭时通知，
+     *                 在这次acquire返回之后才调用，可以在其中重新acquire
+     */
+    @MainThread
+    @NonNull
+    @RequiresPermission(Manifest.permission.CAMERA)
+    public static Lease acquire(@NonNull FramePipeline.Builder builder,
+                                @Nullable InvalidationListener listener) {
+        mainHandler.removeCallbacks(stopIdle);
+        if (pipeline != null && !pipeline.canRetarget(builder)) {
+            //新的预览输出需要新的会话，旧的凭证随之失效
+            Log.d(TAG, "acquire: new preview output, invalidating " + leases.size() + " lease(s)");
+            pipeline.stop();
+            pipeline = null;
+            references = 0;
+            invalidateAll();
+        }
+        if (pipeline != null) {
+            long start = System.nanoTime();
+            pipeline.retarget(builder);
+            Log.d(TAG, "acquire: retargeted running pipeline in "
+                    + (System.nanoTime() - start) / 1000 + "us");
+        } else {
+            pipeline = builder.build();
+            pipeline.start();
+        }
+        references++;
+        Lease lease = new Lease(pipeline, listener);
+        leases.add(lease);
+        return lease;
+    }
+
+    private static void invalidateAll() {
+        for (int i = 0; i < leases.size(); i++) {
+            Lease lease = leases.get(i);
+            lease.invalidated = true;
+            if (lease.listener != null) {
+                //acquire返回之后再通知，使用者在回调中release或者重新acquire都不会打断这次acquire
+                mainHandler.post(() -> {
+                    if (!lease.released) {
+                        lease.listener.onInvalidated(lease);
+                    }
+                });
+            }
+        }
+        leases.clear();
+    }
+
+    private static void release(FramePipeline leased) {
+        if (leased != pipeline) return;
+        if (references <= 0) {
+            throw new IllegalStateException("release without acquire");
+        }
+        if (--references > 0) return;
+        pipeline.park();
+        mainHandler.postDelayed(stopIdle, LINGER_MS);
+    }
+
+    private static void stopIdle() {
+        if (references > 0 || pipeline == null) return;
+        Log.d(TAG, "stopIdle: no user for " + LINGER_MS + "ms");
+        pipeline.stop();
+        pipeline = null;
+    }
+}
@@ -0,0 +1,108 @@
+package com.yx.eyeapp.pipeline;
+
+import androidx.annotation.NonNull;
+
+/**
+ * 选择检测使用的YUV输出尺寸：在相机支持的尺寸中，选在工作距离上人脸仍有足够像素的最小的一个，
+ * 让检测器在每台设备上处理尽可能少的像素。
+ *
+ * 人脸的像素宽度按小孔成像估算：人脸宽度 × 焦距 / 距离 得到人脸在传感器上的尺寸，
+ * 再乘以输出图像每毫米传感器对应的像素数。输出宽高比与传感器不同时，图像在一个方向上铺满传感器、
+ * 另一个方向被裁剪，所以每毫米的像素数取两个方向中较大的一个。
+ * 缺少焦距或传感器尺寸时退而选择短边不小于FALLBACK_SHORT_SIDE的最小尺寸。
+ */
+public class StreamSizeSelector {
+    /** 默认工作距离（米） */
+    public static final float DEFAULT_WORKING_DISTANCE = 0.6f;
+    /** 默认的最小人脸宽度（像素） */
+    public static final int DEFAULT_MIN_FACE_PIXELS = 100;
+    /** 成人脸部的平均宽度（米） */
+    public static final float FACE_WIDTH = 0.15f;
+    private static final int FALLBACK_SHORT_SIDE = 480;
+    //都达不到要求时也不选比这更大的尺寸
+    private static final long MAX_PIXELS = 1920L * 1080;
+
+    private final float workingDistance;
+    private final int minFacePixels;
+
+    public StreamSizeSelector() {
+        this(DEFAULT_WORKING_DISTANCE, DEFAULT_MIN_FACE_PIXELS);
+    }
+
+    /**
+     * @param workingDistance 需要可靠检测到人脸的最远距离（米）
+     * @param minFacePixels   该距离上人脸至少需要的像素宽度
+     */
+    public StreamSizeSelector(float workingDistance, int minFacePixels) {
+        if (workingDistance <= 0 || minFacePixels <= 0) {
+            throw new IllegalArgumentException(
+                    "invalid requirement: " + workingDistance + "m, " + minFacePixels + "px");
+        }
+        this.workingDistance = workingDistance;
+        this.minFacePixels = minFacePixels;
+    }
+
+    /**
+     * 工作距离上人脸在width x height的图像中的像素宽度
+     *
+     * @param focalLength  焦距（毫米）
+     * @param sensorWidth  传感器宽度（毫米）
+     * @param sensorHeight 传感器高度（毫米）
+     */
+    public float getFacePixels(int width, int height,
+                               float focalLength, float sensorWidth, float sensorHeight) {
+        float pixelsPerMm = Math.max(width / sensorWidth, height / sensorHeight);
+        return FACE_WIDTH * focalLength / workingDistance * pixelsPerMm;
+    }
+
+    /**
+     * @return 选中尺寸的下标，没有可选尺寸时返回-1
+     */
+    public int select(@NonNull int[] widths, @NonNull int[] heights,
+                      float focalLength, float sensorWidth, float sensorHeight) {
+        boolean physical = focalLength > 0 && sensorWidth > 0 && sensorHeight > 0;
+        int best = -1;
+        int largest = -1;
+        for (int i = 0; i < widths.length; i++) {
+            int w = widths[i];
+            int h = heights[i];
+            //NV21要求宽高都是偶数
+            if (((w | h) & 1) != 0 || (long) w * h > MAX_PIXELS) continue;
+            if (largest < 0 || area(widths, heights, i) > area(widths, heights, largest)) {
+                largest = i;
+            }
+            boolean enough = physical
+                    ? getFacePixels(w, h, focalLength, sensorWidth, sensorHeight) >= minFacePixels
+                    : Math.min(w, h) >= FALLBACK_SHORT_SIDE;
+            if (enough && (best < 0 || area(widths, heights, i) < area(widths, heights, best))) {
+                best = i;
+            }
+        }
+        return best >= 0 ? best : largest;
+    }
+
+    private static long area(int[] widths, int[] heights, int i) {
+        return (long) widths[i] * heights[i];
+    }
+
+    /**
+     * 检测时图像需要顺时针旋转的角度
+     *
+     * @param sensorOrientation SENSOR_ORIENTATION
+     * @param displayDegrees    屏幕相对自然方向的旋转角度
+     * @param frontFacing       是否前置摄像头
+     */
+    public static int getRotation(int sensorOrientation, int displayDegrees, boolean frontFacing) {
+        if (frontFacing) {
+            return (sensorOrientation + displayDegrees) % 360;
+        }
+        return (sensorOrientation - displayDegrees + 360) % 360;
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return "StreamSizeSelector{workingDistance=" + workingDistance
+                + "m, minFacePixels=" + minFacePixels + "}";
+    }
+}
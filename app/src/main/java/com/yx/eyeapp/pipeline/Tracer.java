@@ -0,0 +1,76 @@
+package com.yx.eyeapp.pipeline;
+
+import android.content.Context;
+import android.content.pm.ApplicationInfo;
+import android.os.Build;
+import android.os.Trace;
+
+import androidx.annotation.NonNull;
+
+/**
+ * 流水线的trace，用Perfetto或systrace（atrace的app类别）查看。
+ *
+ * 同步的section标出每个线程上各阶段的耗时；异步的slice以帧序号为cookie，
+ * 从转换（或回放）开始到Frame.release，以及从交给GraphicOverlay到绘制完成，
+ * 可以在trace中跟踪同一帧经过采集、转换、ML Kit、决策和绘制。
+ *
+ * 名字只使用下面的常量，参数都是基本类型，关闭时每次调用只读取一个volatile字段，
+ * 不拼接字符串也不装箱，可以放在每一帧的路径上。
+ * 可调试的构建（init）默认开启；异步slice需要Android 10。
+ */
+public final class Tracer {
+    public static final String CAPTURE = "capture";
+    public static final String CONVERT = "convert";
+    public static final String DETECT = "detect";
+    /** 检测阶段中ML Kit的部分 */
+    public static final String MLKIT = "mlkit";
+    /** 检测阶段中亮度跟踪的部分 */
+    public static final String TRACK = "track";
+    public static final String DECIDE = "decide";
+    public static final String REPLAY = "replay";
+    public static final String DRAW = "draw";
+    /** 异步：一帧在流水线中的时间 */
+    public static final String FRAME = "frame";
+    /** 异步：检测结果交给GraphicOverlay到绘制完成 */
+    public static final String RENDER = "render";
+
+    private static volatile boolean enabled;
+
+    private Tracer() {
+    }
+
+    /** 可调试的构建开启trace */
+    public static void init(@NonNull Context context) {
+        enabled = (context.getApplicationInfo().flags & ApplicationInfo.FLAG_DEBUGGABLE) != 0;
+    }
+
+    public static void setEnabled(boolean enabled) {
+        Tracer.enabled = enabled;
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /** 在当前线程开始一个section，必须在同一线程上endSection */
+    public static void beginSection(@NonNull String name) {
+        if (!enabled) return;
+        Trace.beginSection(name);
+    }
+
+    public static void endSection() {
+        if (!enabled) return;
+        Trace.endSection();
+    }
+
+    /** 开始一帧的异步slice，可以在另一个线程上以同样的名字和序号结束 */
+    public static void beginAsync(@NonNull String name, long sequence) {
+        if (!enabled || Build.VERSION.SDK_INT < Build.VERSION_CODES.Q) return;
+        Trace.beginAsyncSection(name, (int) sequence);
+    }
+
+    public static void endAsync(@NonNull String name, long sequence) {
+        if (!enabled || Build.VERSION.SDK_INT < Build.VERSION_CODES.Q) return;
+        Trace.endAsyncSection(name, (int) sequence);
+    }
+}
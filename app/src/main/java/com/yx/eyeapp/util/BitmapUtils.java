@@ -18,11 +18,7 @@ package com.yx.eyeapp.util;
 
 import android.content.ContentResolver;
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
-import android.graphics.ImageFormat;
 import android.graphics.Matrix;
-import android.graphics.Rect;
-import android.graphics.YuvImage;
 import android.media.Image;
 import android.media.Image.Plane;
 import android.net.Uri;
@@ -38,13 +34,12 @@ import androidx.exifinterface.media.ExifInterface;
 
 import com.yx.eyeapp.model.FrameMetadata;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.ByteBuffer;
 
 /**
- * 官方的bitmap转化工具类，根据需要进行了一点魔改，要用的话记得该回去，第67行，
+ * 官方的bitmap转化工具类，根据需要进行了一点魔改，要用的话记得该回去，getBitmap中的镜像参数，
  * Utils functions for bitmap conversions. */
 public class BitmapUtils {
   private static final String TAG = "BitmapUtils";
@@ -52,23 +47,64 @@ public class BitmapUtils {
   /** Converts NV21 format byte buffer to bitmap. */
   @Nullable
   public static Bitmap getBitmap(ByteBuffer data, FrameMetadata metadata) {
-    data.rewind();
-    byte[] imageInBuffer = new byte[data.limit()];
-    data.get(imageInBuffer, 0, imageInBuffer.length);
-    try {
-      YuvImage image =
-          new YuvImage(
-              imageInBuffer, ImageFormat.NV21, metadata.getWidth(), metadata.getHeight(), null);
-      ByteArrayOutputStream stream = new ByteArrayOutputStream();
-      image.compressToJpeg(new Rect(0, 0, metadata.getWidth(), metadata.getHeight()), 80, stream);
+    return getBitmap(data, metadata, new Nv21ArgbConverter(), null);
+  }
 
-      Bitmap bmp = BitmapFactory.decodeByteArray(stream.toByteArray(), 0, stream.size());
+  /**
+   * Converts NV21 format byte buffer to bitmap with 'converter', without the JPEG round trip. The
+   * rotation and the horizontal mirror are applied while writing the pixels. 'reuse' is filled in
+   * place when it is a mutable bitmap of the rotated size, otherwise a new bitmap is created.
+   */
+  @Nullable
+  public static Bitmap getBitmap(
+      ByteBuffer data,
+      FrameMetadata metadata,
+      Nv21ArgbConverter converter,
+      @Nullable Bitmap reuse) {
+    //原本的：不镜像，这里与前置摄像头的预览保持一致，水平翻转
+    return convert(
+        data, metadata.getWidth(), metadata.getHeight(), metadata.getRotation(), true, converter,
+        reuse);
+  }
 
-      stream.close();
-      //原本的：
-      //return rotateBitmap(bmp, metadata.getRotation(), false, false);
-      return rotateBitmap(bmp, metadata.getRotation(), true, false);
-      //return bmp;
+  /**
+   * Converts NV21 format byte buffer to a bitmap in sensor orientation, leaving rotation and
+   * mirroring to the canvas that draws it. 'reuse' is filled in place when it is a mutable bitmap
+   * of the frame size.
+   */
+  @Nullable
+  public static Bitmap getUnrotatedBitmap(
+      ByteBuffer data,
+      FrameMetadata metadata,
+      Nv21ArgbConverter converter,
+      @Nullable Bitmap reuse) {
+    return convert(
+        data, metadata.getWidth(), metadata.getHeight(), 0, false, converter, reuse);
+  }
+
+  @Nullable
+  private static Bitmap convert(
+      ByteBuffer data,
+      int width,
+      int height,
+      int rotation,
+      boolean mirror,
+      Nv21ArgbConverter converter,
+      @Nullable Bitmap reuse) {
+    try {
+      int[] pixels = converter.convert(data, width, height, rotation, mirror);
+      int outWidth = Nv21ArgbConverter.getOutputWidth(width, height, rotation);
+      int outHeight = Nv21ArgbConverter.getOutputHeight(width, height, rotation);
+      Bitmap bitmap = reuse;
+      if (bitmap == null
+          || bitmap.isRecycled()
+          || !bitmap.isMutable()
+          || bitmap.getWidth() != outWidth
+          || bitmap.getHeight() != outHeight) {
+        bitmap = Bitmap.createBitmap(outWidth, outHeight, Bitmap.Config.ARGB_8888);
+      }
+      bitmap.setPixels(pixels, 0, outWidth, 0, 0, outWidth, outHeight);
+      return bitmap;
     } catch (Exception e) {
       Log.e("VisionProcessorBase", "Error: " + e.getMessage());
     }
@@ -202,90 +238,45 @@ public class BitmapUtils {
    */
   public static ByteBuffer yuv420ThreePlanesToNV21(
       Plane[] yuv420888planes, int width, int height) {
-    int imageSize = width * height;
-    byte[] out = new byte[imageSize + 2 * (imageSize / 4)];
-
-    if (areUVPlanesNV21(yuv420888planes, width, height)) {
-      // Copy the Y values.
-      yuv420888planes[0].getBuffer().get(out, 0, imageSize);
-
-      ByteBuffer uBuffer = yuv420888planes[1].getBuffer();
-      ByteBuffer vBuffer = yuv420888planes[2].getBuffer();
-      // Get the first V value from the V buffer, since the U buffer does not contain it.
-      vBuffer.get(out, imageSize, 1);
-      // Copy the first U value and the remaining VU values from the U buffer.
-      uBuffer.get(out, imageSize + 1, 2 * imageSize / 4 - 1);
-    } else {
-      // Fallback to copying the UV values one by one, which is slower but also works.
-      // Unpack Y.
-      unpackPlane(yuv420888planes[0], width, height, out, 0, 1);
-      // Unpack U.
-      unpackPlane(yuv420888planes[1], width, height, out, imageSize + 1, 2);
-      // Unpack V.
-      unpackPlane(yuv420888planes[2], width, height, out, imageSize, 2);
-    }
-
-    return ByteBuffer.wrap(out);
-  }
-
-  /** Checks if the UV plane buffers of a YUV_420_888 image are in the NV21 format. */
-  private static boolean areUVPlanesNV21(Plane[] planes, int width, int height) {
-    int imageSize = width * height;
-
-    ByteBuffer uBuffer = planes[1].getBuffer();
-    ByteBuffer vBuffer = planes[2].getBuffer();
-
-    // Backup buffer properties.
-    int vBufferPosition = vBuffer.position();
-    int uBufferLimit = uBuffer.limit();
-
-    // Advance the V buffer by 1 byte, since the U buffer will not contain the first V value.
-    vBuffer.position(vBufferPosition + 1);
-    // Chop off the last byte of the U buffer, since the V buffer will not contain the last U value.
-    uBuffer.limit(uBufferLimit - 1);
-
-    // Check that the buffers are equal and have the expected number of elements.
-    boolean areNV21 =
-        (vBuffer.remaining() == (2 * imageSize / 4 - 2)) && (vBuffer.compareTo(uBuffer) == 0);
-
-    // Restore buffers to their initial state.
-    vBuffer.position(vBufferPosition);
-    uBuffer.limit(uBufferLimit);
-
-    return areNV21;
+    return yuv420ThreePlanesToNV21(
+        yuv420888planes, width, height, ByteBuffer.allocate(getNV21BufferSize(width, height)));
   }
 
   /**
-   * Unpack an image plane into a byte array.
+   * Same as {@link #yuv420ThreePlanesToNV21(Plane[], int, int)}, but writes into the caller
+   * supplied buffer (e.g. one acquired from {@link FrameBufferPool}) instead of allocating a new
+   * array. The buffer must have a capacity of at least {@link #getNV21BufferSize(int, int)}; on
+   * return its position is 0 and its limit is the NV21 frame size.
    *
-   * <p>The input plane data will be copied in 'out', starting at 'offset' and every pixel will be
-   * spaced by 'pixelStride'. Note that there is no row padding on the output.
+   * <p>The plane layout is detected on every call; callers converting a camera stream should keep
+   * a {@link YuvPlaneCopier} per ImageReader and use the overload taking it.
    */
-  private static void unpackPlane(
-      Plane plane, int width, int height, byte[] out, int offset, int pixelStride) {
-    ByteBuffer buffer = plane.getBuffer();
-    buffer.rewind();
+  public static ByteBuffer yuv420ThreePlanesToNV21(
+      Plane[] yuv420888planes, int width, int height, ByteBuffer out) {
+    return yuv420ThreePlanesToNV21(yuv420888planes, width, height, out, new YuvPlaneCopier());
+  }
 
-    // Compute the size of the current plane.
-    // We assume that it has the aspect ratio as the original image.
-    int numRow = (buffer.limit() + plane.getRowStride() - 1) / plane.getRowStride();
-    if (numRow == 0) {
-      return;
-    }
-    int scaleFactor = height / numRow;
-    int numCol = width / scaleFactor;
+  /**
+   * Converts YUV_420_888 to NV21 into 'out' with 'copier', which caches the plane layout of the
+   * ImageReader configuration and copies whole rows in bulk.
+   */
+  public static ByteBuffer yuv420ThreePlanesToNV21(
+      Plane[] yuv420888planes, int width, int height, ByteBuffer out, YuvPlaneCopier copier) {
+    return copier.copyToNV21(
+        yuv420888planes[0].getBuffer(),
+        yuv420888planes[0].getRowStride(),
+        yuv420888planes[1].getBuffer(),
+        yuv420888planes[2].getBuffer(),
+        yuv420888planes[1].getRowStride(),
+        yuv420888planes[1].getPixelStride(),
+        width,
+        height,
+        out);
+  }
 
-    // Extract the data in the output buffer.
-    int outputPos = offset;
-    int rowStart = 0;
-    for (int row = 0; row < numRow; row++) {
-      int inputPos = rowStart;
-      for (int col = 0; col < numCol; col++) {
-        out[outputPos] = buffer.get(inputPos);
-        outputPos += pixelStride;
-        inputPos += plane.getPixelStride();
-      }
-      rowStart += plane.getRowStride();
-    }
+  /** Returns the number of bytes of an NV21 frame of the given size. */
+  public static int getNV21BufferSize(int width, int height) {
+    int imageSize = width * height;
+    return imageSize + 2 * (imageSize / 4);
   }
 }
@@ -0,0 +1,83 @@
+package com.yx.eyeapp.util;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import com.google.mlkit.vision.face.FaceDetection;
+import com.google.mlkit.vision.face.FaceDetector;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * 进程内按DetectorProfile共享的ML Kit检测器，按引用计数管理。
+ *
+ * 同一配置的FaceProcessor使用同一个检测器；最后一个使用者释放后再等LINGER_MS才关闭，
+ * 界面交给后台服务（或者重新创建FaceProcessor）时可以直接使用已经加载好模型的检测器。
+ */
+public final class DetectorPool {
+    private static final String TAG = "DetectorPool";
+    /** 没有使用者之后保留检测器的时间 */
+    public static final long LINGER_MS = 5000;
+
+    private static final class Entry {
+        final FaceDetector detector;
+        int references;
+        final Runnable close;
+
+        Entry(DetectorProfile profile) {
+            detector = FaceDetection.getClient(profile.getOptions());
+            close = () -> closeIdle(profile, this);
+        }
+    }
+
+    private static final Map<DetectorProfile, Entry> entries = new EnumMap<>(DetectorProfile.class);
+    private static Handler handler;
+
+    private DetectorPool() {
+    }
+
+    /** 取得profile对应的检测器，用完后调用release */
+    @NonNull
+    public static synchronized FaceDetector acquire(@NonNull DetectorProfile profile) {
+        Entry entry = entries.get(profile);
+        if (entry == null) {
+            entry = new Entry(profile);
+            entries.put(profile, entry);
+            Log.d(TAG, "acquire: created " + profile);
+        } else if (entry.references == 0) {
+            getHandler().removeCallbacks(entry.close);
+            Log.d(TAG, "acquire: reused idle " + profile);
+        }
+        entry.references++;
+        return entry.detector;
+    }
+
+    /** 释放一次acquire得到的检测器 */
+    public static synchronized void release(@NonNull DetectorProfile profile) {
+        Entry entry = entries.get(profile);
+        if (entry == null || entry.references == 0) {
+            throw new IllegalStateException("release without acquire: " + profile);
+        }
+        if (--entry.references == 0) {
+            getHandler().postDelayed(entry.close, LINGER_MS);
+        }
+    }
+
+    private static synchronized void closeIdle(DetectorProfile profile, Entry entry) {
+        if (entry.references > 0 || entries.get(profile) != entry) return;
+        entries.remove(profile);
+        entry.detector.close();
+        Log.d(TAG, "closeIdle: " + profile);
+    }
+
+    private static Handler getHandler() {
+        if (handler == null) {
+            handler = new Handler(Looper.getMainLooper());
+        }
+        return handler;
+    }
+}
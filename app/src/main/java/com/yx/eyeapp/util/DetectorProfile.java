@@ -0,0 +1,50 @@
+package com.yx.eyeapp.util;
+
+import androidx.annotation.NonNull;
+
+import com.google.mlkit.vision.face.FaceDetectorOptions;
+
+/**
+ * 按用途区分的人脸检测器配置。
+ */
+public enum DetectorProfile {
+    /**
+     * 只需要人脸框判断距离：快速模式，不检测轮廓和特征点，开启跟踪。
+     * 工作距离上的人脸至少占图像宽度的约1/8（见StreamSizeSelector），更小的人脸不用检测。
+     */
+    DISTANCE(new FaceDetectorOptions.Builder()
+            .setPerformanceMode(FaceDetectorOptions.PERFORMANCE_MODE_FAST)
+            .setContourMode(FaceDetectorOptions.CONTOUR_MODE_NONE)
+            .setLandmarkMode(FaceDetectorOptions.LANDMARK_MODE_NONE)
+            .setClassificationMode(FaceDetectorOptions.CLASSIFICATION_MODE_NONE)
+            .setMinFaceSize(0.12f)
+            .enableTracking()
+            .build()),
+
+    /** 预览界面绘制人脸轮廓（FaceGraphic） */
+    OVERLAY(new FaceDetectorOptions.Builder()
+            .setPerformanceMode(FaceDetectorOptions.PERFORMANCE_MODE_FAST)
+            .setContourMode(FaceDetectorOptions.CONTOUR_MODE_ALL)
+            .build()),
+
+    /**
+     * 拍摄预设人脸：只运行一次，使用精确模式得到更准确的人脸框，
+     * 检测特征点以便由两眼距离估计拍摄时的距离（见DistanceEstimator）
+     */
+    CALIBRATION(new FaceDetectorOptions.Builder()
+            .setPerformanceMode(FaceDetectorOptions.PERFORMANCE_MODE_ACCURATE)
+            .setContourMode(FaceDetectorOptions.CONTOUR_MODE_NONE)
+            .setLandmarkMode(FaceDetectorOptions.LANDMARK_MODE_ALL)
+            .build());
+
+    private final FaceDetectorOptions options;
+
+    DetectorProfile(FaceDetectorOptions options) {
+        this.options = options;
+    }
+
+    @NonNull
+    public FaceDetectorOptions getOptions() {
+        return options;
+    }
+}
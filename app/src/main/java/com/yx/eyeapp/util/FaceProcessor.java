@@ -1,145 +1,153 @@
 package com.yx.eyeapp.util;
 
-import android.annotation.SuppressLint;
-import android.graphics.Bitmap;
 import android.util.Log;
 
-import androidx.annotation.GuardedBy;
 import androidx.annotation.NonNull;
+import androidx.annotation.WorkerThread;
 
 import com.google.android.gms.tasks.Task;
-import com.google.android.gms.tasks.TaskExecutors;
+import com.google.android.gms.tasks.Tasks;
 import com.google.mlkit.vision.common.InputImage;
 import com.google.mlkit.vision.face.Face;
-import com.google.mlkit.vision.face.FaceDetection;
 import com.google.mlkit.vision.face.FaceDetector;
-import com.google.mlkit.vision.face.FaceDetectorOptions;
-import com.yx.eyeapp.BackgroundProcessService;
-import com.yx.eyeapp.GraphicOverlay;
-import com.yx.eyeapp.graphic.CameraGraphic;
-import com.yx.eyeapp.graphic.FaceGraphic;
-import com.yx.eyeapp.model.FaceProfile;
 import com.yx.eyeapp.model.FrameMetadata;
-import com.yx.eyeapp.model.TheFaceProfile;
 
 import java.nio.ByteBuffer;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
 
 /**
  * 人脸检测器，对输入图像进行各种处理
+ *
+ * 流水线的检测线程通过detect同步检测，一次只处理一帧，不需要额外加锁。
+ * 检测器按DetectorProfile从DetectorPool取得，运行中可以切换；旧的检测器在它上面的检测全部完成后归还。
  */
 public class FaceProcessor {
 
-    private FaceDetector faceDetector;
-    private Bitmap bitmap;
-
-    private BackgroundProcessService service;
-    @GuardedBy("this")
-    private ByteBuffer processingImage;
-    @GuardedBy("this")
-    private FrameMetadata processingMetadata;
-    private final ScopedExecutor executor;
-    private Object detecteLock = new Object();
     private static final String TAG = "FaceProcessor";
-    private boolean isSetFaceProfile = false;
-    private final TheFaceProfile theFaceProfile = TheFaceProfile.getInstance();
+    //预热使用的空白图像尺寸
+    private static final int WARM_UP_WIDTH = 320;
+    private static final int WARM_UP_HEIGHT = 240;
+    private final Object detectorLock = new Object();
+    private DetectorHandle detector;
+    private boolean closed;
+
+    /**
+     * 一个检测器实例以及正在它上面运行的检测数量
+     */
+    private static final class DetectorHandle {
+        final DetectorProfile profile;
+        final FaceDetector detector;
+        int inFlight;
+        boolean retired;
+
+        DetectorHandle(DetectorProfile profile) {
+            this.profile = profile;
+            this.detector = DetectorPool.acquire(profile);
+        }
+    }
 
     public FaceProcessor(){
-        FaceDetectorOptions options =
-                new FaceDetectorOptions.Builder()
-                        .setContourMode(FaceDetectorOptions.CONTOUR_MODE_ALL)
-                        .build();
-        faceDetector = FaceDetection.getClient(options);
-        executor = new ScopedExecutor(TaskExecutors.MAIN_THREAD);
+        this(DetectorProfile.OVERLAY);
     }
 
-    public FaceProcessor(BackgroundProcessService service){
-        this();
-        this.service = service;
+    public FaceProcessor(@NonNull DetectorProfile profile){
+        detector = new DetectorHandle(profile);
     }
 
+    /**
+     * 切换检测器配置，之后开始的检测使用新的配置
+     */
+    public void setDetectorProfile(@NonNull DetectorProfile profile) {
+        synchronized (detectorLock) {
+            if (closed || detector.profile == profile) return;
+            DetectorHandle old = detector;
+            detector = new DetectorHandle(profile);
+            retire(old);
+        }
+        Log.d(TAG, "setDetectorProfile: " + profile);
+    }
 
-
-
-    @SuppressLint("SuspiciousIndentation")
-    public synchronized void processBytebuffer(
-            ByteBuffer data, FrameMetadata frameMetadata, GraphicOverlay graphicOverlay)
-        {
-        if((processingImage != null || processingMetadata != null) && !isSetFaceProfile) {
-            Log.d(TAG, "processBytebuffer: isprocessing");
-            return;
+    @NonNull
+    public DetectorProfile getDetectorProfile() {
+        synchronized (detectorLock) {
+            return detector.profile;
         }
+    }
 
-        processingImage = data;
-        processingMetadata = frameMetadata;
-        bitmap = BitmapUtils.getBitmap(data, frameMetadata);
+    /**
+     * 在一张空白图像上运行一次检测，让ML Kit提前加载模型。
+     * 检测在ML Kit自己的线程上进行，可以与打开相机同时进行；第一帧的检测会等待预热完成
+     */
+    public Task<List<Face>> warmUp() {
+        long start = System.nanoTime();
+        ByteBuffer blank = ByteBuffer.allocateDirect(WARM_UP_WIDTH * WARM_UP_HEIGHT * 3 / 2);
+        return detectInImage(blank, new FrameMetadata(WARM_UP_WIDTH, WARM_UP_HEIGHT, 0))
+                .addOnCompleteListener(Runnable::run, task -> Log.d(TAG, "warmUp: "
+                        + getDetectorProfile() + " ready in "
+                        + (System.nanoTime() - start) / 1_000_000L + "ms"));
+    }
 
-        InputImage image = InputImage.fromByteBuffer(
-                data,
-                frameMetadata.getWidth(),
-                frameMetadata.getHeight(),
-                frameMetadata.getRotation(),
-                InputImage.IMAGE_FORMAT_NV21);
+    /**
+     * 同步检测一帧NV21图像，只能在工作线程调用
+     */
+    @WorkerThread
+    @NonNull
+    public List<Face> detect(ByteBuffer data, FrameMetadata frameMetadata)
+            throws ExecutionException, InterruptedException {
+        return Tasks.await(detectInImage(toInputImage(data, frameMetadata)));
+    }
 
-        if(graphicOverlay != null){
-            Log.d(TAG, "processBytebuffer: 1");
-            detectInImage(image).addOnSuccessListener(executor, result -> {
-                        onSuccess(result, graphicOverlay);
-                        graphicOverlay.redraw();
-                        processingImage = null;
-                        processingMetadata = null;
-                    });
-        }else if(!isSetFaceProfile){
-//            Log.d(TAG, "processBytebuffer: 2");
-            detectInImage(image).addOnSuccessListener(result -> {
-                        compareWithProfile(result);
-                        processingImage = null;
-                        processingMetadata = null;
-                
-                    });
-        }else {
-//            Log.d(TAG, "3");
-            detectInImage(image).addOnSuccessListener(result -> {
-                setProfile(result);
-                processingImage = null;
-                processingMetadata = null;
-            });
-        }
+    /**
+     * 异步检测一帧NV21图像，检测完成之前data不能被修改
+     */
+    public Task<List<Face>> detectInImage(ByteBuffer data, FrameMetadata frameMetadata) {
+        return detectInImage(toInputImage(data, frameMetadata));
     }
 
     protected Task<List<Face>> detectInImage(InputImage image) {
-        synchronized (detecteLock){
-            return faceDetector.process(image);
-        }
-    }
-    protected void onSuccess(@NonNull List<Face> faces, @NonNull GraphicOverlay overlay){
-        overlay.clear();
-        overlay.add(new CameraGraphic(bitmap, overlay));
-        for(Face face : faces){
-            overlay.add(new FaceGraphic(face, overlay));
+        DetectorHandle handle;
+        synchronized (detectorLock) {
+            if (closed) {
+                return Tasks.forException(new IllegalStateException("FaceProcessor is closed"));
+            }
+            handle = detector;
+            handle.inFlight++;
         }
+        return handle.detector.process(image)
+                .addOnCompleteListener(Runnable::run, task -> {
+                    synchronized (detectorLock) {
+                        handle.inFlight--;
+                        if (handle.retired && handle.inFlight == 0) {
+                            DetectorPool.release(handle.profile);
+                        }
+                    }
+                });
     }
 
-    protected  void compareWithProfile(@NonNull List<Face> faces){
-        if(faces.isEmpty()) return;
-        FaceProfile profile = new FaceProfile(faces.get(0));
-        if(profile.compareTo(theFaceProfile.getFaceProfile()) > 0){
-            service.showToast();
-        }else {
-            service.stopToast();
+    //持有detectorLock时调用
+    private static void retire(DetectorHandle handle) {
+        handle.retired = true;
+        if (handle.inFlight == 0) {
+            DetectorPool.release(handle.profile);
         }
-
     }
 
-    public void setProfile(@NonNull List<Face> faces) {
-        if(!faces.isEmpty()){
-            theFaceProfile.setFaceProfile(faces.get(0));
-        }
-        Log.d(TAG, "null");
+    private static InputImage toInputImage(ByteBuffer data, FrameMetadata frameMetadata) {
+        return InputImage.fromByteBuffer(
+                data,
+                frameMetadata.getWidth(),
+                frameMetadata.getHeight(),
+                frameMetadata.getRotation(),
+                InputImage.IMAGE_FORMAT_NV21);
     }
 
-    public void settingTheFaceProfile(boolean isSetProfile){
-        isSetFaceProfile = isSetProfile;
-        Log.d(TAG, "settingTheFaceProfile: " + isSetFaceProfile);
+    /** 释放ML Kit检测器，正在进行的检测完成后归还给DetectorPool */
+    public void close() {
+        synchronized (detectorLock) {
+            if (closed) return;
+            closed = true;
+            retire(detector);
+        }
     }
 }
@@ -0,0 +1,109 @@
+package com.yx.eyeapp.util;
+
+import androidx.annotation.GuardedBy;
+import androidx.annotation.NonNull;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+/**
+ * NV21帧缓冲池，复用直接内存ByteBuffer，避免每一帧都分配新的数组。
+ *
+ * 通过acquire获取缓冲，帧处理完成（FaceProcessor检测结束或帧被丢弃）后调用release归还。
+ * 池中最多保留maxBuffers个空闲缓冲，池空时临时分配新缓冲（记为miss）。
+ * 按引用记录借出的缓冲，只接受借出且还没有归还的缓冲，重复归还或者不是这个池的缓冲直接忽略。
+ */
+public class FrameBufferPool {
+    private static final String TAG = "FrameBufferPool";
+    private final int maxBuffers;
+    @GuardedBy("this")
+    private final ArrayDeque<ByteBuffer> freeBuffers;
+    @GuardedBy("this")
+    private int bufferSize;
+    //借出还没有归还的缓冲，按引用比较（ByteBuffer.equals比较内容）
+    @GuardedBy("this")
+    private final Set<ByteBuffer> outstanding =
+            Collections.newSetFromMap(new IdentityHashMap<ByteBuffer, Boolean>());
+    @GuardedBy("this")
+    private int highWaterMark;
+    @GuardedBy("this")
+    private long hits;
+    @GuardedBy("this")
+    private long misses;
+
+    public FrameBufferPool(int maxBuffers) {
+        if (maxBuffers <= 0) {
+            throw new IllegalArgumentException("maxBuffers must be positive: " + maxBuffers);
+        }
+        this.maxBuffers = maxBuffers;
+        this.freeBuffers = new ArrayDeque<>(maxBuffers);
+    }
+
+    /**
+     * 获取一个容量为size的缓冲，position为0，limit为size。
+     * 帧大小变化时（ImageReader重新配置）丢弃旧尺寸的空闲缓冲，借出的旧尺寸缓冲归还时丢弃。
+     */
+    @NonNull
+    public synchronized ByteBuffer acquire(int size) {
+        if (size != bufferSize) {
+            freeBuffers.clear();
+            bufferSize = size;
+        }
+        ByteBuffer buffer = freeBuffers.pollFirst();
+        if (buffer != null) {
+            hits++;
+        } else {
+            misses++;
+            buffer = ByteBuffer.allocateDirect(size);
+        }
+        outstanding.add(buffer);
+        if (outstanding.size() > highWaterMark) {
+            highWaterMark = outstanding.size();
+        }
+        buffer.clear();
+        return buffer;
+    }
+
+    /**
+     * 归还缓冲。不是借出中的缓冲（重复归还、不是这个池的缓冲）忽略，
+     * 否则之后两次acquire可能拿到同一个缓冲；旧尺寸的缓冲或者池已满时交给GC回收。
+     */
+    public synchronized void release(ByteBuffer buffer) {
+        if (buffer == null || !outstanding.remove(buffer)) return;
+        if (buffer.capacity() != bufferSize || freeBuffers.size() >= maxBuffers) {
+            return;
+        }
+        freeBuffers.addFirst(buffer);
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /** 同时被占用的缓冲数量的最大值 */
+    public synchronized int getHighWaterMark() {
+        return highWaterMark;
+    }
+
+    public synchronized int getInUse() {
+        return outstanding.size();
+    }
+
+    @NonNull
+    @Override
+    public synchronized String toString() {
+        return TAG + "{size=" + bufferSize
+                + ", free=" + freeBuffers.size()
+                + ", inUse=" + outstanding.size()
+                + ", hits=" + hits
+                + ", misses=" + misses
+                + ", highWaterMark=" + highWaterMark + "}";
+    }
+}
@@ -0,0 +1,242 @@
+package com.yx.eyeapp.util;
+
+import androidx.annotation.NonNull;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 在亮度平面（NV21的Y平面）上用归一化互相关（NCC）跟踪一个矩形区域，例如上一次检测到的人脸框。
+ *
+ * init时把区域按固定的网格采样为模板；track时在上一个位置附近搜索平移和缩放，
+ * 先按网格间距粗搜，再逐步减半步长细化，取相关系数最大的位置。
+ * 相关系数即跟踪的置信度，低于阈值认为跟丢。模板只在init时更新，不会随跟踪逐帧漂移。
+ * 坐标都是原始（未旋转）图像中的坐标。纯Java实现，track过程中不分配内存，只在一个线程上使用。
+ */
+public class LumaTracker {
+    /** 模板网格的边长 */
+    public static final int DEFAULT_GRID_SIZE = 24;
+    /** 相关系数低于该值认为跟丢 */
+    public static final float DEFAULT_MIN_CONFIDENCE = 0.7f;
+    //两帧之间最多移动区域较长边的这个比例
+    private static final float SEARCH_FRACTION = 0.25f;
+    //粗搜时尝试的缩放
+    private static final float[] COARSE_SCALES = {1 / 1.06f, 1f, 1.06f};
+    //细化位置之后再尝试的缩放
+    private static final float[] FINE_SCALES = {1 / 1.02f, 1.02f};
+    //区域太小时网格采样没有意义
+    private static final int MIN_SIZE = 8;
+
+    private final int gridSize;
+    private final float minConfidence;
+    //零均值、单位长度的模板
+    private final float[] template;
+
+    private boolean tracking;
+    private float left;
+    private float top;
+    private float width;
+    private float height;
+    private float confidence;
+
+    //一次搜索中的最佳位置
+    private float bestScore;
+    private float bestLeft;
+    private float bestTop;
+    private float bestWidth;
+    private float bestHeight;
+
+    public LumaTracker() {
+        this(DEFAULT_GRID_SIZE, DEFAULT_MIN_CONFIDENCE);
+    }
+
+    public LumaTracker(int gridSize, float minConfidence) {
+        if (gridSize < 4) {
+            throw new IllegalArgumentException("gridSize must be at least 4: " + gridSize);
+        }
+        this.gridSize = gridSize;
+        this.minConfidence = minConfidence;
+        this.template = new float[gridSize * gridSize];
+    }
+
+    /**
+     * 以图像中的一个区域为模板开始跟踪。区域超出图像的部分被裁掉，
+     * 区域太小或者亮度没有变化（无法相关）时返回false
+     *
+     * @param y      亮度平面，从position 0开始
+     * @param stride 亮度平面的行距
+     */
+    public boolean init(@NonNull ByteBuffer y, int stride, int imageWidth, int imageHeight,
+                        int left, int top, int right, int bottom) {
+        tracking = false;
+        confidence = 0;
+        int l = Math.max(0, left);
+        int t = Math.max(0, top);
+        int r = Math.min(imageWidth, right);
+        int b = Math.min(imageHeight, bottom);
+        if (r - l < MIN_SIZE || b - t < MIN_SIZE) return false;
+
+        float cellWidth = (float) (r - l) / gridSize;
+        float cellHeight = (float) (b - t) / gridSize;
+        float sum = 0;
+        for (int row = 0; row < gridSize; row++) {
+            int rowOffset = (int) (t + (row + 0.5f) * cellHeight) * stride;
+            for (int col = 0; col < gridSize; col++) {
+                float value = y.get(rowOffset + (int) (l + (col + 0.5f) * cellWidth)) & 0xFF;
+                template[row * gridSize + col] = value;
+                sum += value;
+            }
+        }
+        float mean = sum / template.length;
+        float norm = 0;
+        for (int i = 0; i < template.length; i++) {
+            template[i] -= mean;
+            norm += template[i] * template[i];
+        }
+        if (norm < template.length) return false;
+        float scale = (float) (1 / Math.sqrt(norm));
+        for (int i = 0; i < template.length; i++) {
+            template[i] *= scale;
+        }
+        this.left = l;
+        this.top = t;
+        this.width = r - l;
+        this.height = b - t;
+        confidence = 1;
+        tracking = true;
+        return true;
+    }
+
+    /**
+     * 在新的一帧中寻找区域，找到时更新位置和大小并返回true；置信度低于阈值时停止跟踪并返回false
+     */
+    public boolean track(@NonNull ByteBuffer y, int stride, int imageWidth, int imageHeight) {
+        if (!tracking) return false;
+        float centerX = left + width / 2;
+        float centerY = top + height / 2;
+        float step = Math.max(1f, Math.min(width, height) / gridSize);
+        int radius = Math.max(1, Math.round(Math.max(width, height) * SEARCH_FRACTION / step));
+
+        bestScore = -1;
+        bestWidth = width;
+        bestHeight = height;
+        bestLeft = left;
+        bestTop = top;
+        for (float scale : COARSE_SCALES) {
+            float w = width * scale;
+            float h = height * scale;
+            for (int dy = -radius; dy <= radius; dy++) {
+                for (int dx = -radius; dx <= radius; dx++) {
+                    evaluate(y, stride, imageWidth, imageHeight,
+                            centerX + dx * step - w / 2, centerY + dy * step - h / 2, w, h);
+                }
+            }
+        }
+        if (bestScore < 0) {
+            //所有候选位置都超出了图像
+            return lost();
+        }
+        for (float fine = step / 2; fine >= 0.5f; fine /= 2) {
+            refinePosition(y, stride, imageWidth, imageHeight, fine);
+        }
+        float w = bestWidth;
+        float h = bestHeight;
+        float cx = bestLeft + w / 2;
+        float cy = bestTop + h / 2;
+        for (float scale : FINE_SCALES) {
+            evaluate(y, stride, imageWidth, imageHeight,
+                    cx - w * scale / 2, cy - h * scale / 2, w * scale, h * scale);
+        }
+
+        confidence = bestScore;
+        if (bestScore < minConfidence) {
+            return lost();
+        }
+        left = bestLeft;
+        top = bestTop;
+        width = bestWidth;
+        height = bestHeight;
+        return true;
+    }
+
+    private boolean lost() {
+        tracking = false;
+        confidence = Math.max(0, bestScore);
+        return false;
+    }
+
+    private void refinePosition(ByteBuffer y, int stride, int imageWidth, int imageHeight,
+                                float step) {
+        float l = bestLeft;
+        float t = bestTop;
+        for (int dy = -1; dy <= 1; dy++) {
+            for (int dx = -1; dx <= 1; dx++) {
+                if (dx == 0 && dy == 0) continue;
+                evaluate(y, stride, imageWidth, imageHeight,
+                        l + dx * step, t + dy * step, bestWidth, bestHeight);
+            }
+        }
+    }
+
+    //计算候选区域与模板的相关系数，比当前最佳更好时记录下来
+    private void evaluate(ByteBuffer y, int stride, int imageWidth, int imageHeight,
+                          float l, float t, float w, float h) {
+        if (l < 0 || t < 0 || l + w > imageWidth || t + h > imageHeight) return;
+        float cellWidth = w / gridSize;
+        float cellHeight = h / gridSize;
+        //模板是零均值的，所以sum(模板*区域)就是协方差，不需要先减去区域的均值
+        float dot = 0;
+        float sum = 0;
+        float sumSquares = 0;
+        for (int row = 0; row < gridSize; row++) {
+            int rowOffset = (int) (t + (row + 0.5f) * cellHeight) * stride;
+            int index = row * gridSize;
+            for (int col = 0; col < gridSize; col++) {
+                float value = y.get(rowOffset + (int) (l + (col + 0.5f) * cellWidth)) & 0xFF;
+                dot += template[index + col] * value;
+                sum += value;
+                sumSquares += value * value;
+            }
+        }
+        float variance = sumSquares - sum * sum / template.length;
+        if (variance < template.length) return;
+        float score = (float) (dot / Math.sqrt(variance));
+        if (score > bestScore) {
+            bestScore = score;
+            bestLeft = l;
+            bestTop = t;
+            bestWidth = w;
+            bestHeight = h;
+        }
+    }
+
+    /** 停止跟踪，下一次需要重新init */
+    public void reset() {
+        tracking = false;
+        confidence = 0;
+    }
+
+    public boolean isTracking() {
+        return tracking;
+    }
+
+    /** 最近一次init或track的相关系数，-1到1 */
+    public float getConfidence() {
+        return confidence;
+    }
+
+    /** 当前区域写入rect：left, top, right, bottom */
+    public void getBox(@NonNull int[] rect) {
+        rect[0] = Math.round(left);
+        rect[1] = Math.round(top);
+        rect[2] = Math.round(left + width);
+        rect[3] = Math.round(top + height);
+    }
+
+    public float getWidth() {
+        return width;
+    }
+
+    public float getHeight() {
+        return height;
+    }
+}
@@ -0,0 +1,203 @@
+package com.yx.eyeapp.util;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.yx.eyeapp.model.DistanceEstimator;
+import com.yx.eyeapp.model.FaceProfile;
+
+import java.util.Arrays;
+
+/**
+ * 拍摄预设人脸时汇总多帧的检测结果，得到比单帧更可靠的阈值。
+ *
+ * 每帧报告一次：检测到人脸时报告人脸框宽高和两眼距离，没有人脸时报告miss。
+ * 宽或高与中位数相差超过OUTLIER_MADS个标准差（由中位数绝对偏差MAD估计）的帧作为离群值剔除，
+ * 剩下的帧各项取中位数。质量评分综合了有效帧所占的比例和剩余帧的离散程度，0到1。
+ * 只在一个线程上使用。
+ */
+public class ProfileCalibrator {
+    /** 默认采集的帧数 */
+    public static final int DEFAULT_FRAMES = 7;
+    //与中位数相差超过这么多个标准差时认为是离群值
+    private static final float OUTLIER_MADS = 3f;
+    //正态分布下标准差与MAD之比
+    private static final float MAD_TO_SIGMA = 1.4826f;
+    //MAD的下限（相对中位数），几帧几乎相同时不把正常的抖动当成离群值
+    private static final float MIN_RELATIVE_MAD = 0.01f;
+    //剩余帧的相对标准差达到该值时质量为0
+    private static final float MAX_RELATIVE_SPREAD = 0.1f;
+
+    /** 汇总的结果 */
+    public static class Result {
+        private final FaceProfile profile;
+        private final float quality;
+        private final int samples;
+        private final int rejected;
+        private final int misses;
+
+        Result(FaceProfile profile, float quality, int samples, int rejected, int misses) {
+            this.profile = profile;
+            this.quality = quality;
+            this.samples = samples;
+            this.rejected = rejected;
+            this.misses = misses;
+        }
+
+        @NonNull
+        public FaceProfile getProfile() {
+            return profile;
+        }
+
+        /** 0到1，越大越可靠 */
+        public float getQuality() {
+            return quality;
+        }
+
+        /** 参与计算中位数的帧数 */
+        public int getSamples() {
+            return samples;
+        }
+
+        /** 作为离群值剔除的帧数 */
+        public int getRejected() {
+            return rejected;
+        }
+
+        /** 没有检测到人脸的帧数 */
+        public int getMisses() {
+            return misses;
+        }
+
+        @NonNull
+        @Override
+        public String toString() {
+            return "Calibration{width=" + profile.getWidth()
+                    + ", height=" + profile.getHeight()
+                    + ", distance=" + profile.getDistanceCm() + "cm"
+                    + ", quality=" + quality
+                    + ", samples=" + samples
+                    + ", rejected=" + rejected
+                    + ", misses=" + misses + "}";
+        }
+    }
+
+    private final int frames;
+    private final float[] widths;
+    private final float[] heights;
+    private final float[] eyeDistances;
+    private final float[] scratch;
+    private int count;
+    private int misses;
+
+    public ProfileCalibrator() {
+        this(DEFAULT_FRAMES);
+    }
+
+    /**
+     * @param frames 需要报告的帧数，至少3帧才能判断离群值
+     */
+    public ProfileCalibrator(int frames) {
+        if (frames < 3) {
+            throw new IllegalArgumentException("frames must be at least 3: " + frames);
+        }
+        this.frames = frames;
+        this.widths = new float[frames];
+        this.heights = new float[frames];
+        this.eyeDistances = new float[frames];
+        this.scratch = new float[frames];
+    }
+
+    /**
+     * 报告一帧检测到的人脸
+     *
+     * @param eyeDistance 两眼中心的像素距离，没有特征点时为NaN
+     */
+    public void addFace(float width, float height, float eyeDistance) {
+        if (isComplete()) return;
+        widths[count] = width;
+        heights[count] = height;
+        eyeDistances[count] = eyeDistance;
+        count++;
+    }
+
+    /** 报告一帧没有检测到人脸 */
+    public void addMiss() {
+        if (isComplete()) return;
+        misses++;
+    }
+
+    /** 是否已经报告了足够的帧 */
+    public boolean isComplete() {
+        return count + misses >= frames;
+    }
+
+    /**
+     * 剔除离群值后取中位数。有效帧不到一半时返回null，需要重新拍摄
+     *
+     * @param estimator 检测图像的相机参数，有的话结果带有距离
+     */
+    @Nullable
+    public Result build(@Nullable DistanceEstimator estimator) {
+        if (count * 2 < frames) return null;
+        float medianWidth = median(widths, count);
+        float medianHeight = median(heights, count);
+        float widthLimit = OUTLIER_MADS * MAD_TO_SIGMA * mad(widths, count, medianWidth);
+        float heightLimit = OUTLIER_MADS * MAD_TO_SIGMA * mad(heights, count, medianHeight);
+
+        //剔除离群值，保留的帧移到数组前部
+        int kept = 0;
+        for (int i = 0; i < count; i++) {
+            if (Math.abs(widths[i] - medianWidth) > widthLimit
+                    || Math.abs(heights[i] - medianHeight) > heightLimit) {
+                continue;
+            }
+            widths[kept] = widths[i];
+            heights[kept] = heights[i];
+            eyeDistances[kept] = eyeDistances[i];
+            kept++;
+        }
+        int rejected = count - kept;
+        if (kept * 2 < frames) return null;
+
+        float width = median(widths, kept);
+        float height = median(heights, kept);
+        //一半以上的帧有特征点时才使用两眼距离
+        int eyes = 0;
+        for (int i = 0; i < kept; i++) {
+            if (!Float.isNaN(eyeDistances[i])) {
+                scratch[eyes++] = eyeDistances[i];
+            }
+        }
+        float eyeDistance = eyes * 2 > kept ? median(scratch, eyes) : Float.NaN;
+
+        float spread = MAD_TO_SIGMA * mad(widths, kept, width) / width;
+        float consistency = Math.max(0f, 1f - spread / MAX_RELATIVE_SPREAD);
+        float quality = (float) kept / frames * consistency;
+        FaceProfile profile = new FaceProfile(width, height, eyeDistance, estimator);
+        //下一次汇总重新开始
+        count = 0;
+        int missed = misses;
+        misses = 0;
+        return new Result(profile, quality, kept, rejected, missed);
+    }
+
+    //values的前n个的中位数，不改变values
+    private float median(float[] values, int n) {
+        if (values != scratch) {
+            System.arraycopy(values, 0, scratch, 0, n);
+        }
+        Arrays.sort(scratch, 0, n);
+        return n % 2 == 1 ? scratch[n / 2] : (scratch[n / 2 - 1] + scratch[n / 2]) / 2;
+    }
+
+    //中位数绝对偏差，不小于中位数的MIN_RELATIVE_MAD
+    private float mad(float[] values, int n, float median) {
+        for (int i = 0; i < n; i++) {
+            scratch[i] = Math.abs(values[i] - median);
+        }
+        Arrays.sort(scratch, 0, n);
+        float mad = n % 2 == 1 ? scratch[n / 2] : (scratch[n / 2 - 1] + scratch[n / 2]) / 2;
+        return Math.max(mad, Math.abs(median) * MIN_RELATIVE_MAD);
+    }
+}
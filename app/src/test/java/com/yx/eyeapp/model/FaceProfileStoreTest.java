@@ -0,0 +1,56 @@
+package com.yx.eyeapp.model;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+public class FaceProfileStoreTest {
+
+    private static ByteBuffer encode(FaceProfile profile) {
+        ByteBuffer record = ByteBuffer.allocate(FaceProfileStore.RECORD_SIZE);
+        FaceProfileStore.encode(profile, 1234L, record);
+        assertEquals(FaceProfileStore.RECORD_SIZE, record.position());
+        record.flip();
+        return record;
+    }
+
+    @Test
+    public void roundTrip_keepsSizesAndDistances() {
+        DistanceEstimator estimator = DistanceEstimator.fromIntrinsics(2.2f, 3.6f, 2.7f, 640, 480);
+        FaceProfile profile = new FaceProfile(200, 240, 84, estimator);
+
+        FaceProfile decoded = FaceProfileStore.decode(encode(profile));
+
+        assertNotNull(decoded);
+        assertEquals(200f, decoded.getWidth(), 0f);
+        assertEquals(240f, decoded.getHeight(), 0f);
+        assertEquals(84f, decoded.getEyeDistance(), 0f);
+        assertEquals(profile.getDistanceCm(), decoded.getDistanceCm(), 0f);
+        //恢复的人脸与原来的比较结果相同
+        FaceProfile closer = new FaceProfile(220, 264, 92, estimator);
+        assertEquals(closer.getSizeRatio(profile), closer.getSizeRatio(decoded), 0f);
+    }
+
+    @Test
+    public void roundTrip_withoutIntrinsics() {
+        FaceProfile decoded = FaceProfileStore.decode(encode(new FaceProfile(200, 240)));
+        assertNotNull(decoded);
+        assertTrue(Float.isNaN(decoded.getDistanceCm()));
+        assertEquals(1.1f, new FaceProfile(220, 264).getSizeRatio(decoded), 0.001f);
+    }
+
+    @Test
+    public void decode_rejectsCorruptedOrForeignRecords() {
+        ByteBuffer record = encode(new FaceProfile(200, 240));
+        record.put(10, (byte) (record.get(10) ^ 1));
+        assertNull(FaceProfileStore.decode(record));
+
+        ByteBuffer truncated = encode(new FaceProfile(200, 240));
+        truncated.limit(FaceProfileStore.RECORD_SIZE - 1);
+        assertNull(FaceProfileStore.decode(truncated));
+
+        assertNull(FaceProfileStore.decode(ByteBuffer.allocate(FaceProfileStore.RECORD_SIZE)));
+    }
+}
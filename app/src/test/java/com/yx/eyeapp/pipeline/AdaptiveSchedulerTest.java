@@ -0,0 +1,96 @@
+package com.yx.eyeapp.pipeline;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class AdaptiveSchedulerTest {
+    private static final long MS = 1_000_000L;
+
+    @Test
+    public void farFromThreshold_usesMaxInterval() {
+        AdaptiveScheduler scheduler = new AdaptiveScheduler(100, 2000);
+        assertEquals(100, scheduler.getIntervalMillis());
+        scheduler.onResult(0, 0.4f, 0f, 20 * MS);
+        assertEquals(2000, scheduler.getIntervalMillis());
+    }
+
+    @Test
+    public void nearThreshold_usesMinInterval() {
+        AdaptiveScheduler scheduler = new AdaptiveScheduler(100, 2000);
+        scheduler.onResult(0, 0.98f, 0f, 20 * MS);
+        assertEquals(100, scheduler.getIntervalMillis());
+        scheduler.onResult(1000 * MS, 1.03f, 0f, 20 * MS);
+        assertEquals(100, scheduler.getIntervalMillis());
+    }
+
+    @Test
+    public void intervalShrinksCloserToThreshold() {
+        AdaptiveScheduler far = new AdaptiveScheduler(100, 2000);
+        AdaptiveScheduler near = new AdaptiveScheduler(100, 2000);
+        far.onResult(0, 0.6f, 0f, 0);
+        near.onResult(0, 0.8f, 0f, 0);
+        assertTrue(near.getIntervalMillis() < far.getIntervalMillis());
+        assertTrue(far.getIntervalMillis() < 2000);
+        assertTrue(near.getIntervalMillis() > 100);
+    }
+
+    @Test
+    public void confidentDecision_stretchesInterval() {
+        AdaptiveScheduler unsure = new AdaptiveScheduler(100, 2000);
+        AdaptiveScheduler confident = new AdaptiveScheduler(100, 2000);
+        unsure.onResult(0, 0.8f, 0f, 0);
+        confident.onResult(0, 0.8f, 1f, 0);
+        assertTrue(confident.getIntervalMillis() > unsure.getIntervalMillis());
+        assertTrue(confident.getIntervalMillis() < 2000);
+    }
+
+    @Test
+    public void approaching_samplesBeforeReachingThreshold() {
+        AdaptiveScheduler scheduler = new AdaptiveScheduler(100, 2000);
+        scheduler.onResult(0, 0.5f, 0f, 0);
+        long still = scheduler.getIntervalMillis();
+        //每秒靠近0.2，剩余约0.25，预计1.25秒后到达阈值
+        scheduler.onResult(1000 * MS, 0.7f, 0f, 0);
+        scheduler.onResult(2000 * MS, 0.8f, 0f, 0);
+        long approaching = scheduler.getIntervalMillis();
+        assertTrue(approaching < still);
+        assertTrue("interval " + approaching, approaching <= 1000);
+    }
+
+    @Test
+    public void noFace_backsOffToMaxInterval() {
+        AdaptiveScheduler scheduler = new AdaptiveScheduler(100, 2000);
+        scheduler.onResult(0, Float.NaN, 0f, 0);
+        assertEquals(200, scheduler.getIntervalMillis());
+        scheduler.onResult(0, Float.NaN, 0f, 0);
+        assertEquals(400, scheduler.getIntervalMillis());
+        for (int i = 0; i < 10; i++) {
+            scheduler.onResult(0, Float.NaN, 0f, 0);
+        }
+        assertEquals(2000, scheduler.getIntervalMillis());
+    }
+
+    @Test
+    public void shouldCapture_respectsIntervalAndReportsRate() {
+        AdaptiveScheduler scheduler = new AdaptiveScheduler(500, 500);
+        int captured = 0;
+        //30fps持续60秒
+        for (long t = 0; t <= 60_000 * MS; t += 33 * MS) {
+            if (scheduler.shouldCapture(t)) {
+                captured++;
+                scheduler.onResult(t, Float.NaN, 0f, 50 * MS);
+            }
+        }
+        assertEquals(captured, scheduler.getCaptures());
+        //每500毫秒一次，量化到33毫秒的帧间隔后略少于120次
+        assertTrue("captured " + captured, captured > 100 && captured <= 121);
+        assertEquals(captured, scheduler.getDetectionsPerMinute(), 2);
+        assertEquals(0.1f, scheduler.getDutyCycle(), 0.01f);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidRange_throws() {
+        new AdaptiveScheduler(500, 100);
+    }
+}
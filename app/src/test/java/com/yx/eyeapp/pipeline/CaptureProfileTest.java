@@ -0,0 +1,35 @@
+package com.yx.eyeapp.pipeline;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class CaptureProfileTest {
+    //常见前置摄像头的帧率范围
+    private static final int[] LOWERS = {15, 7, 30, 10, 15, 24};
+    private static final int[] UPPERS = {15, 30, 30, 10, 20, 24};
+
+    @Test
+    public void chooseFpsRange_lowestUpperCoveringTarget() {
+        assertEquals(3, CaptureProfile.chooseFpsRange(LOWERS, UPPERS, 10f));
+        assertEquals(0, CaptureProfile.chooseFpsRange(LOWERS, UPPERS, 12f));
+        assertEquals(4, CaptureProfile.chooseFpsRange(LOWERS, UPPERS, 16f));
+    }
+
+    @Test
+    public void chooseFpsRange_prefersLowerLowerBoundOnTie() {
+        assertEquals(1, CaptureProfile.chooseFpsRange(LOWERS, UPPERS, 25f));
+    }
+
+    @Test
+    public void chooseFpsRange_highestWhenNothingCovers() {
+        int[] lowers = {15, 10};
+        int[] uppers = {15, 24};
+        assertEquals(1, CaptureProfile.chooseFpsRange(lowers, uppers, 60f));
+    }
+
+    @Test
+    public void chooseFpsRange_empty() {
+        assertEquals(-1, CaptureProfile.chooseFpsRange(new int[0], new int[0], 10f));
+    }
+}
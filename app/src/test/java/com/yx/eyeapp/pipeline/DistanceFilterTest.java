@@ -0,0 +1,96 @@
+package com.yx.eyeapp.pipeline;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class DistanceFilterTest {
+    private static final long MS = 1_000_000L;
+
+    @Test
+    public void noisyReadingsNearThreshold_doNotFlap() {
+        DistanceFilter filter = new DistanceFilter();
+        Random random = new Random(1);
+        long t = 0;
+        int rawChanges = 0;
+        int filteredChanges = 0;
+        boolean raw = false;
+        boolean filtered = false;
+        for (int i = 0; i < 100; i++) {
+            float ratio = 0.97f + (float) random.nextGaussian() * 0.03f;
+            if (ratio > 1f != raw) {
+                raw = !raw;
+                rawChanges++;
+            }
+            if (filter.update(t += 100 * MS, ratio) != filtered) {
+                filtered = !filtered;
+                filteredChanges++;
+            }
+        }
+        assertTrue(rawChanges > 10);
+        assertTrue(filteredChanges * 4 <= rawChanges);
+    }
+
+    @Test
+    public void hysteresis_exitsBelowExitRatio() {
+        DistanceFilter filter = new DistanceFilter(1f, 0.9f, 4);
+        long t = 0;
+        for (int i = 0; i < 10; i++) {
+            filter.update(t += 100 * MS, 1.1f);
+        }
+        assertTrue(filter.isTooClose());
+        //回到进入阈值以下，但还在滞回区间内
+        for (int i = 0; i < 10; i++) {
+            filter.update(t += 100 * MS, 0.95f);
+        }
+        assertTrue(filter.isTooClose());
+        for (int i = 0; i < 10; i++) {
+            filter.update(t += 100 * MS, 0.8f);
+        }
+        assertFalse(filter.isTooClose());
+    }
+
+    @Test
+    public void confidence_highFarFromThresholdLowNearIt() {
+        DistanceFilter far = new DistanceFilter();
+        DistanceFilter near = new DistanceFilter();
+        long t = 0;
+        for (int i = 0; i < DistanceFilter.DEFAULT_WINDOW_SIZE; i++) {
+            t += 100 * MS;
+            far.update(t, i % 2 == 0 ? 0.6f : 0.62f);
+            near.update(t, i % 2 == 0 ? 0.98f : 1.0f);
+        }
+        assertFalse(far.isTooClose());
+        assertEquals(1f, far.getConfidence(), 0.01f);
+        assertTrue(near.getConfidence() < 0.5f);
+    }
+
+    @Test
+    public void confidence_growsWithReadings() {
+        DistanceFilter filter = new DistanceFilter();
+        filter.update(0, 0.6f);
+        float first = filter.getConfidence();
+        for (int i = 1; i < DistanceFilter.DEFAULT_WINDOW_SIZE; i++) {
+            filter.update(i * 100 * MS, 0.6f);
+        }
+        assertTrue(filter.getConfidence() > first);
+    }
+
+    @Test
+    public void missingFace_keepsStateAndReset_clearsIt() {
+        DistanceFilter filter = new DistanceFilter();
+        long t = 0;
+        for (int i = 0; i < 5; i++) {
+            filter.update(t += 100 * MS, 1.2f);
+        }
+        assertTrue(filter.update(t += 100 * MS, Float.NaN));
+        assertEquals(1.2f, filter.getEstimate(), 0.01f);
+
+        filter.reset();
+        assertFalse(filter.isTooClose());
+        assertTrue(Float.isNaN(filter.getEstimate()));
+        assertEquals(0f, filter.getConfidence(), 0f);
+    }
+}
@@ -0,0 +1,106 @@
+package com.yx.eyeapp.pipeline;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class DutyCycleControllerTest {
+    private static final long MS = 1_000_000L;
+
+    private final List<Long> pauses = new ArrayList<>();
+
+    private DutyCycleController newController() {
+        return new DutyCycleController.Builder(new AdaptiveScheduler(100, 2000), pauses::add)
+                .setBurstFrames(3)
+                .setIdleMillis(3000)
+                .setWindowSize(5)
+                .build();
+    }
+
+    @Test
+    public void stableReadings_switchToBurstAndPause() {
+        DutyCycleController controller = newController();
+        long t = 0;
+        for (int i = 0; i < 4; i++) {
+            controller.onResult(t += 100 * MS, 0.6f, 0f, 0);
+        }
+        assertEquals(DutyCycleController.Mode.CONTINUOUS, controller.getMode());
+        controller.onResult(t += 100 * MS, 0.61f, 0f, 0);
+        assertEquals(DutyCycleController.Mode.BURST, controller.getMode());
+        assertEquals(1, pauses.size());
+        assertEquals(Long.valueOf(3000), pauses.get(0));
+
+        //暂停之前还在流水线中的结果不计入下一次采样
+        controller.onResult(t + 50 * MS, 0.6f, 0f, 0);
+        assertEquals(1, pauses.size());
+
+        t += 3000 * MS;
+        for (int i = 0; i < 3; i++) {
+            controller.onResult(t += 100 * MS, 0.6f, 0f, 0);
+        }
+        assertEquals(2, pauses.size());
+        assertEquals(DutyCycleController.Mode.BURST, controller.getMode());
+        assertEquals(2, controller.getBursts());
+    }
+
+    @Test
+    public void unstableReading_returnsToContinuous() {
+        DutyCycleController controller = newController();
+        long t = 0;
+        for (int i = 0; i < 5; i++) {
+            controller.onResult(t += 100 * MS, 0.6f, 0f, 0);
+        }
+        assertEquals(DutyCycleController.Mode.BURST, controller.getMode());
+        t += 3000 * MS;
+        controller.onResult(t += 100 * MS, 0.9f, 0f, 0);
+        assertEquals(DutyCycleController.Mode.CONTINUOUS, controller.getMode());
+        assertEquals(1, pauses.size());
+    }
+
+    @Test
+    public void nearThreshold_staysContinuous() {
+        DutyCycleController controller = newController();
+        long t = 0;
+        for (int i = 0; i < 20; i++) {
+            controller.onResult(t += 100 * MS, 0.95f, 0f, 0);
+        }
+        assertEquals(DutyCycleController.Mode.CONTINUOUS, controller.getMode());
+        assertTrue(pauses.isEmpty());
+    }
+
+    @Test
+    public void noFace_isStable() {
+        DutyCycleController controller = newController();
+        long t = 0;
+        for (int i = 0; i < 5; i++) {
+            controller.onResult(t += 100 * MS, Float.NaN, 0f, 0);
+        }
+        assertEquals(DutyCycleController.Mode.BURST, controller.getMode());
+    }
+
+    @Test
+    public void burstGate_spacesFrames() {
+        DutyCycleController controller = newController();
+        long t = 0;
+        for (int i = 0; i < 5; i++) {
+            controller.onResult(t += 100 * MS, 0.6f, 0f, 0);
+        }
+        assertTrue(controller.shouldCapture(0));
+        assertFalse(controller.shouldCapture(33 * MS));
+        assertTrue(controller.shouldCapture(100 * MS));
+    }
+
+    @Test
+    public void confidentReadings_areStableDespiteSpread() {
+        DutyCycleController controller = newController();
+        long t = 0;
+        float[] ratios = {0.5f, 0.6f, 0.7f, 0.6f, 0.5f};
+        for (float ratio : ratios) {
+            controller.onResult(t += 100 * MS, ratio, 0.95f, 0);
+        }
+        assertEquals(DutyCycleController.Mode.BURST, controller.getMode());
+    }
+}
@@ -0,0 +1,70 @@
+package com.yx.eyeapp.pipeline;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class KeyframeSchedulerTest {
+
+    //运行到下一个关键帧，每一帧都以给定的置信度跟踪成功
+    private static int runSegment(KeyframeScheduler scheduler, float confidence) {
+        int tracked = 0;
+        while (!scheduler.isKeyframeDue()) {
+            scheduler.onTracked(confidence);
+            tracked++;
+        }
+        scheduler.onKeyframe(true);
+        return tracked;
+    }
+
+    @Test
+    public void noTracking_everyFrameIsKeyframe() {
+        KeyframeScheduler scheduler = new KeyframeScheduler(2, 16, 0.9f);
+        assertTrue(scheduler.isKeyframeDue());
+        scheduler.onKeyframe(false);
+        assertTrue(scheduler.isKeyframeDue());
+    }
+
+    @Test
+    public void highConfidence_doublesInterval() {
+        KeyframeScheduler scheduler = new KeyframeScheduler(2, 16, 0.9f);
+        scheduler.onKeyframe(true);
+        assertEquals(1, runSegment(scheduler, 0.95f));
+        assertEquals(4, scheduler.getInterval());
+        assertEquals(3, runSegment(scheduler, 0.95f));
+        assertEquals(8, scheduler.getInterval());
+        runSegment(scheduler, 0.95f);
+        runSegment(scheduler, 0.95f);
+        assertEquals(16, scheduler.getInterval());
+    }
+
+    @Test
+    public void lowConfidence_halvesInterval() {
+        KeyframeScheduler scheduler = new KeyframeScheduler(2, 16, 0.9f);
+        scheduler.onKeyframe(true);
+        runSegment(scheduler, 0.95f);
+        runSegment(scheduler, 0.95f);
+        assertEquals(8, scheduler.getInterval());
+
+        scheduler.onTracked(0.95f);
+        scheduler.onTracked(0.8f);
+        runSegment(scheduler, 0.95f);
+        assertEquals(4, scheduler.getInterval());
+    }
+
+    @Test
+    public void lost_forcesKeyframeAndResetsInterval() {
+        KeyframeScheduler scheduler = new KeyframeScheduler(2, 16, 0.9f);
+        scheduler.onKeyframe(true);
+        runSegment(scheduler, 0.95f);
+        runSegment(scheduler, 0.95f);
+        assertFalse(scheduler.isKeyframeDue());
+
+        scheduler.onLost();
+        assertTrue(scheduler.isKeyframeDue());
+        assertEquals(2, scheduler.getInterval());
+        scheduler.onKeyframe(true);
+        assertEquals(2, scheduler.getInterval());
+        assertEquals(0.5f, scheduler.getTrackedRatio(), 0.2f);
+    }
+}
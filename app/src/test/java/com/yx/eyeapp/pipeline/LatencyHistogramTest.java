@@ -0,0 +1,88 @@
+package com.yx.eyeapp.pipeline;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void buckets_areContiguousAndCoverTheirValues() {
+        for (int bucket = 0; bucket < LatencyHistogram.BUCKETS - 1; bucket++) {
+            long lower = LatencyHistogram.lowerBound(bucket);
+            long next = LatencyHistogram.lowerBound(bucket + 1);
+            assertTrue(next > lower);
+            assertEquals(bucket, LatencyHistogram.bucketOf(lower));
+            assertEquals(bucket, LatencyHistogram.bucketOf(next - 1));
+        }
+        assertEquals(LatencyHistogram.BUCKETS - 1, LatencyHistogram.bucketOf(Long.MAX_VALUE / 1000));
+    }
+
+    @Test
+    public void empty_reportsZero() {
+        LatencyHistogram histogram = new LatencyHistogram("test");
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getPercentileMicros(0.5));
+        assertEquals(0, histogram.getMeanMicros());
+    }
+
+    @Test
+    public void percentiles_withinBucketError() {
+        LatencyHistogram histogram = new LatencyHistogram("test");
+        //1ms到100ms均匀分布
+        for (int ms = 1; ms <= 100; ms++) {
+            histogram.record(ms * 1_000_000L);
+        }
+        assertEquals(100, histogram.getCount());
+        assertEquals(100_000, histogram.getMaxMicros());
+        assertEquals(50_500, histogram.getMeanMicros());
+        long p50 = histogram.getPercentileMicros(0.5);
+        assertTrue("p50=" + p50, p50 >= 50_000 && p50 <= 50_000 * 1.25);
+        long p99 = histogram.getPercentileMicros(0.99);
+        assertTrue("p99=" + p99, p99 >= 99_000 && p99 <= 100_000);
+        assertEquals(100_000, histogram.getPercentileMicros(1.0));
+    }
+
+    @Test
+    public void negative_countsAsZero() {
+        LatencyHistogram histogram = new LatencyHistogram("test");
+        histogram.record(-5_000);
+        assertEquals(1, histogram.getCount());
+        assertEquals(0, histogram.getPercentileMicros(0.5));
+    }
+
+    @Test
+    public void reset_clearsEverything() {
+        LatencyHistogram histogram = new LatencyHistogram("test");
+        histogram.record(3_000_000);
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMaxMicros());
+        assertEquals(0, histogram.getPercentileMicros(0.9));
+    }
+
+    @Test
+    public void concurrentRecords_areAllCounted() throws InterruptedException {
+        LatencyHistogram histogram = new LatencyHistogram("test");
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            long nanos = (t + 1) * 1_000_000L;
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    histogram.record(nanos);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(40_000, histogram.getCount());
+        assertEquals(4_000, histogram.getMaxMicros());
+        assertEquals(2_500, histogram.getMeanMicros());
+    }
+}
@@ -0,0 +1,102 @@
+package com.yx.eyeapp.pipeline;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class RoiTrackerTest {
+    private static final int WIDTH = 600;
+    private static final int HEIGHT = 400;
+
+    /** 原始图像中的像素(x, y)旋转后在正立图像中的位置，与InputImage的旋转方向一致 */
+    private static int[] toUpright(int x, int y, int rotation) {
+        switch (rotation) {
+            case 90:
+                return new int[] {HEIGHT - 1 - y, x};
+            case 180:
+                return new int[] {WIDTH - 1 - x, HEIGHT - 1 - y};
+            case 270:
+                return new int[] {y, WIDTH - 1 - x};
+            default:
+                return new int[] {x, y};
+        }
+    }
+
+    @Test
+    public void noFace_noCrop() {
+        RoiTracker tracker = new RoiTracker(WIDTH, HEIGHT, 270);
+        assertNull(tracker.nextCrop());
+        tracker.onFace(100, 100, 160, 180);
+        assertNotNull(tracker.nextCrop());
+        tracker.onLost();
+        assertNull(tracker.nextCrop());
+    }
+
+    @Test
+    public void crop_coversFaceAndOffsetMatchesRotation() {
+        for (int rotation : new int[] {0, 90, 180, 270}) {
+            boolean transposed = rotation == 90 || rotation == 270;
+            int uprightWidth = transposed ? HEIGHT : WIDTH;
+            int uprightHeight = transposed ? WIDTH : HEIGHT;
+            RoiTracker tracker = new RoiTracker(WIDTH, HEIGHT, rotation);
+            int faceLeft = 101;
+            int faceTop = 151;
+            int faceRight = faceLeft + 61;
+            int faceBottom = faceTop + 81;
+            tracker.onFace(faceLeft, faceTop, faceRight, faceBottom);
+            RoiTracker.Crop crop = tracker.nextCrop();
+            assertNotNull("rotation " + rotation, crop);
+            assertEquals(0, crop.left & 1);
+            assertEquals(0, crop.top & 1);
+            assertEquals(0, crop.width & 1);
+            assertEquals(0, crop.height & 1);
+            assertTrue(crop.left >= 0 && crop.left + crop.width <= WIDTH);
+            assertTrue(crop.top >= 0 && crop.top + crop.height <= HEIGHT);
+
+            //裁剪区域旋转后的左上角就是偏移
+            int minX = Integer.MAX_VALUE;
+            int minY = Integer.MAX_VALUE;
+            int maxX = Integer.MIN_VALUE;
+            int maxY = Integer.MIN_VALUE;
+            for (int[] corner : new int[][] {
+                    {crop.left, crop.top},
+                    {crop.left + crop.width - 1, crop.top},
+                    {crop.left, crop.top + crop.height - 1},
+                    {crop.left + crop.width - 1, crop.top + crop.height - 1}}) {
+                int[] p = toUpright(corner[0], corner[1], rotation);
+                minX = Math.min(minX, p[0]);
+                minY = Math.min(minY, p[1]);
+                maxX = Math.max(maxX, p[0]);
+                maxY = Math.max(maxY, p[1]);
+            }
+            assertEquals("rotation " + rotation, minX, crop.offsetX);
+            assertEquals("rotation " + rotation, minY, crop.offsetY);
+            assertTrue(maxX < uprightWidth && maxY < uprightHeight);
+
+            //人脸框加上余量后都在裁剪区域内
+            assertTrue(minX <= faceLeft - 40 && maxX >= faceRight + 40 - 1);
+            assertTrue(minY <= faceTop - 40 && maxY >= faceBottom + 40 - 1);
+        }
+    }
+
+    @Test
+    public void largeFace_fallsBackToFullFrame() {
+        RoiTracker tracker = new RoiTracker(WIDTH, HEIGHT, 270);
+        tracker.onFace(20, 20, 380, 580);
+        assertNull(tracker.nextCrop());
+    }
+
+    @Test
+    public void stats_hitRateAndSavedTime() {
+        RoiTracker tracker = new RoiTracker(WIDTH, HEIGHT, 0);
+        tracker.onFullDetection(40_000_000L);
+        tracker.onCropDetection(true, 10_000_000L);
+        tracker.onCropDetection(true, 10_000_000L);
+        tracker.onCropDetection(true, 10_000_000L);
+        tracker.onCropDetection(false, 10_000_000L);
+        tracker.onFullDetection(40_000_000L);
+        assertEquals(0.75f, tracker.getHitRate(), 1e-6f);
+        //3次命中各省40ms，4次裁剪检测共花40ms
+        assertEquals(80, tracker.getSavedMillis());
+    }
+}
@@ -0,0 +1,66 @@
+package com.yx.eyeapp.pipeline;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class StreamSizeSelectorTest {
+    //常见前置摄像头：焦距2.2mm，4:3传感器3.6x2.7mm
+    private static final float FOCAL = 2.2f;
+    private static final float SENSOR_W = 3.6f;
+    private static final float SENSOR_H = 2.7f;
+    private static final int[] WIDTHS = {1920, 1280, 640, 320, 800, 1440, 176};
+    private static final int[] HEIGHTS = {1080, 960, 480, 240, 600, 1080, 144};
+
+    @Test
+    public void facePixels_pinholeModel() {
+        StreamSizeSelector selector = new StreamSizeSelector(0.6f, 100);
+        //0.15m * 2.2mm / 0.6m = 0.55mm，640/3.6 = 177.8像素每毫米
+        assertEquals(97.8f, selector.getFacePixels(640, 480, FOCAL, SENSOR_W, SENSOR_H), 0.1f);
+        //16:9的输出在垂直方向被裁剪，每毫米的像素数由宽度决定
+        assertEquals(selector.getFacePixels(1280, 960, FOCAL, SENSOR_W, SENSOR_H),
+                selector.getFacePixels(1280, 720, FOCAL, SENSOR_W, SENSOR_H), 1e-3f);
+    }
+
+    @Test
+    public void select_smallestSizeWithEnoughFacePixels() {
+        StreamSizeSelector selector = new StreamSizeSelector(0.6f, 100);
+        int index = selector.select(WIDTHS, HEIGHTS, FOCAL, SENSOR_W, SENSOR_H);
+        assertEquals(800, WIDTHS[index]);
+
+        StreamSizeSelector near = new StreamSizeSelector(0.25f, 100);
+        assertEquals(320, WIDTHS[near.select(WIDTHS, HEIGHTS, FOCAL, SENSOR_W, SENSOR_H)]);
+    }
+
+    @Test
+    public void select_largestWhenNothingIsEnough() {
+        StreamSizeSelector selector = new StreamSizeSelector(5f, 100);
+        int index = selector.select(WIDTHS, HEIGHTS, FOCAL, SENSOR_W, SENSOR_H);
+        assertEquals(1920, WIDTHS[index]);
+    }
+
+    @Test
+    public void select_fallbackWithoutPhysicalSize() {
+        StreamSizeSelector selector = new StreamSizeSelector();
+        int index = selector.select(WIDTHS, HEIGHTS, 0, 0, 0);
+        assertEquals(640, WIDTHS[index]);
+    }
+
+    @Test
+    public void select_skipsOddSizes() {
+        StreamSizeSelector selector = new StreamSizeSelector(0.3f, 50);
+        int index = selector.select(new int[] {321, 640}, new int[] {241, 480},
+                FOCAL, SENSOR_W, SENSOR_H);
+        assertEquals(1, index);
+        assertEquals(-1, selector.select(new int[0], new int[0], FOCAL, SENSOR_W, SENSOR_H));
+    }
+
+    @Test
+    public void rotation_frontAndBack() {
+        assertEquals(270, StreamSizeSelector.getRotation(270, 0, true));
+        assertEquals(0, StreamSizeSelector.getRotation(270, 90, true));
+        assertEquals(90, StreamSizeSelector.getRotation(90, 0, false));
+        assertEquals(0, StreamSizeSelector.getRotation(90, 90, false));
+        assertEquals(180, StreamSizeSelector.getRotation(90, 270, false));
+    }
+}
@@ -0,0 +1,74 @@
+package com.yx.eyeapp.util;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+public class FrameBufferPoolTest {
+
+    @Test
+    public void release_reusesBuffer() {
+        FrameBufferPool pool = new FrameBufferPool(2);
+        ByteBuffer buffer = pool.acquire(16);
+        pool.release(buffer);
+        assertSame(buffer, pool.acquire(16));
+        assertEquals(1, pool.getHits());
+        assertEquals(1, pool.getInUse());
+    }
+
+    @Test
+    public void releaseTwice_doesNotShareBuffer() {
+        FrameBufferPool pool = new FrameBufferPool(2);
+        ByteBuffer buffer = pool.acquire(16);
+        pool.acquire(16);
+        pool.release(buffer);
+        pool.release(buffer);
+        assertEquals(1, pool.getInUse());
+        assertNotSame(pool.acquire(16), pool.acquire(16));
+    }
+
+    @Test
+    public void foreignBuffer_isIgnored() {
+        FrameBufferPool pool = new FrameBufferPool(2);
+        pool.acquire(16);
+        pool.release(ByteBuffer.allocateDirect(8));
+        assertEquals(1, pool.getInUse());
+        assertEquals(1, pool.getHighWaterMark());
+        pool.acquire(16);
+        assertEquals(2, pool.getHighWaterMark());
+        assertEquals(0, pool.getHits());
+    }
+
+    @Test
+    public void sizeChange_releasesOldBuffers() {
+        FrameBufferPool pool = new FrameBufferPool(2);
+        ByteBuffer old = pool.acquire(16);
+        ByteBuffer current = pool.acquire(32);
+        assertEquals(2, pool.getInUse());
+        pool.release(old);
+        assertEquals(1, pool.getInUse());
+        pool.release(current);
+        assertEquals(0, pool.getInUse());
+        //旧尺寸的缓冲不回到池中
+        assertSame(current, pool.acquire(32));
+        assertNotSame(old, pool.acquire(32));
+        assertEquals(2, pool.getHighWaterMark());
+    }
+
+    @Test
+    public void releaseTwice_whenFull_countsOnce() {
+        FrameBufferPool pool = new FrameBufferPool(1);
+        ByteBuffer first = pool.acquire(16);
+        ByteBuffer second = pool.acquire(16);
+        ByteBuffer third = pool.acquire(16);
+        pool.release(first);
+        //池已满，second被丢弃
+        pool.release(second);
+        pool.release(second);
+        assertEquals(1, pool.getInUse());
+        pool.release(third);
+        assertEquals(0, pool.getInUse());
+    }
+}
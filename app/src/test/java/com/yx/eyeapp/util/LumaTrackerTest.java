@@ -0,0 +1,98 @@
+package com.yx.eyeapp.util;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+public class LumaTrackerTest {
+    private static final int WIDTH = 320;
+    private static final int HEIGHT = 240;
+
+    /** 平滑变化的背景上画一个有纹理的方块，纹理随方块一起缩放 */
+    private static ByteBuffer frame(int left, int top, int size) {
+        ByteBuffer y = ByteBuffer.allocateDirect(WIDTH * HEIGHT * 3 / 2);
+        for (int row = 0; row < HEIGHT; row++) {
+            for (int col = 0; col < WIDTH; col++) {
+                double value = 100 + 30 * Math.sin(col * 0.05) * Math.cos(row * 0.07);
+                if (size > 0 && col >= left && col < left + size && row >= top && row < top + size) {
+                    double u = (double) (col - left) / size;
+                    double v = (double) (row - top) / size;
+                    value = 128 + 50 * Math.sin(u * 12.1 + v * 4.3)
+                            + 40 * Math.cos(v * 9.7 - u * 6.1)
+                            + 25 * Math.sin(u * v * 30);
+                }
+                y.put(row * WIDTH + col, (byte) Math.max(0, Math.min(255, (int) value)));
+            }
+        }
+        return y;
+    }
+
+    private static void assertBox(LumaTracker tracker, int left, int top, int size, int tolerance) {
+        int[] box = new int[4];
+        tracker.getBox(box);
+        assertEquals(left, box[0], tolerance);
+        assertEquals(top, box[1], tolerance);
+        assertEquals(left + size, box[2], tolerance);
+        assertEquals(top + size, box[3], tolerance);
+    }
+
+    @Test
+    public void track_followsMovingPatch() {
+        LumaTracker tracker = new LumaTracker();
+        assertTrue(tracker.init(frame(100, 80, 80), WIDTH, WIDTH, HEIGHT, 100, 80, 180, 160));
+
+        int left = 100;
+        int top = 80;
+        for (int i = 0; i < 5; i++) {
+            left += 7;
+            top -= 5;
+            assertTrue(tracker.track(frame(left, top, 80), WIDTH, WIDTH, HEIGHT));
+            assertBox(tracker, left, top, 80, 2);
+            assertTrue(tracker.getConfidence() > 0.9f);
+        }
+    }
+
+    @Test
+    public void track_estimatesScale() {
+        LumaTracker tracker = new LumaTracker();
+        assertTrue(tracker.init(frame(100, 80, 80), WIDTH, WIDTH, HEIGHT, 100, 80, 180, 160));
+
+        //人脸靠近，边长变大8%，中心不变
+        assertTrue(tracker.track(frame(97, 77, 86), WIDTH, WIDTH, HEIGHT));
+        assertEquals(86, tracker.getWidth(), 86 * 0.03f);
+        assertEquals(86, tracker.getHeight(), 86 * 0.03f);
+        assertBox(tracker, 97, 77, 86, 3);
+    }
+
+    @Test
+    public void track_losesPatchThatDisappears() {
+        LumaTracker tracker = new LumaTracker();
+        assertTrue(tracker.init(frame(100, 80, 80), WIDTH, WIDTH, HEIGHT, 100, 80, 180, 160));
+
+        assertFalse(tracker.track(frame(0, 0, 0), WIDTH, WIDTH, HEIGHT));
+        assertFalse(tracker.isTracking());
+        assertTrue(tracker.getConfidence() < LumaTracker.DEFAULT_MIN_CONFIDENCE);
+        //跟丢之后需要重新init
+        assertFalse(tracker.track(frame(100, 80, 80), WIDTH, WIDTH, HEIGHT));
+    }
+
+    @Test
+    public void init_rejectsFlatOrTinyRegion() {
+        ByteBuffer flat = ByteBuffer.allocateDirect(WIDTH * HEIGHT);
+        LumaTracker tracker = new LumaTracker();
+        assertFalse(tracker.init(flat, WIDTH, WIDTH, HEIGHT, 100, 80, 180, 160));
+        assertFalse(tracker.init(frame(100, 80, 80), WIDTH, WIDTH, HEIGHT, 100, 80, 104, 84));
+        assertFalse(tracker.isTracking());
+    }
+
+    @Test
+    public void init_clampsRegionToImage() {
+        LumaTracker tracker = new LumaTracker();
+        assertTrue(tracker.init(frame(0, 0, 80), WIDTH, WIDTH, HEIGHT, -20, -10, 80, 80));
+        int[] box = new int[4];
+        tracker.getBox(box);
+        assertArrayEquals(new int[] {0, 0, 80, 80}, box);
+    }
+}
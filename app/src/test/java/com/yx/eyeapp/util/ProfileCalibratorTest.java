@@ -0,0 +1,83 @@
+package com.yx.eyeapp.util;
+
+import com.yx.eyeapp.model.DistanceEstimator;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ProfileCalibratorTest {
+
+    @Test
+    public void build_rejectsOutlierAndTakesMedian() {
+        ProfileCalibrator calibrator = new ProfileCalibrator(7);
+        float[] widths = {200, 202, 198, 201, 199, 260, 200};
+        for (float width : widths) {
+            calibrator.addFace(width, width * 1.2f, Float.NaN);
+        }
+        assertTrue(calibrator.isComplete());
+        ProfileCalibrator.Result result = calibrator.build(null);
+
+        assertNotNull(result);
+        assertEquals(1, result.getRejected());
+        assertEquals(6, result.getSamples());
+        assertEquals(200f, result.getProfile().getWidth(), 0.6f);
+        assertEquals(240f, result.getProfile().getHeight(), 0.7f);
+        assertTrue(result.getQuality() > 0.7f);
+    }
+
+    @Test
+    public void quality_dropsWithMissesAndSpread() {
+        ProfileCalibrator steady = new ProfileCalibrator(5);
+        ProfileCalibrator noisy = new ProfileCalibrator(5);
+        ProfileCalibrator missing = new ProfileCalibrator(5);
+        float[] steadyWidths = {200, 201, 199, 200, 200};
+        float[] noisyWidths = {200, 212, 188, 206, 194};
+        for (int i = 0; i < 5; i++) {
+            steady.addFace(steadyWidths[i], 240, Float.NaN);
+            noisy.addFace(noisyWidths[i], 240, Float.NaN);
+            if (i < 3) {
+                missing.addFace(steadyWidths[i], 240, Float.NaN);
+            } else {
+                missing.addMiss();
+            }
+        }
+        float quality = steady.build(null).getQuality();
+        assertTrue(noisy.build(null).getQuality() < quality);
+        ProfileCalibrator.Result partial = missing.build(null);
+        assertEquals(2, partial.getMisses());
+        assertTrue(partial.getQuality() < quality);
+    }
+
+    @Test
+    public void build_needsFaceInMostFrames() {
+        ProfileCalibrator calibrator = new ProfileCalibrator(5);
+        calibrator.addFace(200, 240, Float.NaN);
+        calibrator.addFace(200, 240, Float.NaN);
+        calibrator.addMiss();
+        calibrator.addMiss();
+        calibrator.addMiss();
+        assertTrue(calibrator.isComplete());
+        assertNull(calibrator.build(null));
+    }
+
+    @Test
+    public void build_usesEyesOnlyWhenMostFramesHaveThem() {
+        DistanceEstimator estimator = DistanceEstimator.fromIntrinsics(2.2f, 3.6f, 2.7f, 640, 480);
+        ProfileCalibrator withEyes = new ProfileCalibrator(3);
+        withEyes.addFace(200, 240, 80);
+        withEyes.addFace(200, 240, 82);
+        withEyes.addFace(200, 240, Float.NaN);
+        ProfileCalibrator.Result result = withEyes.build(estimator);
+        assertEquals(81f, result.getProfile().getEyeDistance(), 0.01f);
+        assertEquals(estimator.getDistanceByEyes(81f), result.getProfile().getDistanceCm(), 0.01f);
+
+        ProfileCalibrator fewEyes = new ProfileCalibrator(3);
+        fewEyes.addFace(200, 240, 80);
+        fewEyes.addFace(200, 240, Float.NaN);
+        fewEyes.addFace(200, 240, Float.NaN);
+        result = fewEyes.build(estimator);
+        assertTrue(Float.isNaN(result.getProfile().getEyeDistance()));
+        assertEquals(estimator.getDistanceByWidth(200f), result.getProfile().getDistanceCm(), 0.01f);
+    }
+}
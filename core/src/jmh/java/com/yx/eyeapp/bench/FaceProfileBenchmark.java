@@ -0,0 +1,50 @@
+package com.yx.eyeapp.bench;
+
+import com.yx.eyeapp.model.DistanceEstimator;
+import com.yx.eyeapp.model.FaceProfile;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * 每一帧与预设人脸的比较（DistanceDecisionSink）：由人脸框创建FaceProfile再求尺寸比。
+ * eyes按两眼距离换算的距离比较，width按人脸框宽度换算的距离比较，pixels没有相机参数、按像素尺寸比较。
+ */
+@State(Scope.Thread)
+public class FaceProfileBenchmark {
+    @Param({"eyes", "width", "pixels"})
+    public String mode;
+
+    private static final int FACES = 256;
+    private final float[] widths = new float[FACES];
+    private final float[] heights = new float[FACES];
+    private final float[] eyeDistances = new float[FACES];
+    private DistanceEstimator estimator;
+    private FaceProfile threshold;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        boolean eyes = mode.equals("eyes");
+        estimator = mode.equals("pixels") ? null
+                : DistanceEstimator.fromIntrinsics(2.2f, 3.6f, 2.7f, 640, 480);
+        threshold = new FaceProfile(200, 240, eyes ? 84 : Float.NaN, estimator);
+        for (int i = 0; i < FACES; i++) {
+            float scale = 0.8f + 0.4f * i / FACES;
+            widths[i] = 200 * scale;
+            heights[i] = 240 * scale;
+            eyeDistances[i] = eyes ? 84 * scale : Float.NaN;
+        }
+    }
+
+    @Benchmark
+    public float createAndCompare() {
+        int i = next;
+        next = (i + 1) % FACES;
+        FaceProfile face = new FaceProfile(widths[i], heights[i], eyeDistances[i], estimator);
+        return face.getSizeRatio(threshold);
+    }
+}
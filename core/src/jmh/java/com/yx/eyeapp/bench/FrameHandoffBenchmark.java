@@ -0,0 +1,62 @@
+package com.yx.eyeapp.bench;
+
+import com.yx.eyeapp.pipeline.SpscQueue;
+import com.yx.eyeapp.util.LatestFrameExchanger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * 相邻两个阶段之间的帧交接，一个生产者线程和一个消费者线程。
+ * 生产者和消费者都不等待：队列满时丢弃（SpscQueue，流水线使用的），
+ * 或者覆盖旧帧（LatestFrameExchanger，之前的单槽交换，在test源码中作为对照）。
+ */
+@State(Scope.Group)
+public class FrameHandoffBenchmark {
+    /** SpscQueue的容量，与流水线的检测、决策队列相同 */
+    @Param({"1", "2"})
+    public int capacity;
+
+    private final Object frame = new Object();
+    private SpscQueue<Object> queue;
+    private LatestFrameExchanger<Object> exchanger;
+
+    @Setup
+    public void setUp() {
+        queue = new SpscQueue<>("bench", capacity);
+        exchanger = new LatestFrameExchanger<>();
+    }
+
+    @Benchmark
+    @Group("spsc")
+    @GroupThreads(1)
+    public boolean spscOffer() {
+        return queue.offer(frame);
+    }
+
+    @Benchmark
+    @Group("spsc")
+    @GroupThreads(1)
+    public Object spscPoll() {
+        return queue.poll();
+    }
+
+    @Benchmark
+    @Group("latest")
+    @GroupThreads(1)
+    public Object latestPublish() {
+        return exchanger.publish(frame);
+    }
+
+    @Benchmark
+    @Group("latest")
+    @GroupThreads(1)
+    public Object latestPoll() {
+        return exchanger.poll();
+    }
+}
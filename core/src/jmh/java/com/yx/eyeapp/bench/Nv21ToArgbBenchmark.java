@@ -0,0 +1,54 @@
+package com.yx.eyeapp.bench;
+
+import com.yx.eyeapp.util.Nv21ArgbConverter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.nio.ByteBuffer;
+
+/**
+ * NV21转换为ARGB预览位图的像素（OverlaySink没有TextureView预览时），包括旋转和镜像。
+ */
+@State(Scope.Thread)
+public class Nv21ToArgbBenchmark {
+    @Param({"640x480", "1280x720"})
+    public String resolution;
+
+    @Param({"0", "90", "270"})
+    public int rotation;
+
+    @Param({"true", "false"})
+    public boolean mirror;
+
+    private int width;
+    private int height;
+    private ByteBuffer nv21;
+    private int[] out;
+    private Nv21ArgbConverter converter;
+
+    @Setup
+    public void setUp() {
+        int[] size = SyntheticPlanes.parseResolution(resolution);
+        width = size[0];
+        height = size[1];
+        nv21 = SyntheticPlanes.nv21(width, height, 42);
+        out = new int[width * height];
+        converter = new Nv21ArgbConverter();
+    }
+
+    @TearDown
+    public void tearDown() {
+        converter.release();
+    }
+
+    @Benchmark
+    public int[] convert() {
+        converter.convert(nv21, width, height, rotation, mirror, out);
+        return out;
+    }
+}
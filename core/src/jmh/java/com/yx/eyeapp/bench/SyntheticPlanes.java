@@ -0,0 +1,96 @@
+package com.yx.eyeapp.bench;
+
+import androidx.annotation.NonNull;
+
+import com.yx.eyeapp.util.YuvPlane;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+/**
+ * 合成的YUV_420_888平面，模拟相机输出的几种布局：
+ * pixelStride为2时U、V交错且V在前（NV21，两个平面共用一块内存），为1时各自独立（I420）。
+ * 每行末尾可以有rowPadding个填充字节。缓冲都是直接内存，与ImageReader一致。
+ */
+final class SyntheticPlanes {
+
+    private SyntheticPlanes() {
+    }
+
+    static final class Plane implements YuvPlane {
+        private final ByteBuffer buffer;
+        private final int rowStride;
+        private final int pixelStride;
+
+        Plane(ByteBuffer buffer, int rowStride, int pixelStride) {
+            this.buffer = buffer;
+            this.rowStride = rowStride;
+            this.pixelStride = pixelStride;
+        }
+
+        @NonNull
+        @Override
+        public ByteBuffer getBuffer() {
+            return buffer.duplicate();
+        }
+
+        @Override
+        public int getRowStride() {
+            return rowStride;
+        }
+
+        @Override
+        public int getPixelStride() {
+            return pixelStride;
+        }
+    }
+
+    /** 解析"宽x高" */
+    static int[] parseResolution(String resolution) {
+        String[] parts = resolution.split("x");
+        return new int[] {Integer.parseInt(parts[0]), Integer.parseInt(parts[1])};
+    }
+
+    /** 返回{Y, U, V} */
+    static YuvPlane[] create(int width, int height, int pixelStride, int rowPadding, long seed) {
+        Random random = new Random(seed);
+        int yRowStride = width + rowPadding;
+        ByteBuffer y = random(yRowStride * (height - 1) + width, random);
+
+        int chromaWidth = width / 2;
+        int chromaHeight = height / 2;
+        if (pixelStride == 2) {
+            int uvRowStride = width + rowPadding;
+            int size = uvRowStride * (chromaHeight - 1) + width;
+            ByteBuffer memory = random(size, random);
+            ByteBuffer v = memory.duplicate();
+            v.limit(size - 1);
+            ByteBuffer u = memory.duplicate();
+            u.position(1);
+            return new YuvPlane[] {
+                    new Plane(y, yRowStride, 1),
+                    new Plane(u.slice(), uvRowStride, 2),
+                    new Plane(v.slice(), uvRowStride, 2)};
+        }
+        int uvRowStride = chromaWidth + rowPadding;
+        int size = uvRowStride * (chromaHeight - 1) + chromaWidth;
+        return new YuvPlane[] {
+                new Plane(y, yRowStride, 1),
+                new Plane(random(size, random), uvRowStride, 1),
+                new Plane(random(size, random), uvRowStride, 1)};
+    }
+
+    /** 随机内容的NV21帧 */
+    static ByteBuffer nv21(int width, int height, long seed) {
+        return random(width * height + 2 * (width * height / 4), new Random(seed));
+    }
+
+    private static ByteBuffer random(int size, Random random) {
+        byte[] bytes = new byte[size];
+        random.nextBytes(bytes);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(size);
+        buffer.put(bytes);
+        buffer.flip();
+        return buffer;
+    }
+}
@@ -0,0 +1,67 @@
+package com.yx.eyeapp.bench;
+
+import com.yx.eyeapp.util.YuvPlane;
+import com.yx.eyeapp.util.YuvPlaneCopier;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.nio.ByteBuffer;
+
+/**
+ * YUV_420_888平面拷贝为NV21（FramePipeline转换阶段、BitmapUtils.yuv420ThreePlanesToNV21）。
+ * cached是流水线的用法，每个ImageReader一个YuvPlaneCopier；detectEveryFrame是不带copier的重载，每帧重新检测布局。
+ */
+@State(Scope.Thread)
+public class YuvToNv21Benchmark {
+    @Param({"640x480", "1280x720", "1920x1080"})
+    public String resolution;
+
+    /** 色度平面的pixelStride：2为交错的NV21，1为I420 */
+    @Param({"2", "1"})
+    public int pixelStride;
+
+    /** 每行末尾的填充字节 */
+    @Param({"0", "64"})
+    public int rowPadding;
+
+    /** 并行拷贝的线程数，只对1280x720及以上生效 */
+    @Param({"1", "2"})
+    public int workers;
+
+    private int width;
+    private int height;
+    private YuvPlane[] planes;
+    private ByteBuffer out;
+    private YuvPlaneCopier copier;
+
+    @Setup
+    public void setUp() {
+        int[] size = SyntheticPlanes.parseResolution(resolution);
+        width = size[0];
+        height = size[1];
+        planes = SyntheticPlanes.create(width, height, pixelStride, rowPadding, 42);
+        out = ByteBuffer.allocateDirect(width * height + 2 * (width * height / 4));
+        copier = new YuvPlaneCopier();
+        copier.setParallelism(workers, YuvPlaneCopier.DEFAULT_PARALLEL_MIN_PIXELS);
+    }
+
+    @TearDown
+    public void tearDown() {
+        copier.release();
+    }
+
+    @Benchmark
+    public ByteBuffer cached() {
+        return copier.copyToNV21(planes, width, height, out);
+    }
+
+    @Benchmark
+    public ByteBuffer detectEveryFrame() {
+        return new YuvPlaneCopier().copyToNV21(planes, width, height, out);
+    }
+}
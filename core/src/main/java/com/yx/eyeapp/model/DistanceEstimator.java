@@ -0,0 +1,83 @@
+package com.yx.eyeapp.model;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * 按小孔成像把人脸在图像中的像素尺寸换算为到摄像头的距离（厘米）。
+ *
+ * 焦距的像素数 = 焦距（毫米）× 输出图像每毫米传感器对应的像素数，后者的算法与StreamSizeSelector相同：
+ * 输出宽高比与传感器不同时取两个方向中较大的一个。距离 = 焦距像素数 × 实际尺寸 / 像素尺寸。
+ * 优先用两眼之间的距离（人与人之间差别较小），没有特征点时用人脸框的宽度。
+ * 换算结果与输出分辨率无关，所以拍摄预设人脸和后台检测可以使用不同的分辨率。
+ */
+public class DistanceEstimator {
+    /** 成人两眼中心的平均距离（毫米） */
+    public static final float EYE_DISTANCE_MM = 63f;
+    /** 成人脸部的平均宽度（毫米），与StreamSizeSelector.FACE_WIDTH相同 */
+    public static final float FACE_WIDTH_MM = 150f;
+
+    private final float focalPixels;
+
+    private DistanceEstimator(float focalPixels) {
+        this.focalPixels = focalPixels;
+    }
+
+    /**
+     * @param focalLength  焦距（毫米），LENS_INFO_AVAILABLE_FOCAL_LENGTHS
+     * @param sensorWidth  传感器宽度（毫米），SENSOR_INFO_PHYSICAL_SIZE
+     * @param sensorHeight 传感器高度（毫米）
+     * @param width        输出图像宽度（传感器方向）
+     * @param height       输出图像高度（传感器方向）
+     * @return 缺少任何一个参数时返回null
+     */
+    @Nullable
+    public static DistanceEstimator fromIntrinsics(float focalLength,
+                                                   float sensorWidth, float sensorHeight,
+                                                   int width, int height) {
+        if (focalLength <= 0 || sensorWidth <= 0 || sensorHeight <= 0 || width <= 0 || height <= 0) {
+            return null;
+        }
+        float pixelsPerMm = Math.max(width / sensorWidth, height / sensorHeight);
+        return new DistanceEstimator(focalLength * pixelsPerMm);
+    }
+
+    /**
+     * 直接由焦距的像素数创建，例如从录制文件中恢复
+     *
+     * @return focalPixels不是正数（包括NaN）时返回null
+     */
+    @Nullable
+    public static DistanceEstimator fromFocalPixels(float focalPixels) {
+        return focalPixels > 0 ? new DistanceEstimator(focalPixels) : null;
+    }
+
+    /** 焦距对应的像素数 */
+    public float getFocalPixels() {
+        return focalPixels;
+    }
+
+    /**
+     * 实际尺寸为realMm毫米的物体在图像中为pixels像素时的距离（厘米）
+     */
+    public float getDistanceCm(float pixels, float realMm) {
+        if (!(pixels > 0)) return Float.NaN;
+        return focalPixels * realMm / pixels / 10f;
+    }
+
+    /** 由两眼之间的像素距离估计，没有特征点（NaN）时返回NaN */
+    public float getDistanceByEyes(float eyeDistancePixels) {
+        return getDistanceCm(eyeDistancePixels, EYE_DISTANCE_MM);
+    }
+
+    /** 由人脸框的像素宽度估计 */
+    public float getDistanceByWidth(float faceWidthPixels) {
+        return getDistanceCm(faceWidthPixels, FACE_WIDTH_MM);
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return "DistanceEstimator{focalPixels=" + focalPixels + "}";
+    }
+}
@@ -0,0 +1,123 @@
+package com.yx.eyeapp.model;
+
+import androidx.annotation.Nullable;
+
+/**
+ * 人脸信息，实现了Cmopareble接口以便于比较(测距）
+ *
+ * 创建时有DistanceEstimator的话同时换算出到摄像头的距离（厘米），
+ * 两个人脸都有距离时按距离比较，与拍摄时的分辨率和裁剪无关；否则按人脸框的像素尺寸比较。
+ * 不依赖ML Kit，由ML Kit的Face创建见FaceProfiles。
+ * 创建后不可变，可以在线程之间共享（预设人脸在主线程设置，在决策线程比较）。
+ */
+public class FaceProfile implements Comparable<FaceProfile>{
+    private final float width;
+    private final float height;
+
+    private final float area;
+    //两眼中心的像素距离，没有特征点时为NaN
+    private final float eyeDistance;
+    //分别由两眼距离和人脸框宽度估计的距离（厘米），无法估计时为NaN
+    private final float distanceByEyes;
+    private final float distanceByWidth;
+    private static final String TAG = "FaceProfile";
+
+    /** 直接使用人脸框的尺寸，例如跟踪得到的人脸框 */
+    public FaceProfile(float width, float height){
+        this(width, height, null);
+    }
+
+    public FaceProfile(float width, float height, @Nullable DistanceEstimator estimator){
+        this(width, height, Float.NaN, estimator);
+    }
+
+    /**
+     * @param eyeDistance 两眼中心的像素距离，没有特征点时为NaN
+     */
+    public FaceProfile(float width, float height, float eyeDistance,
+                       @Nullable DistanceEstimator estimator){
+        this(width, height, eyeDistance,
+                estimator != null ? estimator.getDistanceByEyes(eyeDistance) : Float.NaN,
+                estimator != null ? estimator.getDistanceByWidth(width) : Float.NaN);
+    }
+
+    //FaceProfileStore恢复保存的人脸信息，距离已经在拍摄时算好
+    FaceProfile(float width, float height, float eyeDistance,
+                float distanceByEyes, float distanceByWidth){
+        this.width = width;
+        this.height = height;
+        this.area = height * width;
+        this.eyeDistance = eyeDistance;
+        this.distanceByEyes = distanceByEyes;
+        this.distanceByWidth = distanceByWidth;
+    }
+
+    @Override
+    public int compareTo(FaceProfile o) {
+        return getSizeRatio(o) > 1f ? 1 : 0;
+    }
+
+    /**
+     * 与预设人脸的尺寸之比，大于1时compareTo返回1（距离过近）。
+     * 两个人脸都有距离时为距离的反比，优先使用两眼距离的估计（两个人脸必须用同一种估计，
+     * 个人与平均尺寸的差别才能抵消）；否则取像素宽和高中较大的比值
+     */
+    public float getSizeRatio(FaceProfile o) {
+        if (!Float.isNaN(this.distanceByEyes) && !Float.isNaN(o.distanceByEyes)) {
+            return o.distanceByEyes / this.distanceByEyes;
+        }
+        if (!Float.isNaN(this.distanceByWidth) && !Float.isNaN(o.distanceByWidth)) {
+            return o.distanceByWidth / this.distanceByWidth;
+        }
+        return Math.max(this.width / o.getWidth(), this.height / o.getHeight());
+    }
+
+    /**
+     * 与new FaceProfile(width, height, eyeDistance, estimator).getSizeRatio(this)相同，
+     * 但不创建FaceProfile，用于每一帧与预设人脸比较
+     */
+    public float getSizeRatioOf(float width, float height, float eyeDistance,
+                                @Nullable DistanceEstimator estimator) {
+        if (estimator != null) {
+            float byEyes = estimator.getDistanceByEyes(eyeDistance);
+            if (!Float.isNaN(byEyes) && !Float.isNaN(distanceByEyes)) {
+                return distanceByEyes / byEyes;
+            }
+            float byWidth = estimator.getDistanceByWidth(width);
+            if (!Float.isNaN(byWidth) && !Float.isNaN(distanceByWidth)) {
+                return distanceByWidth / byWidth;
+            }
+        }
+        return Math.max(width / this.width, height / this.height);
+    }
+
+    /** 到摄像头的距离（厘米），优先使用两眼距离的估计，无法估计时为NaN */
+    public float getDistanceCm() {
+        return Float.isNaN(distanceByEyes) ? distanceByWidth : distanceByEyes;
+    }
+
+    public float getHeight() {
+        return height;
+    }
+
+    public float getWidth() {
+        return width;
+    }
+
+    public float getArea() {
+        return area;
+    }
+
+    public float getEyeDistance() {
+        return eyeDistance;
+    }
+
+    float getDistanceByEyes() {
+        return distanceByEyes;
+    }
+
+    float getDistanceByWidth() {
+        return distanceByWidth;
+    }
+
+}
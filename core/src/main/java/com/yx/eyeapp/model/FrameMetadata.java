@@ -1,18 +1,29 @@
 package com.yx.eyeapp.model;
 
+import androidx.annotation.Nullable;
+
 /**
  * 图像帧源数据，描述图像的信息
+ * 知道相机的焦距和传感器尺寸时带有DistanceEstimator，用于把人脸尺寸换算为距离
  */
 public class FrameMetadata {
     private final int width;
     private final int height;
     private final int rotation;
+    @Nullable
+    private final DistanceEstimator distanceEstimator;
 
 
     public FrameMetadata(int width, int height, int rotation) {
+        this(width, height, rotation, null);
+    }
+
+    public FrameMetadata(int width, int height, int rotation,
+                         @Nullable DistanceEstimator distanceEstimator) {
         this.height = height;
         this.width = width;
         this.rotation = rotation;
+        this.distanceEstimator = distanceEstimator;
     }
     public int getWidth() {
         return width;
@@ -26,10 +37,16 @@ public class FrameMetadata {
         return rotation;
     }
 
+    @Nullable
+    public DistanceEstimator getDistanceEstimator() {
+        return distanceEstimator;
+    }
+
     public static class Builder {
         private int width;
         private int height;
         private int rotation;
+        private DistanceEstimator distanceEstimator;
 
         public Builder setWidth(int width){
             this.width = width;
@@ -46,8 +63,13 @@ public class FrameMetadata {
             return this;
         }
 
+        public Builder setDistanceEstimator(@Nullable DistanceEstimator distanceEstimator){
+            this.distanceEstimator = distanceEstimator;
+            return this;
+        }
+
         public FrameMetadata build() {
-            return new FrameMetadata(width, height, rotation);
+            return new FrameMetadata(width, height, rotation, distanceEstimator);
         }
     }
 }
@@ -0,0 +1,160 @@
+package com.yx.eyeapp.pipeline;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 有界的单生产者/单消费者无锁队列，连接流水线中相邻的两个阶段。
+ *
+ * 队列满时offer直接返回false，由生产者丢弃该帧，不会阻塞相机回调。
+ * 消费者在队列为空时挂起等待，close或中断消费者线程后take返回null。
+ * 记录当前深度、最大深度以及入队、被拒绝和出队的数量，便于观察各阶段的积压。
+ */
+public class SpscQueue<T> {
+    private final String name;
+    private final int capacity;
+    private final AtomicReferenceArray<T> items;
+    //下一个读取位置，只由消费者写
+    private final AtomicLong head = new AtomicLong();
+    //下一个写入位置，只由生产者写
+    private final AtomicLong tail = new AtomicLong();
+    @Nullable
+    private volatile Thread waiter;
+    private volatile boolean closed;
+
+    //只由生产者写
+    private volatile long offered;
+    private volatile long rejected;
+    private volatile int maxDepth;
+    //只由消费者写
+    private volatile long taken;
+
+    public SpscQueue(@NonNull String name, int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+        this.name = name;
+        this.capacity = capacity;
+        this.items = new AtomicReferenceArray<>(capacity);
+    }
+
+    /**
+     * 入队，队列已满或已关闭时返回false，元素由调用方处理。只能由生产者线程调用。
+     */
+    public boolean offer(@NonNull T item) {
+        long t = tail.get();
+        if (closed || t - head.get() >= capacity) {
+            rejected++;
+            return false;
+        }
+        items.set((int) (t % capacity), item);
+        tail.set(t + 1);
+        offered++;
+        int depth = (int) (t + 1 - head.get());
+        if (depth > maxDepth) {
+            maxDepth = depth;
+        }
+        Thread thread = waiter;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+        }
+        return true;
+    }
+
+    /**
+     * 出队，不等待。只能由消费者线程调用，或在两端线程都结束后用于清空队列。
+     */
+    @Nullable
+    public T poll() {
+        long h = head.get();
+        if (h >= tail.get()) {
+            return null;
+        }
+        int index = (int) (h % capacity);
+        T item = items.get(index);
+        items.set(index, null);
+        head.set(h + 1);
+        taken++;
+        return item;
+    }
+
+    /**
+     * 出队，队列为空时等待。已关闭或当前线程被中断时返回null，关闭后队列中剩余的元素由poll清空。
+     */
+    @Nullable
+    public T take() {
+        Thread current = Thread.currentThread();
+        while (true) {
+            if (closed || current.isInterrupted()) {
+                return null;
+            }
+            T item = poll();
+            if (item != null) {
+                return item;
+            }
+            // 先登记再检查，保证与offer之间不会丢失唤醒
+            waiter = current;
+            if (head.get() >= tail.get() && !closed && !current.isInterrupted()) {
+                LockSupport.park(this);
+            }
+            waiter = null;
+        }
+    }
+
+    /** 生产者线程在准备元素之前判断队列是否已满，避免做无用功 */
+    public boolean isFull() {
+        return tail.get() - head.get() >= capacity;
+    }
+
+    /** 关闭并唤醒等待的消费者 */
+    public void close() {
+        closed = true;
+        Thread thread = waiter;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /** 当前积压的元素数量 */
+    public int size() {
+        return (int) Math.max(0, tail.get() - head.get());
+    }
+
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    public long getOffered() {
+        return offered;
+    }
+
+    public long getRejected() {
+        return rejected;
+    }
+
+    public long getTaken() {
+        return taken;
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return name + "{depth=" + size() + "/" + capacity
+                + ", maxDepth=" + maxDepth
+                + ", offered=" + offered
+                + ", rejected=" + rejected
+                + ", taken=" + taken + "}";
+    }
+}
@@ -0,0 +1,219 @@
+package com.yx.eyeapp.util;
+
+import androidx.annotation.NonNull;
+
+import com.yx.eyeapp.model.DistanceEstimator;
+import com.yx.eyeapp.model.FrameMetadata;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * 把NV21帧和时间戳追加到文件，格式见FrameRecording，用于之后在流水线中回放。
+ *
+ * 开启差分编码时，除了每keyframeInterval帧一个原始帧，其余帧只记录与上一帧不同的字节，
+ * 编码后不比原始帧小时仍然记录原始帧。差分是无损的，画面静止的部分越多越有效。
+ * 文件不超过MAX_FILE_SIZE，这样回放时可以整个映射到内存。
+ * 只在一个线程上使用。
+ */
+public class FrameRecorder implements Closeable {
+    /** 默认的关键帧间隔 */
+    public static final int DEFAULT_KEYFRAME_INTERVAL = 30;
+    /** 文件大小上限 */
+    public static final long MAX_FILE_SIZE = Integer.MAX_VALUE;
+
+    private final FileOutputStream stream;
+    private final FileChannel channel;
+    private final int frameSize;
+    private final boolean delta;
+    private final int keyframeInterval;
+    private final ByteBuffer recordHeader = ByteBuffer.allocate(FrameRecording.RECORD_HEADER_SIZE);
+    //差分编码用，不开启时为null
+    private final byte[] previous;
+    private final byte[] current;
+    private final byte[] encoded;
+    private long[] offsets = new long[64];
+    private int count;
+    private long position;
+    private long deltaFrames;
+    private boolean full;
+
+    public FrameRecorder(@NonNull File file, @NonNull FrameMetadata metadata, boolean delta)
+            throws IOException {
+        this(file, metadata, delta, DEFAULT_KEYFRAME_INTERVAL);
+    }
+
+    /**
+     * @param delta            是否差分编码
+     * @param keyframeInterval 差分编码时每隔多少帧记录一个原始帧
+     */
+    public FrameRecorder(@NonNull File file, @NonNull FrameMetadata metadata, boolean delta,
+                         int keyframeInterval) throws IOException {
+        if (keyframeInterval <= 0) {
+            throw new IllegalArgumentException("keyframeInterval must be positive: " + keyframeInterval);
+        }
+        int width = metadata.getWidth();
+        int height = metadata.getHeight();
+        this.frameSize = width * height + 2 * (width * height / 4);
+        this.delta = delta;
+        this.keyframeInterval = keyframeInterval;
+        if (delta) {
+            previous = new byte[frameSize];
+            current = new byte[frameSize];
+            //编码结果达到原始帧大小时放弃，改为记录原始帧
+            encoded = new byte[frameSize];
+        } else {
+            previous = current = encoded = null;
+        }
+        stream = new FileOutputStream(file);
+        channel = stream.getChannel();
+        DistanceEstimator estimator = metadata.getDistanceEstimator();
+        ByteBuffer header = ByteBuffer.allocate(FrameRecording.HEADER_SIZE);
+        header.putInt(FrameRecording.MAGIC)
+                .putInt(FrameRecording.VERSION)
+                .putInt(width)
+                .putInt(height)
+                .putInt(metadata.getRotation())
+                .putFloat(estimator != null ? estimator.getFocalPixels() : Float.NaN)
+                .putInt(delta ? FrameRecording.FLAG_DELTA : 0)
+                .putInt(keyframeInterval);
+        header.flip();
+        write(header);
+    }
+
+    /**
+     * 追加一帧，读取nv21的position到limit，不改变nv21的position。
+     *
+     * @return 文件已经达到大小上限时返回false，不再记录
+     */
+    public boolean append(@NonNull ByteBuffer nv21, long timestampNanos) throws IOException {
+        if (nv21.remaining() != frameSize) {
+            throw new IllegalArgumentException("Frame size " + nv21.remaining() + " != " + frameSize);
+        }
+        if (full || position + FrameRecording.RECORD_HEADER_SIZE + frameSize
+                + 8L * (count + 1) + FrameRecording.TRAILER_SIZE > MAX_FILE_SIZE) {
+            full = true;
+            return false;
+        }
+        int type = FrameRecording.TYPE_RAW;
+        int length = frameSize;
+        if (delta) {
+            nv21.duplicate().get(current);
+            if (count % keyframeInterval != 0) {
+                int deltaLength = encodeDelta(previous, current, encoded);
+                if (deltaLength >= 0) {
+                    type = FrameRecording.TYPE_DELTA;
+                    length = deltaLength;
+                    deltaFrames++;
+                }
+            }
+            System.arraycopy(current, 0, previous, 0, frameSize);
+        }
+
+        if (count == offsets.length) {
+            long[] grown = new long[count * 2];
+            System.arraycopy(offsets, 0, grown, 0, count);
+            offsets = grown;
+        }
+        offsets[count++] = position;
+        recordHeader.clear();
+        recordHeader.putLong(timestampNanos).putInt(type).putInt(length);
+        recordHeader.flip();
+        write(recordHeader);
+        if (type == FrameRecording.TYPE_DELTA) {
+            write(ByteBuffer.wrap(encoded, 0, length));
+        } else {
+            write(nv21.duplicate());
+        }
+        return true;
+    }
+
+    /**
+     * 编码为交替的（相同的字节数，不同的字节数，不同的字节），不比原始帧小时返回-1
+     */
+    static int encodeDelta(byte[] previous, byte[] current, byte[] out) {
+        int length = current.length;
+        int written = 0;
+        int i = 0;
+        while (i < length) {
+            int same = i;
+            while (same < length && current[same] == previous[same]) {
+                same++;
+            }
+            int changed = same;
+            //不同的字节之间夹着的少量相同字节一起作为不同的字节，省去两个varint
+            while (changed < length && !isSameRun(previous, current, changed)) {
+                changed++;
+            }
+            int changedCount = changed - same;
+            if (written + 10 + changedCount >= out.length) {
+                return -1;
+            }
+            written = writeVarint(out, written, same - i);
+            written = writeVarint(out, written, changedCount);
+            System.arraycopy(current, same, out, written, changedCount);
+            written += changedCount;
+            i = changed;
+        }
+        return written;
+    }
+
+    //从index开始是否有至少4个相同的字节
+    private static boolean isSameRun(byte[] previous, byte[] current, int index) {
+        int end = Math.min(current.length, index + 4);
+        for (int i = index; i < end; i++) {
+            if (current[i] != previous[i]) return false;
+        }
+        return true;
+    }
+
+    private static int writeVarint(byte[] out, int offset, int value) {
+        while ((value & ~0x7f) != 0) {
+            out[offset++] = (byte) ((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out[offset++] = (byte) value;
+        return offset;
+    }
+
+    private void write(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer);
+        }
+    }
+
+    public int getFrameCount() {
+        return count;
+    }
+
+    /** 以差分编码记录的帧数 */
+    public long getDeltaFrames() {
+        return deltaFrames;
+    }
+
+    /** 已经写入的字节数，不包括索引 */
+    public long getBytesWritten() {
+        return position;
+    }
+
+    /** 写入索引并关闭文件 */
+    @Override
+    public void close() throws IOException {
+        try {
+            long indexOffset = position;
+            ByteBuffer index = ByteBuffer.allocate(8 * count + FrameRecording.TRAILER_SIZE);
+            for (int i = 0; i < count; i++) {
+                index.putLong(offsets[i]);
+            }
+            index.putInt(count).putLong(indexOffset).putInt(FrameRecording.MAGIC);
+            index.flip();
+            write(index);
+        } finally {
+            stream.close();
+        }
+    }
+}
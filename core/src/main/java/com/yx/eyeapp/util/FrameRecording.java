@@ -0,0 +1,217 @@
+package com.yx.eyeapp.util;
+
+import androidx.annotation.NonNull;
+
+import com.yx.eyeapp.model.DistanceEstimator;
+import com.yx.eyeapp.model.FrameMetadata;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * FrameRecorder录制的NV21帧文件，整个文件映射到内存后按帧读取。
+ *
+ * 文件格式（大端）：
+ * <pre>
+ * 文件头  int MAGIC, int VERSION, int width, int height, int rotation,
+ *        float focalPixels（没有DistanceEstimator时为NaN）, int flags, int keyframeInterval
+ * 每一帧  long timestampNanos, int type（RAW或DELTA）, int length, byte[length]
+ * 索引    long[count] 各帧记录的偏移
+ * 文件尾  int count, long indexOffset, int MAGIC
+ * </pre>
+ * DELTA帧相对上一帧编码：交替的varint（相同的字节数）、varint（不同的字节数）和不同的字节。
+ * 录制没有正常结束（没有索引）时从头扫描各帧记录。
+ *
+ * 原始帧直接返回映射内存的切片，不拷贝。有DELTA帧时必须从关键帧开始顺序读取，见readFrame。
+ */
+public class FrameRecording implements Closeable {
+    static final int MAGIC = 0x45595246;
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 32;
+    static final int RECORD_HEADER_SIZE = 16;
+    static final int TRAILER_SIZE = 16;
+    static final int FLAG_DELTA = 1;
+    static final int TYPE_RAW = 0;
+    static final int TYPE_DELTA = 1;
+
+    private final RandomAccessFile file;
+    private final MappedByteBuffer mapped;
+    private final FrameMetadata metadata;
+    private final int frameSize;
+    private final boolean delta;
+    private final long[] offsets;
+
+    private FrameRecording(RandomAccessFile file, MappedByteBuffer mapped) throws IOException {
+        this.file = file;
+        this.mapped = mapped;
+        if (mapped.limit() < HEADER_SIZE || mapped.getInt(0) != MAGIC) {
+            throw new IOException("Not a frame recording");
+        }
+        if (mapped.getInt(4) != VERSION) {
+            throw new IOException("Unsupported recording version: " + mapped.getInt(4));
+        }
+        int width = mapped.getInt(8);
+        int height = mapped.getInt(12);
+        metadata = new FrameMetadata(width, height, mapped.getInt(16),
+                DistanceEstimator.fromFocalPixels(mapped.getFloat(20)));
+        frameSize = width * height + 2 * (width * height / 4);
+        delta = (mapped.getInt(24) & FLAG_DELTA) != 0;
+        offsets = readIndex();
+    }
+
+    /**
+     * 映射整个文件，文件必须小于2GB（FrameRecorder不会超过）
+     */
+    @NonNull
+    public static FrameRecording open(@NonNull File path) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(path, "r");
+        try {
+            long length = file.length();
+            if (length > Integer.MAX_VALUE) {
+                throw new IOException("Recording too large to map: " + length);
+            }
+            MappedByteBuffer mapped = file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, length);
+            return new FrameRecording(file, mapped);
+        } catch (IOException | RuntimeException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    private long[] readIndex() throws IOException {
+        int limit = mapped.limit();
+        if (limit >= HEADER_SIZE + TRAILER_SIZE && mapped.getInt(limit - 4) == MAGIC) {
+            int count = mapped.getInt(limit - TRAILER_SIZE);
+            long indexOffset = mapped.getLong(limit - TRAILER_SIZE + 4);
+            if (count >= 0 && indexOffset + 8L * count == limit - TRAILER_SIZE) {
+                long[] index = new long[count];
+                for (int i = 0; i < count; i++) {
+                    index[i] = mapped.getLong((int) indexOffset + 8 * i);
+                }
+                return index;
+            }
+        }
+        return scan();
+    }
+
+    //没有索引时顺序扫描，截断的最后一帧丢弃
+    private long[] scan() {
+        long[] index = new long[16];
+        int count = 0;
+        int position = HEADER_SIZE;
+        int limit = mapped.limit();
+        while (position + RECORD_HEADER_SIZE <= limit) {
+            int type = mapped.getInt(position + 8);
+            int length = mapped.getInt(position + 12);
+            if ((type != TYPE_RAW && type != TYPE_DELTA) || length < 0
+                    || position + RECORD_HEADER_SIZE + (long) length > limit) {
+                break;
+            }
+            if (count == index.length) {
+                long[] grown = new long[count * 2];
+                System.arraycopy(index, 0, grown, 0, count);
+                index = grown;
+            }
+            index[count++] = position;
+            position += RECORD_HEADER_SIZE + length;
+        }
+        long[] result = new long[count];
+        System.arraycopy(index, 0, result, 0, count);
+        return result;
+    }
+
+    /** 录制时的尺寸、旋转角度和DistanceEstimator */
+    @NonNull
+    public FrameMetadata getMetadata() {
+        return metadata;
+    }
+
+    /** NV21帧的字节数 */
+    public int getFrameSize() {
+        return frameSize;
+    }
+
+    public int getFrameCount() {
+        return offsets.length;
+    }
+
+    /** 是否有DELTA帧，有的话readFrame需要work缓冲 */
+    public boolean hasDeltaFrames() {
+        return delta;
+    }
+
+    public long getTimestampNanos(int index) {
+        return mapped.getLong((int) offsets[index]);
+    }
+
+    /** 不依赖上一帧，可以从这里开始读取 */
+    public boolean isKeyframe(int index) {
+        return mapped.getInt((int) offsets[index] + 8) == TYPE_RAW;
+    }
+
+    /**
+     * 读取第index帧。
+     * 原始帧返回映射内存的只读切片（零拷贝），有DELTA帧时同时拷贝到work作为下一帧的参照；
+     * DELTA帧在work（必须是上一帧的内容）上原地解码后返回work。
+     * 返回的缓冲position为0，limit为帧大小。
+     *
+     * @param work 容量至少为getFrameSize，没有DELTA帧时可以为null
+     */
+    @NonNull
+    public ByteBuffer readFrame(int index, ByteBuffer work) {
+        int offset = (int) offsets[index];
+        int type = mapped.getInt(offset + 8);
+        int length = mapped.getInt(offset + 12);
+        ByteBuffer record = mapped.duplicate();
+        record.position(offset + RECORD_HEADER_SIZE);
+        record.limit(offset + RECORD_HEADER_SIZE + length);
+        if (type == TYPE_RAW) {
+            ByteBuffer frame = record.slice().asReadOnlyBuffer();
+            if (delta) {
+                work.clear();
+                work.put(frame.duplicate());
+                work.flip();
+            }
+            return frame;
+        }
+        applyDelta(record, work);
+        work.position(0);
+        work.limit(frameSize);
+        return work;
+    }
+
+    private void applyDelta(ByteBuffer record, ByteBuffer work) {
+        int position = 0;
+        while (record.hasRemaining()) {
+            position += readVarint(record);
+            int changed = readVarint(record);
+            for (int i = 0; i < changed; i++) {
+                work.put(position + i, record.get());
+            }
+            position += changed;
+        }
+    }
+
+    static int readVarint(ByteBuffer buffer) {
+        int value = 0;
+        int shift = 0;
+        int b;
+        do {
+            b = buffer.get();
+            value |= (b & 0x7f) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    /** 映射的内存在没有引用后由GC释放，已经返回的切片仍然有效 */
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+}
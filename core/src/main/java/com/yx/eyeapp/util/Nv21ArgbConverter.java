@@ -0,0 +1,305 @@
+package com.yx.eyeapp.util;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * NV21到ARGB_8888的直接转换器，替代YuvImage压缩JPEG再解码的做法。
+ *
+ * 使用预先计算的整数查找表（BT.601全范围，与JPEG编码时使用的系数一致），
+ * 旋转和镜像直接体现在像素的写入位置上，不需要再生成一张旋转后的位图。
+ * 可以按行分段并行转换。结果写入可复用的int[]，由调用方setPixels到可复用的Bitmap中。
+ *
+ * 不依赖Android类，可以在JVM上测试。同一实例不是线程安全的。
+ */
+public class Nv21ArgbConverter {
+    private static final String TAG = "Nv21ArgbConverter";
+
+    /** 定点数精度 */
+    private static final int SHIFT = 16;
+    private static final int HALF = 1 << (SHIFT - 1);
+
+    //色度分量对RGB的贡献，已乘以2^SHIFT
+    private static final int[] R_V = new int[256];
+    private static final int[] G_U = new int[256];
+    private static final int[] G_V = new int[256];
+    private static final int[] B_U = new int[256];
+
+    static {
+        for (int i = 0; i < 256; i++) {
+            int c = i - 128;
+            R_V[i] = (int) Math.round(1.402 * c * (1 << SHIFT));
+            G_U[i] = (int) Math.round(-0.344136 * c * (1 << SHIFT));
+            G_V[i] = (int) Math.round(-0.714136 * c * (1 << SHIFT));
+            B_U[i] = (int) Math.round(1.772 * c * (1 << SHIFT));
+        }
+    }
+
+    private int parallelism = 1;
+    private int parallelMinPixels = YuvPlaneCopier.DEFAULT_PARALLEL_MIN_PIXELS;
+    @Nullable
+    private ExecutorService executor;
+    private byte[][] lumaRows = new byte[][] {new byte[0]};
+    private byte[][] chromaRows = new byte[][] {new byte[0]};
+    private int[] pixels = new int[0];
+
+    /**
+     * 设置并行转换的线程数，像素数不小于minPixels的帧才会分段并行转换。
+     */
+    public void setParallelism(int workers, int minPixels) {
+        int count = Math.max(1, workers);
+        if (count != parallelism) {
+            release();
+            parallelism = count;
+            lumaRows = new byte[count][0];
+            chromaRows = new byte[count][0];
+        }
+        parallelMinPixels = minPixels;
+    }
+
+    /** 释放并行转换的线程 */
+    public void release() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+
+    /** 旋转后的宽度 */
+    public static int getOutputWidth(int width, int height, int rotation) {
+        return isTransposed(rotation) ? height : width;
+    }
+
+    /** 旋转后的高度 */
+    public static int getOutputHeight(int width, int height, int rotation) {
+        return isTransposed(rotation) ? width : height;
+    }
+
+    private static boolean isTransposed(int rotation) {
+        return normalize(rotation) % 180 != 0;
+    }
+
+    private static int normalize(int rotation) {
+        int r = rotation % 360;
+        if (r < 0) r += 360;
+        if (r % 90 != 0) {
+            throw new IllegalArgumentException("Unsupported rotation: " + rotation);
+        }
+        return r;
+    }
+
+    /**
+     * 转换到转换器内部复用的像素数组，返回该数组（长度可能大于像素数）。
+     */
+    @NonNull
+    public int[] convert(ByteBuffer nv21, int width, int height, int rotation, boolean mirror) {
+        int size = width * height;
+        if (pixels.length < size) {
+            pixels = new int[size];
+        }
+        convert(nv21, width, height, rotation, mirror, pixels);
+        return pixels;
+    }
+
+    /**
+     * 把NV21帧转换为ARGB像素写入out。
+     * 先顺时针旋转rotation度，mirror为true时再水平翻转，
+     * 与Matrix先postRotate再postScale(-1, 1)的结果一致。
+     * out按旋转后的宽度逐行排列。
+     */
+    public void convert(ByteBuffer nv21, int width, int height, int rotation, boolean mirror,
+                        int[] out) {
+        int frameSize = width * height;
+        if (out.length < frameSize) {
+            throw new IllegalArgumentException("Output too small: " + out.length + " < " + frameSize);
+        }
+        if (nv21.limit() < frameSize + 2 * (frameSize / 4)) {
+            throw new IllegalArgumentException("Input too small: " + nv21.limit());
+        }
+        RowMapping mapping = new RowMapping(width, height, normalize(rotation), mirror);
+        int chromaHeight = height / 2;
+        if (parallelism > 1 && frameSize >= parallelMinPixels && chromaHeight >= parallelism) {
+            convertParallel(nv21, width, height, mapping, out);
+        } else {
+            convertRows(nv21, width, height, 0, height, mapping, out, 0);
+        }
+    }
+
+    private void convertParallel(ByteBuffer nv21, int width, int height, RowMapping mapping,
+                                 int[] out) {
+        if (executor == null) {
+            executor = Executors.newFixedThreadPool(parallelism, r -> {
+                Thread thread = new Thread(r, TAG);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        int chromaHeight = height / 2;
+        List<Callable<Void>> tasks = new ArrayList<>(parallelism);
+        for (int i = 0; i < parallelism; i++) {
+            int band = i;
+            // 按两行一组分段，同一组亮度行共用一行色度
+            int rowStart = chromaHeight * i / parallelism * 2;
+            int rowEnd = i == parallelism - 1 ? height : chromaHeight * (i + 1) / parallelism * 2;
+            tasks.add(() -> {
+                convertRows(nv21, width, height, rowStart, rowEnd, mapping, out, band);
+                return null;
+            });
+        }
+        try {
+            for (Future<Void> future : executor.invokeAll(tasks)) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Conversion interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Conversion failed", e.getCause());
+        }
+    }
+
+    private void convertRows(ByteBuffer nv21, int width, int height, int rowStart, int rowEnd,
+                             RowMapping mapping, int[] out, int band) {
+        int frameSize = width * height;
+        byte[] data;
+        int yBase;
+        int uvBase;
+        ByteBuffer source = null;
+        if (nv21.hasArray()) {
+            data = nv21.array();
+            yBase = nv21.arrayOffset();
+            uvBase = yBase + frameSize;
+        } else {
+            if (lumaRows[band].length < width) {
+                lumaRows[band] = new byte[width];
+                chromaRows[band] = new byte[width];
+            }
+            data = null;
+            yBase = 0;
+            uvBase = 0;
+            source = nv21.duplicate();
+            source.clear();
+        }
+        byte[] lumaRow = lumaRows[band];
+        byte[] chromaRow = chromaRows[band];
+        int chromaRowLoaded = -1;
+
+        for (int y = rowStart; y < rowEnd; y++) {
+            byte[] yData;
+            int yOffset;
+            byte[] uvData;
+            int uvOffset;
+            if (data != null) {
+                yData = data;
+                yOffset = yBase + y * width;
+                uvData = data;
+                uvOffset = uvBase + (y >> 1) * width;
+            } else {
+                source.limit(y * width + width);
+                source.position(y * width);
+                source.get(lumaRow, 0, width);
+                if ((y >> 1) != chromaRowLoaded) {
+                    chromaRowLoaded = y >> 1;
+                    int start = frameSize + chromaRowLoaded * width;
+                    source.limit(start + width);
+                    source.position(start);
+                    source.get(chromaRow, 0, width);
+                }
+                yData = lumaRow;
+                yOffset = 0;
+                uvData = chromaRow;
+                uvOffset = 0;
+            }
+
+            int index = mapping.start(y);
+            int step = mapping.step;
+            for (int x = 0; x < width; x += 2) {
+                int v = uvData[uvOffset + x] & 0xff;
+                int u = uvData[uvOffset + x + 1] & 0xff;
+                int r = R_V[v];
+                int g = G_U[u] + G_V[v];
+                int b = B_U[u];
+
+                out[index] = toArgb(yData[yOffset + x] & 0xff, r, g, b);
+                index += step;
+                if (x + 1 < width) {
+                    out[index] = toArgb(yData[yOffset + x + 1] & 0xff, r, g, b);
+                    index += step;
+                }
+            }
+        }
+    }
+
+    private static int toArgb(int luma, int r, int g, int b) {
+        int base = (luma << SHIFT) + HALF;
+        return 0xff000000
+                | clamp((base + r) >> SHIFT) << 16
+                | clamp((base + g) >> SHIFT) << 8
+                | clamp((base + b) >> SHIFT);
+    }
+
+    private static int clamp(int value) {
+        return value < 0 ? 0 : (value > 255 ? 255 : value);
+    }
+
+    /**
+     * 源像素(x, y)到输出数组下标的映射。同一源行内下标随x线性变化，只需行首下标和步长。
+     */
+    private static final class RowMapping {
+        private final int width;
+        private final int height;
+        private final int rotation;
+        private final boolean mirror;
+        private final int outWidth;
+        final int step;
+
+        RowMapping(int width, int height, int rotation, boolean mirror) {
+            this.width = width;
+            this.height = height;
+            this.rotation = rotation;
+            this.mirror = mirror;
+            this.outWidth = getOutputWidth(width, height, rotation);
+            this.step = width > 1 ? index(1, 0) - index(0, 0) : 0;
+        }
+
+        int start(int y) {
+            return index(0, y);
+        }
+
+        private int index(int x, int y) {
+            int dx;
+            int dy;
+            switch (rotation) {
+                case 90:
+                    dx = height - 1 - y;
+                    dy = x;
+                    break;
+                case 180:
+                    dx = width - 1 - x;
+                    dy = height - 1 - y;
+                    break;
+                case 270:
+                    dx = y;
+                    dy = width - 1 - x;
+                    break;
+                default:
+                    dx = x;
+                    dy = y;
+                    break;
+            }
+            if (mirror) {
+                dx = outWidth - 1 - dx;
+            }
+            return dy * outWidth + dx;
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.yx.eyeapp.util;
+
+import androidx.annotation.NonNull;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 从NV21图像中裁剪出一个矩形区域，得到一张更小的NV21图像，不做任何颜色转换。
+ *
+ * 色度平面每2x2个像素共用一对VU，所以裁剪区域的位置和尺寸都必须是偶数。
+ */
+public final class Nv21Cropper {
+
+    private Nv21Cropper() {
+    }
+
+    /**
+     * 裁剪后图像所需的缓冲大小
+     */
+    public static int getCroppedSize(int width, int height) {
+        return width * height * 3 / 2;
+    }
+
+    /**
+     * @param src       完整的NV21图像，从0开始读取，不改变position
+     * @param dst       输出缓冲，从0开始写入，完成后position为0、limit为裁剪图像的大小
+     */
+    public static void crop(@NonNull ByteBuffer src, int srcWidth, int srcHeight,
+                            int left, int top, int width, int height, @NonNull ByteBuffer dst) {
+        if (((left | top | width | height) & 1) != 0) {
+            throw new IllegalArgumentException("crop must be even: "
+                    + left + "," + top + " " + width + "x" + height);
+        }
+        if (left < 0 || top < 0 || width <= 0 || height <= 0
+                || left + width > srcWidth || top + height > srcHeight) {
+            throw new IllegalArgumentException("crop " + left + "," + top + " " + width + "x"
+                    + height + " outside " + srcWidth + "x" + srcHeight);
+        }
+        int size = getCroppedSize(width, height);
+        if (dst.capacity() < size) {
+            throw new IllegalArgumentException("dst too small: " + dst.capacity() + " < " + size);
+        }
+        ByteBuffer in = src.duplicate();
+        dst.clear();
+        //Y平面
+        for (int row = top; row < top + height; row++) {
+            int offset = row * srcWidth + left;
+            in.limit(offset + width).position(offset);
+            dst.put(in);
+        }
+        //VU交错平面，行数和像素数都减半，每行的字节数与宽度相同
+        int uvStart = srcWidth * srcHeight;
+        for (int row = top / 2; row < (top + height) / 2; row++) {
+            int offset = uvStart + row * srcWidth + left;
+            in.limit(offset + width).position(offset);
+            dst.put(in);
+        }
+        dst.flip();
+    }
+}
@@ -0,0 +1,18 @@
+package com.yx.eyeapp.util;
+
+import androidx.annotation.NonNull;
+
+import java.nio.ByteBuffer;
+
+/**
+ * YUV_420_888的一个平面：数据缓冲和行、像素步长，对应android.media.Image.Plane。
+ * YuvPlaneCopier只通过它读取平面，基准测试和单元测试可以用合成的平面代替相机图像。
+ */
+public interface YuvPlane {
+    @NonNull
+    ByteBuffer getBuffer();
+
+    int getRowStride();
+
+    int getPixelStride();
+}
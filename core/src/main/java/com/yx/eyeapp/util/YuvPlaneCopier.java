@@ -0,0 +1,462 @@
+package com.yx.eyeapp.util;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * YUV_420_888平面到NV21的拷贝引擎。
+ *
+ * 平面布局（NV21、NV12、I420或其他交错方式，以及行是否有填充）在每个ImageReader配置下只检测一次并缓存，
+ * 之后每帧按行批量拷贝：pixelStride为1的行直接整行拷贝，pixelStride为2的行先整行读入再用下标循环交错。
+ * 分辨率较大时可以把行分段交给工作线程并行拷贝。
+ *
+ * 只依赖ByteBuffer与行/像素步长（或者YuvPlane），不依赖android.media.Image，可以在JVM上测试和做基准测试。
+ * 同一实例不是线程安全的，每个ImageReader持有一个。
+ */
+public class YuvPlaneCopier {
+    private static final String TAG = "YuvPlaneCopier";
+
+    /** 色度平面布局 */
+    public enum Layout {
+        /** V、U交错且V在前，V平面缓冲与U平面缓冲只差一个字节 */
+        NV21,
+        /** U、V交错且U在前 */
+        NV12,
+        /** U、V各自独立且pixelStride为1 */
+        I420,
+        /** 其他情况，逐平面按步长读取 */
+        GENERIC
+    }
+
+    /** 默认并行拷贝的最小像素数 */
+    public static final int DEFAULT_PARALLEL_MIN_PIXELS = 1280 * 720;
+
+    //缓存的配置
+    private int width = -1;
+    private int height = -1;
+    private int yRowStride = -1;
+    private int uvRowStride = -1;
+    private int uvPixelStride = -1;
+    @Nullable
+    private Layout layout;
+    private int detections;
+
+    private int parallelism = 1;
+    private int parallelMinPixels = DEFAULT_PARALLEL_MIN_PIXELS;
+    @Nullable
+    private ExecutorService executor;
+    private Band[] bands = new Band[] {new Band()};
+
+    /**
+     * 设置并行拷贝的线程数，像素数不小于minPixels的帧才会分段并行拷贝。
+     * workers不大于1时关闭并行拷贝。
+     */
+    public void setParallelism(int workers, int minPixels) {
+        int count = Math.max(1, workers);
+        if (count != parallelism) {
+            shutdownExecutor();
+            parallelism = count;
+            bands = new Band[count];
+            for (int i = 0; i < count; i++) {
+                bands[i] = new Band();
+            }
+        }
+        parallelMinPixels = minPixels;
+    }
+
+    /** ImageReader重新配置时清除缓存的布局 */
+    public void reset() {
+        layout = null;
+        width = height = yRowStride = uvRowStride = uvPixelStride = -1;
+    }
+
+    /** 释放并行拷贝的线程 */
+    public void release() {
+        shutdownExecutor();
+    }
+
+    @Nullable
+    public Layout getLayout() {
+        return layout;
+    }
+
+    public boolean isPaddedRows() {
+        return layout != null && (yRowStride > width || uvRowStride > width / 2 * uvPixelStride);
+    }
+
+    /** 布局检测（整块比较色度平面）的次数，正常情况下每个配置只有一次 */
+    public int getDetections() {
+        return detections;
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return TAG + "{layout=" + layout + ", " + width + "x" + height
+                + ", yRowStride=" + yRowStride + ", uvRowStride=" + uvRowStride
+                + ", uvPixelStride=" + uvPixelStride + ", padded=" + isPaddedRows()
+                + ", detections=" + detections + "}";
+    }
+
+    /**
+     * 与下面的重载相同，平面按Y、U、V的顺序
+     */
+    @NonNull
+    public ByteBuffer copyToNV21(YuvPlane[] planes, int width, int height, ByteBuffer out) {
+        return copyToNV21(planes[0].getBuffer(), planes[0].getRowStride(),
+                planes[1].getBuffer(), planes[2].getBuffer(),
+                planes[1].getRowStride(), planes[1].getPixelStride(), width, height, out);
+    }
+
+    /**
+     * 把三个平面拷贝为NV21，写入out（容量至少为width * height * 3 / 2）。
+     * 返回out，position为0，limit为NV21帧大小。
+     */
+    @NonNull
+    public ByteBuffer copyToNV21(
+            ByteBuffer y, int yRowStride,
+            ByteBuffer u, ByteBuffer v, int uvRowStride, int uvPixelStride,
+            int width, int height, ByteBuffer out) {
+        int frameSize = width * height;
+        int nv21Size = frameSize + 2 * (frameSize / 4);
+        if (out.capacity() < nv21Size) {
+            throw new IllegalArgumentException(
+                    "Output buffer too small: " + out.capacity() + " < " + nv21Size);
+        }
+        Layout current = resolveLayout(u, v, yRowStride, uvRowStride, uvPixelStride, width, height);
+
+        int chromaHeight = height / 2;
+        if (parallelism > 1 && frameSize >= parallelMinPixels && chromaHeight >= parallelism) {
+            copyParallel(current, y, yRowStride, u, v, uvRowStride, uvPixelStride,
+                    width, height, out);
+        } else {
+            Band band = bands[0];
+            band.copyLuma(y, yRowStride, width, 0, height, out);
+            band.copyChroma(current, u, v, uvRowStride, uvPixelStride, width,
+                    0, chromaHeight, out, frameSize);
+        }
+
+        out.position(0);
+        out.limit(nv21Size);
+        return out;
+    }
+
+    /**
+     * 返回当前配置的布局，配置变化时重新检测。
+     * 色度完全均匀（例如刚启动时的黑帧）时无法区分NV21和NV12，本帧按GENERIC处理，下一帧再检测。
+     */
+    private Layout resolveLayout(ByteBuffer u, ByteBuffer v, int yRowStride, int uvRowStride,
+                                 int uvPixelStride, int width, int height) {
+        if (layout != null
+                && this.width == width && this.height == height
+                && this.yRowStride == yRowStride
+                && this.uvRowStride == uvRowStride
+                && this.uvPixelStride == uvPixelStride) {
+            return layout;
+        }
+        detections++;
+        Layout detected = detectLayout(u, v, uvPixelStride);
+        if (detected == null) {
+            layout = null;
+            return Layout.GENERIC;
+        }
+        this.width = width;
+        this.height = height;
+        this.yRowStride = yRowStride;
+        this.uvRowStride = uvRowStride;
+        this.uvPixelStride = uvPixelStride;
+        layout = detected;
+        return detected;
+    }
+
+    /**
+     * 检测色度平面布局，无法确定时返回null。
+     */
+    @Nullable
+    static Layout detectLayout(ByteBuffer u, ByteBuffer v, int uvPixelStride) {
+        if (uvPixelStride == 1) {
+            return Layout.I420;
+        }
+        if (uvPixelStride != 2) {
+            return Layout.GENERIC;
+        }
+        // V在前时，V缓冲向后偏移一个字节后与U缓冲内容一致；U在前时反之
+        boolean nv21 = isShiftedCopy(v, u);
+        boolean nv12 = isShiftedCopy(u, v);
+        if (nv21 && nv12) {
+            return null;
+        }
+        if (nv21) return Layout.NV21;
+        if (nv12) return Layout.NV12;
+        return Layout.GENERIC;
+    }
+
+    /** 判断first从第二个字节开始的内容是否与second一致 */
+    private static boolean isShiftedCopy(ByteBuffer first, ByteBuffer second) {
+        ByteBuffer a = first.duplicate();
+        ByteBuffer b = second.duplicate();
+        a.rewind();
+        b.rewind();
+        int length = Math.min(a.limit() - 1, b.limit());
+        if (length <= 0) {
+            return false;
+        }
+        a.position(1);
+        a.limit(1 + length);
+        b.limit(length);
+        return a.equals(b);
+    }
+
+    private void copyParallel(Layout current, ByteBuffer y, int yRowStride,
+                              ByteBuffer u, ByteBuffer v, int uvRowStride, int uvPixelStride,
+                              int width, int height, ByteBuffer out) {
+        if (executor == null) {
+            executor = Executors.newFixedThreadPool(parallelism, r -> {
+                Thread thread = new Thread(r, TAG);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        int frameSize = width * height;
+        int chromaHeight = height / 2;
+        List<Callable<Void>> tasks = new ArrayList<>(parallelism);
+        for (int i = 0; i < parallelism; i++) {
+            Band band = bands[i];
+            // 按色度行分段，亮度行随之对齐（每个色度行对应两个亮度行）
+            int chromaStart = chromaHeight * i / parallelism;
+            int chromaEnd = chromaHeight * (i + 1) / parallelism;
+            int lumaStart = chromaStart * 2;
+            int lumaEnd = i == parallelism - 1 ? height : chromaEnd * 2;
+            tasks.add(() -> {
+                band.copyLuma(y, yRowStride, width, lumaStart, lumaEnd, out);
+                band.copyChroma(current, u, v, uvRowStride, uvPixelStride, width,
+                        chromaStart, chromaEnd, out, frameSize);
+                return null;
+            });
+        }
+        try {
+            for (Future<Void> future : executor.invokeAll(tasks)) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Plane copy interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Plane copy failed", e.getCause());
+        }
+    }
+
+    private void shutdownExecutor() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+
+    /**
+     * 一段行的拷贝上下文，持有行缓冲，避免每行分配。
+     */
+    private static final class Band {
+        private byte[] rowA = new byte[0];
+        private byte[] rowB = new byte[0];
+        private byte[] rowOut = new byte[0];
+
+        void copyLuma(ByteBuffer y, int rowStride, int width, int rowStart, int rowEnd,
+                      ByteBuffer out) {
+            ByteBuffer src = y.duplicate();
+            ByteBuffer dst = out.duplicate();
+            src.rewind();
+            dst.clear();
+            if (rowStride == width) {
+                // 无填充，整段拷贝
+                src.limit(rowEnd * width);
+                src.position(rowStart * width);
+                dst.position(rowStart * width);
+                dst.put(src);
+                return;
+            }
+            int dstPos = rowStart * width;
+            for (int row = rowStart; row < rowEnd; row++) {
+                int start = row * rowStride;
+                src.limit(start + width);
+                src.position(start);
+                dst.position(dstPos);
+                dst.put(src);
+                dstPos += width;
+            }
+        }
+
+        void copyChroma(Layout layout, ByteBuffer u, ByteBuffer v, int rowStride,
+                        int pixelStride, int width, int rowStart, int rowEnd,
+                        ByteBuffer out, int outOffset) {
+            if (rowStart >= rowEnd) return;
+            ensureCapacity(width);
+            ByteBuffer dst = out.duplicate();
+            dst.clear();
+            switch (layout) {
+                case NV21:
+                    copySemiPlanar(v, u, rowStride, width, rowStart, rowEnd, dst, outOffset);
+                    break;
+                case NV12:
+                    copySwapped(u, v, rowStride, width, rowStart, rowEnd, dst, outOffset);
+                    break;
+                default:
+                    copyPlanar(u, v, rowStride, pixelStride, width, rowStart, rowEnd,
+                            dst, outOffset);
+                    break;
+            }
+        }
+
+        /**
+         * V在前的交错平面，每行已经是NV21的VU排列，直接整行拷贝。
+         * V缓冲不包含最后一个U，需要从U缓冲补上。
+         */
+        private void copySemiPlanar(ByteBuffer first, ByteBuffer second, int rowStride,
+                                    int width, int rowStart, int rowEnd,
+                                    ByteBuffer dst, int outOffset) {
+            ByteBuffer src = first.duplicate();
+            src.rewind();
+            int limit = src.limit();
+            int dstPos = outOffset + rowStart * width;
+            if (rowStride == width) {
+                int start = rowStart * width;
+                int length = Math.min((rowEnd - rowStart) * width, limit - start);
+                src.limit(start + length);
+                src.position(start);
+                dst.position(dstPos);
+                dst.put(src);
+                fillTail(second, start, length, (rowEnd - rowStart) * width, dst, dstPos);
+                return;
+            }
+            for (int row = rowStart; row < rowEnd; row++) {
+                int start = row * rowStride;
+                int length = Math.min(width, limit - start);
+                src.limit(start + length);
+                src.position(start);
+                dst.position(dstPos);
+                dst.put(src);
+                fillTail(second, start, length, width, dst, dstPos);
+                dstPos += width;
+            }
+        }
+
+        /** 交错平面末尾缺少的一个字节由另一个平面的对应位置补齐 */
+        private static void fillTail(ByteBuffer other, int start, int copied, int expected,
+                                     ByteBuffer dst, int dstPos) {
+            if (copied < expected) {
+                dst.put(dstPos + expected - 1, other.get(start + expected - 2));
+            }
+        }
+
+        /**
+         * U在前的交错平面，整行读入后交换每对UV。
+         */
+        private void copySwapped(ByteBuffer first, ByteBuffer second, int rowStride, int width,
+                                 int rowStart, int rowEnd, ByteBuffer dst, int outOffset) {
+            ByteBuffer src = first.duplicate();
+            src.rewind();
+            int limit = src.limit();
+            int dstPos = outOffset + rowStart * width;
+            byte[] out = rowOut;
+            for (int row = rowStart; row < rowEnd; row++) {
+                int start = row * rowStride;
+                int length = Math.min(width, limit - start);
+                byte[] in;
+                int base;
+                if (first.hasArray()) {
+                    in = first.array();
+                    base = first.arrayOffset() + start;
+                } else {
+                    src.limit(start + length);
+                    src.position(start);
+                    src.get(rowA, 0, length);
+                    in = rowA;
+                    base = 0;
+                }
+                int pairs = length / 2;
+                for (int i = 0; i < pairs; i++) {
+                    int p = base + 2 * i;
+                    out[2 * i] = in[p + 1];
+                    out[2 * i + 1] = in[p];
+                }
+                if (length < width) {
+                    out[width - 2] = second.get(start + width - 2);
+                    out[width - 1] = in[base + width - 2];
+                }
+                dst.position(dstPos);
+                dst.put(out, 0, width);
+                dstPos += width;
+            }
+        }
+
+        /**
+         * U、V各自独立的平面（I420或其他步长），分别整行读入后交错为VU。
+         */
+        private void copyPlanar(ByteBuffer u, ByteBuffer v, int rowStride, int pixelStride,
+                                int width, int rowStart, int rowEnd,
+                                ByteBuffer dst, int outOffset) {
+            int chromaWidth = width / 2;
+            int span = (chromaWidth - 1) * pixelStride + 1;
+            ensureCapacity(span);
+            ByteBuffer uSrc = u.duplicate();
+            ByteBuffer vSrc = v.duplicate();
+            uSrc.rewind();
+            vSrc.rewind();
+            int dstPos = outOffset + rowStart * width;
+            byte[] out = rowOut;
+            for (int row = rowStart; row < rowEnd; row++) {
+                int start = row * rowStride;
+                byte[] uRow;
+                int uBase;
+                if (u.hasArray()) {
+                    uRow = u.array();
+                    uBase = u.arrayOffset() + start;
+                } else {
+                    uSrc.limit(start + span);
+                    uSrc.position(start);
+                    uSrc.get(rowA, 0, span);
+                    uRow = rowA;
+                    uBase = 0;
+                }
+                byte[] vRow;
+                int vBase;
+                if (v.hasArray()) {
+                    vRow = v.array();
+                    vBase = v.arrayOffset() + start;
+                } else {
+                    vSrc.limit(start + span);
+                    vSrc.position(start);
+                    vSrc.get(rowB, 0, span);
+                    vRow = rowB;
+                    vBase = 0;
+                }
+                for (int col = 0, in = 0; col < chromaWidth; col++, in += pixelStride) {
+                    out[2 * col] = vRow[vBase + in];
+                    out[2 * col + 1] = uRow[uBase + in];
+                }
+                dst.position(dstPos);
+                dst.put(out, 0, width);
+                dstPos += width;
+            }
+        }
+
+        private void ensureCapacity(int size) {
+            if (rowA.length < size) {
+                rowA = new byte[size];
+                rowB = new byte[size];
+            }
+            if (rowOut.length < size) {
+                rowOut = new byte[size];
+            }
+        }
+    }
+}
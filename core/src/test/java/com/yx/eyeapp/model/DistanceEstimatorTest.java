@@ -0,0 +1,62 @@
+package com.yx.eyeapp.model;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class DistanceEstimatorTest {
+    //典型的前置摄像头：焦距2.2mm，传感器3.6x2.7mm
+    private static final float FOCAL = 2.2f;
+    private static final float SENSOR_W = 3.6f;
+    private static final float SENSOR_H = 2.7f;
+
+    @Test
+    public void distance_followsPinholeModel() {
+        DistanceEstimator estimator = DistanceEstimator.fromIntrinsics(FOCAL, SENSOR_W, SENSOR_H, 640, 480);
+        assertNotNull(estimator);
+        //640 / 3.6 ≈ 177.8像素每毫米
+        assertEquals(391.1f, estimator.getFocalPixels(), 0.1f);
+        //40厘米处150毫米宽的人脸
+        float facePixels = estimator.getFocalPixels() * 150f / 400f;
+        assertEquals(40f, estimator.getDistanceByWidth(facePixels), 0.01f);
+        float eyePixels = estimator.getFocalPixels() * 63f / 400f;
+        assertEquals(40f, estimator.getDistanceByEyes(eyePixels), 0.01f);
+    }
+
+    @Test
+    public void distance_independentOfResolution() {
+        DistanceEstimator large = DistanceEstimator.fromIntrinsics(FOCAL, SENSOR_W, SENSOR_H, 1280, 960);
+        DistanceEstimator small = DistanceEstimator.fromIntrinsics(FOCAL, SENSOR_W, SENSOR_H, 320, 240);
+        assertEquals(large.getDistanceByWidth(200), small.getDistanceByWidth(50), 0.001f);
+    }
+
+    @Test
+    public void croppedAspect_usesDenserAxis() {
+        //16:9输出在4:3传感器上铺满宽度、裁剪高度
+        DistanceEstimator wide = DistanceEstimator.fromIntrinsics(FOCAL, SENSOR_W, SENSOR_H, 640, 360);
+        DistanceEstimator full = DistanceEstimator.fromIntrinsics(FOCAL, SENSOR_W, SENSOR_H, 640, 480);
+        assertEquals(full.getFocalPixels(), wide.getFocalPixels(), 0.001f);
+    }
+
+    @Test
+    public void missingIntrinsicsOrSize_returnsNullOrNaN() {
+        assertNull(DistanceEstimator.fromIntrinsics(0, SENSOR_W, SENSOR_H, 640, 480));
+        assertNull(DistanceEstimator.fromIntrinsics(FOCAL, 0, SENSOR_H, 640, 480));
+        DistanceEstimator estimator = DistanceEstimator.fromIntrinsics(FOCAL, SENSOR_W, SENSOR_H, 640, 480);
+        assertTrue(Float.isNaN(estimator.getDistanceByEyes(Float.NaN)));
+        assertTrue(Float.isNaN(estimator.getDistanceByWidth(0)));
+    }
+
+    @Test
+    public void faceProfile_comparesDistancesAcrossResolutions() {
+        DistanceEstimator calibration = DistanceEstimator.fromIntrinsics(FOCAL, SENSOR_W, SENSOR_H, 1280, 960);
+        DistanceEstimator detection = DistanceEstimator.fromIntrinsics(FOCAL, SENSOR_W, SENSOR_H, 320, 240);
+        FaceProfile threshold = new FaceProfile(400, 480, calibration);
+        //同一距离在四分之一分辨率下
+        assertEquals(1f, new FaceProfile(100, 120, detection).getSizeRatio(threshold), 0.001f);
+        assertEquals(1.1f, new FaceProfile(110, 132, detection).getSizeRatio(threshold), 0.001f);
+        assertEquals(1, new FaceProfile(110, 132, detection).compareTo(threshold));
+        //没有相机参数时仍按像素比较
+        assertEquals(0.25f, new FaceProfile(100, 120).getSizeRatio(new FaceProfile(400, 480)), 0.001f);
+    }
+}
@@ -0,0 +1,34 @@
+package com.yx.eyeapp.model;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class FaceProfileTest {
+    private static final DistanceEstimator ESTIMATOR = DistanceEstimator.fromFocalPixels(500f);
+
+    private static void assertSameRatio(FaceProfile threshold, float width, float height,
+                                        float eyeDistance, DistanceEstimator estimator) {
+        float expected = new FaceProfile(width, height, eyeDistance, estimator).getSizeRatio(threshold);
+        assertEquals(expected, threshold.getSizeRatioOf(width, height, eyeDistance, estimator), 1e-5f);
+    }
+
+    @Test
+    public void sizeRatioOf_matchesByEyes() {
+        FaceProfile threshold = new FaceProfile(180, 200, 70, ESTIMATOR);
+        assertSameRatio(threshold, 200, 220, 80, ESTIMATOR);
+    }
+
+    @Test
+    public void sizeRatioOf_matchesByWidthWithoutEyes() {
+        FaceProfile threshold = new FaceProfile(180, 200, 70, ESTIMATOR);
+        assertSameRatio(threshold, 150, 170, Float.NaN, ESTIMATOR);
+    }
+
+    @Test
+    public void sizeRatioOf_matchesByPixelsWithoutEstimator() {
+        FaceProfile threshold = new FaceProfile(180, 200);
+        assertSameRatio(threshold, 200, 250, 80, ESTIMATOR);
+        assertSameRatio(threshold, 200, 250, 80, null);
+    }
+}
@@ -0,0 +1,96 @@
+package com.yx.eyeapp.pipeline;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class SpscQueueTest {
+
+    @Test
+    public void offer_rejectsWhenFull() {
+        SpscQueue<Integer> queue = new SpscQueue<>("test", 2);
+        assertTrue(queue.offer(1));
+        assertTrue(queue.offer(2));
+        assertTrue(queue.isFull());
+        assertFalse(queue.offer(3));
+        assertEquals(2, queue.size());
+        assertEquals(Integer.valueOf(1), queue.poll());
+        assertTrue(queue.offer(4));
+        assertEquals(Integer.valueOf(2), queue.take());
+        assertEquals(Integer.valueOf(4), queue.take());
+        assertNull(queue.poll());
+
+        assertEquals(3, queue.getOffered());
+        assertEquals(1, queue.getRejected());
+        assertEquals(3, queue.getTaken());
+        assertEquals(2, queue.getMaxDepth());
+    }
+
+    @Test
+    public void close_rejectsOfferAndKeepsRemainingForPoll() {
+        SpscQueue<Integer> queue = new SpscQueue<>("test", 2);
+        queue.offer(1);
+        queue.close();
+        assertFalse(queue.offer(2));
+        assertNull(queue.take());
+        assertEquals(Integer.valueOf(1), queue.poll());
+    }
+
+    @Test(timeout = 5000)
+    public void interrupt_wakesWaitingConsumer() throws Exception {
+        SpscQueue<Integer> queue = new SpscQueue<>("test", 1);
+        AtomicReference<Integer> result = new AtomicReference<>(-1);
+        Thread consumer = new Thread(() -> result.set(queue.take()));
+        consumer.start();
+        Thread.sleep(50);
+        consumer.interrupt();
+        consumer.join(2000);
+        assertFalse(consumer.isAlive());
+        assertNull(result.get());
+    }
+
+    /**
+     * 生产者在队列满时重试，消费者必须按顺序收到每一个元素（没有丢失唤醒，也没有重复）
+     */
+    @Test(timeout = 30000)
+    public void stress_inOrderWithoutLoss() throws Exception {
+        final int count = 500_000;
+        for (int capacity : new int[] {1, 3}) {
+            SpscQueue<Integer> queue = new SpscQueue<>("test", capacity);
+            AtomicLong received = new AtomicLong();
+            AtomicReference<String> error = new AtomicReference<>();
+            Thread consumer = new Thread(() -> {
+                Integer value;
+                int expected = 0;
+                while ((value = queue.take()) != null) {
+                    if (value != expected && error.get() == null) {
+                        error.set("expected " + expected + " but was " + value);
+                    }
+                    expected++;
+                    received.incrementAndGet();
+                }
+            });
+            consumer.start();
+            for (int i = 0; i < count; i++) {
+                while (!queue.offer(i)) {
+                    Thread.yield();
+                }
+            }
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (received.get() < count && System.nanoTime() < deadline) {
+                Thread.sleep(1);
+            }
+            queue.close();
+            consumer.join(2000);
+            assertFalse(consumer.isAlive());
+            assertNull(error.get());
+            assertEquals(count, received.get());
+            assertEquals(count, queue.getTaken());
+            assertTrue(queue.getMaxDepth() <= capacity);
+        }
+    }
+}
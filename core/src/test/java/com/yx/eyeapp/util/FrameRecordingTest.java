@@ -0,0 +1,154 @@
+package com.yx.eyeapp.util;
+
+import com.yx.eyeapp.model.DistanceEstimator;
+import com.yx.eyeapp.model.FrameMetadata;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class FrameRecordingTest {
+    private static final int WIDTH = 32;
+    private static final int HEIGHT = 24;
+    private static final int FRAME_SIZE = WIDTH * HEIGHT * 3 / 2;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static FrameMetadata metadata() {
+        return new FrameMetadata(WIDTH, HEIGHT, 270, DistanceEstimator.fromFocalPixels(500f));
+    }
+
+    /** 随机的第一帧，之后每帧只改变一小块，模拟静止的画面 */
+    private static byte[][] frames(int count, long seed) {
+        Random random = new Random(seed);
+        byte[][] frames = new byte[count][FRAME_SIZE];
+        random.nextBytes(frames[0]);
+        for (int i = 1; i < count; i++) {
+            System.arraycopy(frames[i - 1], 0, frames[i], 0, FRAME_SIZE);
+            int start = random.nextInt(FRAME_SIZE - 40);
+            for (int j = start; j < start + 40; j += 2) {
+                frames[i][j] = (byte) random.nextInt();
+            }
+        }
+        return frames;
+    }
+
+    private static File record(File file, byte[][] frames, boolean delta, int keyframeInterval)
+            throws IOException {
+        try (FrameRecorder recorder = new FrameRecorder(file, metadata(), delta, keyframeInterval)) {
+            for (int i = 0; i < frames.length; i++) {
+                ByteBuffer frame = ByteBuffer.allocateDirect(FRAME_SIZE);
+                frame.put(frames[i]);
+                frame.flip();
+                assertTrue(recorder.append(frame, 1000L * i));
+                assertEquals(0, frame.position());
+            }
+        }
+        return file;
+    }
+
+    private static void assertFrames(FrameRecording recording, byte[][] expected) {
+        assertEquals(expected.length, recording.getFrameCount());
+        ByteBuffer work = ByteBuffer.allocate(recording.getFrameSize());
+        for (int i = 0; i < expected.length; i++) {
+            ByteBuffer frame = recording.readFrame(i, work);
+            assertEquals(FRAME_SIZE, frame.remaining());
+            byte[] actual = new byte[FRAME_SIZE];
+            frame.get(actual);
+            assertArrayEquals("frame " + i, expected[i], actual);
+            assertEquals(1000L * i, recording.getTimestampNanos(i));
+        }
+    }
+
+    @Test
+    public void raw_roundTrip() throws IOException {
+        byte[][] frames = frames(5, 1);
+        File file = record(folder.newFile(), frames, false, 30);
+        try (FrameRecording recording = FrameRecording.open(file)) {
+            assertFalse(recording.hasDeltaFrames());
+            FrameMetadata metadata = recording.getMetadata();
+            assertEquals(WIDTH, metadata.getWidth());
+            assertEquals(HEIGHT, metadata.getHeight());
+            assertEquals(270, metadata.getRotation());
+            assertEquals(500f, metadata.getDistanceEstimator().getFocalPixels(), 0f);
+            assertTrue(recording.isKeyframe(3));
+            assertFrames(recording, frames);
+            //原始帧不拷贝，直接读取映射的内存
+            assertTrue(recording.readFrame(0, null).isReadOnly());
+        }
+    }
+
+    @Test
+    public void delta_roundTripAndSmaller() throws IOException {
+        byte[][] frames = frames(10, 2);
+        File raw = record(folder.newFile(), frames, false, 30);
+        File delta = record(folder.newFile(), frames, true, 4);
+        //10帧中只有3个原始帧
+        assertTrue(delta.length() * 2 < raw.length());
+        try (FrameRecording recording = FrameRecording.open(delta)) {
+            assertTrue(recording.hasDeltaFrames());
+            assertTrue(recording.isKeyframe(0));
+            assertFalse(recording.isKeyframe(1));
+            assertTrue(recording.isKeyframe(4));
+            assertFrames(recording, frames);
+        }
+    }
+
+    @Test
+    public void delta_fallsBackToRawForNoise() throws IOException {
+        Random random = new Random(3);
+        byte[][] frames = new byte[3][FRAME_SIZE];
+        for (byte[] frame : frames) {
+            random.nextBytes(frame);
+        }
+        File file = record(folder.newFile(), frames, true, 30);
+        try (FrameRecording recording = FrameRecording.open(file)) {
+            assertTrue(recording.isKeyframe(1));
+            assertTrue(recording.isKeyframe(2));
+            assertFrames(recording, frames);
+        }
+    }
+
+    @Test
+    public void withoutIndex_scansRecords() throws IOException {
+        byte[][] frames = frames(6, 4);
+        File file = record(folder.newFile(), frames, true, 3);
+        //去掉索引和文件尾，再截断最后一帧的一部分，模拟录制中途被杀
+        long indexSize = 8 * frames.length + FrameRecording.TRAILER_SIZE;
+        try (RandomAccessFile truncated = new RandomAccessFile(file, "rw")) {
+            truncated.setLength(truncated.length() - indexSize - 5);
+        }
+        try (FrameRecording recording = FrameRecording.open(file)) {
+            byte[][] complete = new byte[frames.length - 1][];
+            System.arraycopy(frames, 0, complete, 0, complete.length);
+            assertFrames(recording, complete);
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void otherFile_isRejected() throws IOException {
+        File file = folder.newFile();
+        try (RandomAccessFile other = new RandomAccessFile(file, "rw")) {
+            other.write(new byte[64]);
+        }
+        FrameRecording.open(file).close();
+    }
+
+    @Test
+    public void wrongFrameSize_isRejected() throws IOException {
+        try (FrameRecorder recorder = new FrameRecorder(folder.newFile(), metadata(), false)) {
+            recorder.append(ByteBuffer.allocate(FRAME_SIZE - 1), 0);
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+}
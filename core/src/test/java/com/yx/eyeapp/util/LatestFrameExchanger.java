@@ -0,0 +1,127 @@
+package com.yx.eyeapp.util;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 无锁的“最新值优先”单槽交换器，用于相机回调线程与帧处理线程之间传递帧。
+ *
+ * 生产者publish时直接覆盖槽中尚未取走的旧值，并把旧值返回给生产者处理（例如归还到缓冲池）；
+ * 唯一的消费者take时取走最新值，槽为空时挂起（LockSupport.park）等待。
+ * 统计发布、消费和被覆盖的帧数。close或中断消费者线程后take返回null。
+ *
+ * 流水线的阶段之间已经改用SpscQueue，这里只作为FrameHandoffBenchmark的对照。
+ */
+public class LatestFrameExchanger<T> {
+    private final AtomicReference<T> slot = new AtomicReference<>();
+    @Nullable
+    private volatile Thread waiter;
+    private volatile boolean closed;
+
+    private final AtomicLong published = new AtomicLong();
+    private final AtomicLong consumed = new AtomicLong();
+    private final AtomicLong overwritten = new AtomicLong();
+
+    /**
+     * 发布最新值。返回需要由调用方处理的值：被覆盖的旧值，或已关闭时被拒绝的value本身；没有则返回null。
+     */
+    @Nullable
+    public T publish(@NonNull T value) {
+        if (closed) {
+            return value;
+        }
+        published.incrementAndGet();
+        T previous = slot.getAndSet(value);
+        if (previous != null) {
+            overwritten.incrementAndGet();
+        }
+        Thread thread = waiter;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+        }
+        return previous;
+    }
+
+    /**
+     * 取走最新值，槽为空时等待。已关闭或当前线程被中断时返回null（不清除中断状态）。
+     */
+    @Nullable
+    public T take() {
+        Thread current = Thread.currentThread();
+        while (true) {
+            T value = slot.getAndSet(null);
+            if (value != null) {
+                consumed.incrementAndGet();
+                return value;
+            }
+            if (closed || current.isInterrupted()) {
+                return null;
+            }
+            // 先登记再检查，保证与publish之间不会丢失唤醒
+            waiter = current;
+            if (slot.get() == null && !closed && !current.isInterrupted()) {
+                LockSupport.park(this);
+            }
+            waiter = null;
+        }
+    }
+
+    /**
+     * 取走最新值，不等待
+     */
+    @Nullable
+    public T poll() {
+        T value = slot.getAndSet(null);
+        if (value != null) {
+            consumed.incrementAndGet();
+        }
+        return value;
+    }
+
+    /** 重新开放，用于重新开始处理 */
+    public void open() {
+        closed = false;
+    }
+
+    /**
+     * 关闭并唤醒等待的消费者。返回槽中尚未取走的值，由调用方处理。
+     */
+    @Nullable
+    public T close() {
+        closed = true;
+        T pending = slot.getAndSet(null);
+        Thread thread = waiter;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+        }
+        return pending;
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    public long getPublished() {
+        return published.get();
+    }
+
+    public long getConsumed() {
+        return consumed.get();
+    }
+
+    public long getOverwritten() {
+        return overwritten.get();
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return "LatestFrameExchanger{published=" + published.get()
+                + ", consumed=" + consumed.get()
+                + ", overwritten=" + overwritten.get() + "}";
+    }
+}
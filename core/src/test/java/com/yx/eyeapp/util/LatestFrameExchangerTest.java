@@ -0,0 +1,163 @@
+package com.yx.eyeapp.util;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class LatestFrameExchangerTest {
+
+    @Test
+    public void publish_returnsOverwrittenValue() {
+        LatestFrameExchanger<Integer> exchanger = new LatestFrameExchanger<>();
+        assertNull(exchanger.publish(1));
+        assertEquals(Integer.valueOf(1), exchanger.publish(2));
+        assertEquals(Integer.valueOf(2), exchanger.take());
+        assertEquals(2, exchanger.getPublished());
+        assertEquals(1, exchanger.getConsumed());
+        assertEquals(1, exchanger.getOverwritten());
+    }
+
+    @Test
+    public void closed_rejectsAndReturnsPending() {
+        LatestFrameExchanger<Integer> exchanger = new LatestFrameExchanger<>();
+        exchanger.publish(1);
+        assertEquals(Integer.valueOf(1), exchanger.close());
+        assertEquals(Integer.valueOf(2), exchanger.publish(2));
+        assertNull(exchanger.take());
+
+        exchanger.open();
+        assertNull(exchanger.publish(3));
+        assertEquals(Integer.valueOf(3), exchanger.take());
+    }
+
+    @Test(timeout = 5000)
+    public void close_wakesWaitingConsumer() throws Exception {
+        LatestFrameExchanger<Integer> exchanger = new LatestFrameExchanger<>();
+        CountDownLatch done = new CountDownLatch(1);
+        Thread consumer = new Thread(() -> {
+            assertNull(exchanger.take());
+            done.countDown();
+        });
+        consumer.start();
+        Thread.sleep(50);
+        exchanger.close();
+        assertTrue(done.await(2, TimeUnit.SECONDS));
+    }
+
+    @Test(timeout = 5000)
+    public void interrupt_wakesWaitingConsumer() throws Exception {
+        LatestFrameExchanger<Integer> exchanger = new LatestFrameExchanger<>();
+        AtomicReference<Integer> result = new AtomicReference<>(-1);
+        Thread consumer = new Thread(() -> result.set(exchanger.take()));
+        consumer.start();
+        Thread.sleep(50);
+        consumer.interrupt();
+        consumer.join(2000);
+        assertFalse(consumer.isAlive());
+        assertNull(result.get());
+    }
+
+    /**
+     * 多个生产者高速发布，消费者不断取走。每个值要么被消费要么被覆盖，
+     * 并且生产者停止后消费者一定能拿到最后发布的值（没有丢失唤醒）。
+     */
+    @Test(timeout = 30000)
+    public void stress_noLostWakeupsAndNoLostValues() throws Exception {
+        final int producers = 4;
+        final int perProducer = 200_000;
+        for (int round = 0; round < 3; round++) {
+            LatestFrameExchanger<Long> exchanger = new LatestFrameExchanger<>();
+            AtomicLong received = new AtomicLong();
+            AtomicLong returnedToProducers = new AtomicLong();
+            AtomicLong sentinelSeen = new AtomicLong();
+
+            Thread consumer = new Thread(() -> {
+                Long value;
+                while ((value = exchanger.take()) != null) {
+                    received.incrementAndGet();
+                    if (value == Long.MAX_VALUE) {
+                        sentinelSeen.incrementAndGet();
+                    }
+                }
+            });
+            consumer.start();
+
+            Thread[] threads = new Thread[producers];
+            CountDownLatch start = new CountDownLatch(1);
+            for (int p = 0; p < producers; p++) {
+                final long base = (long) p * perProducer;
+                threads[p] = new Thread(() -> {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int i = 0; i < perProducer; i++) {
+                        if (exchanger.publish(base + i) != null) {
+                            returnedToProducers.incrementAndGet();
+                        }
+                        if ((i & 1023) == 0) {
+                            Thread.yield();
+                        }
+                    }
+                });
+                threads[p].start();
+            }
+            start.countDown();
+            for (Thread thread : threads) {
+                thread.join();
+            }
+
+            // 最后一个值必须被消费者拿到
+            if (exchanger.publish(Long.MAX_VALUE) != null) {
+                returnedToProducers.incrementAndGet();
+            }
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (sentinelSeen.get() == 0 && System.nanoTime() < deadline) {
+                Thread.sleep(1);
+            }
+            assertEquals("last value was not delivered", 1, sentinelSeen.get());
+
+            assertNull(exchanger.close());
+            consumer.join(2000);
+            assertFalse(consumer.isAlive());
+
+            long total = (long) producers * perProducer + 1;
+            assertEquals(total, exchanger.getPublished());
+            assertEquals(received.get(), exchanger.getConsumed());
+            assertEquals(returnedToProducers.get(), exchanger.getOverwritten());
+            assertEquals(total, exchanger.getConsumed() + exchanger.getOverwritten());
+        }
+    }
+
+    /** 慢生产者：每个值都要唤醒挂起的消费者 */
+    @Test(timeout = 30000)
+    public void stress_pingPong() throws Exception {
+        LatestFrameExchanger<Integer> exchanger = new LatestFrameExchanger<>();
+        final int count = 20_000;
+        AtomicLong received = new AtomicLong();
+        Thread consumer = new Thread(() -> {
+            while (exchanger.take() != null) {
+                received.incrementAndGet();
+            }
+        });
+        consumer.start();
+        for (int i = 0; i < count; i++) {
+            exchanger.publish(i);
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+            while (exchanger.getConsumed() + exchanger.getOverwritten() <= i) {
+                assertTrue("consumer missed a wakeup at " + i, System.nanoTime() < deadline);
+                Thread.yield();
+            }
+        }
+        exchanger.close();
+        consumer.join(2000);
+        assertEquals(count, exchanger.getConsumed() + exchanger.getOverwritten());
+        assertEquals(received.get(), exchanger.getConsumed());
+    }
+}
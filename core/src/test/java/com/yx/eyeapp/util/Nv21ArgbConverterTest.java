@@ -0,0 +1,152 @@
+package com.yx.eyeapp.util;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * 与原来的转换结果比较：YuvImage.compressToJpeg使用的BT.601全范围公式，
+ * 加上rotateBitmap中Matrix先postRotate再postScale(-1, 1)、createBitmap平移到原点的几何变换。
+ * 原实现的JPEG压缩有损，这里用浮点公式作为无损的参考值。
+ */
+public class Nv21ArgbConverterTest {
+    private static final int WIDTH = 40;
+    private static final int HEIGHT = 30;
+
+    private static byte[] randomNV21(int width, int height, long seed) {
+        byte[] nv21 = new byte[width * height * 3 / 2];
+        new Random(seed).nextBytes(nv21);
+        return nv21;
+    }
+
+    /** 参考实现：浮点公式转换单个像素 */
+    private static int referencePixel(byte[] nv21, int width, int height, int x, int y) {
+        int luma = nv21[y * width + x] & 0xff;
+        int uvIndex = width * height + (y / 2) * width + (x / 2) * 2;
+        int v = (nv21[uvIndex] & 0xff) - 128;
+        int u = (nv21[uvIndex + 1] & 0xff) - 128;
+        int r = clamp(Math.round(luma + 1.402f * v));
+        int g = clamp(Math.round(luma - 0.344136f * u - 0.714136f * v));
+        int b = clamp(Math.round(luma + 1.772f * u));
+        return 0xff000000 | r << 16 | g << 8 | b;
+    }
+
+    private static int clamp(int value) {
+        return Math.max(0, Math.min(255, value));
+    }
+
+    /**
+     * 参考实现：按Matrix的语义变换像素中心，再像createBitmap一样把变换后的边界平移到原点。
+     */
+    private static int[] reference(byte[] nv21, int width, int height, int rotation, boolean mirror) {
+        double radians = Math.toRadians(rotation);
+        double cos = Math.round(Math.cos(radians));
+        double sin = Math.round(Math.sin(radians));
+        double sx = mirror ? -1 : 1;
+        // 变换后的边界
+        double minX = Double.MAX_VALUE;
+        double minY = Double.MAX_VALUE;
+        double[][] corners = {{0, 0}, {width, 0}, {0, height}, {width, height}};
+        for (double[] c : corners) {
+            minX = Math.min(minX, sx * (c[0] * cos - c[1] * sin));
+            minY = Math.min(minY, c[0] * sin + c[1] * cos);
+        }
+        int outWidth = rotation % 180 == 0 ? width : height;
+        int outHeight = rotation % 180 == 0 ? height : width;
+        int[] out = new int[outWidth * outHeight];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                double px = x + 0.5;
+                double py = y + 0.5;
+                double tx = sx * (px * cos - py * sin) - minX;
+                double ty = (px * sin + py * cos) - minY;
+                out[(int) Math.floor(ty) * outWidth + (int) Math.floor(tx)] =
+                        referencePixel(nv21, width, height, x, y);
+            }
+        }
+        return out;
+    }
+
+    private static void assertClose(int[] expected, int[] actual, int length) {
+        for (int i = 0; i < length; i++) {
+            for (int shift = 0; shift <= 16; shift += 8) {
+                int e = (expected[i] >> shift) & 0xff;
+                int a = (actual[i] >> shift) & 0xff;
+                if (Math.abs(e - a) > 1) {
+                    fail("pixel " + i + " channel " + shift + ": expected " + e + " but was " + a);
+                }
+            }
+            assertEquals(0xff, actual[i] >>> 24);
+        }
+    }
+
+    private static void assertMatchesReference(int rotation, boolean mirror, boolean direct) {
+        byte[] nv21 = randomNV21(WIDTH, HEIGHT, rotation * 2 + (mirror ? 1 : 0));
+        ByteBuffer buffer;
+        if (direct) {
+            buffer = ByteBuffer.allocateDirect(nv21.length);
+            buffer.put(nv21);
+            buffer.flip();
+        } else {
+            buffer = ByteBuffer.wrap(nv21);
+        }
+        int[] expected = reference(nv21, WIDTH, HEIGHT, rotation, mirror);
+        int[] actual = new Nv21ArgbConverter().convert(buffer, WIDTH, HEIGHT, rotation, mirror);
+        assertClose(expected, actual, WIDTH * HEIGHT);
+    }
+
+    @Test
+    public void allRotationsAndMirrors_matchReference() {
+        for (int rotation = 0; rotation < 360; rotation += 90) {
+            assertMatchesReference(rotation, false, true);
+            assertMatchesReference(rotation, true, true);
+            assertMatchesReference(rotation, true, false);
+        }
+    }
+
+    @Test
+    public void outputSize_isTransposedFor90And270() {
+        assertEquals(HEIGHT, Nv21ArgbConverter.getOutputWidth(WIDTH, HEIGHT, 270));
+        assertEquals(WIDTH, Nv21ArgbConverter.getOutputHeight(WIDTH, HEIGHT, 270));
+        assertEquals(WIDTH, Nv21ArgbConverter.getOutputWidth(WIDTH, HEIGHT, 180));
+        assertEquals(WIDTH, Nv21ArgbConverter.getOutputWidth(WIDTH, HEIGHT, -360));
+    }
+
+    @Test
+    public void knownColors() {
+        // 全白、全黑与纯色度偏移的像素
+        byte[] nv21 = new byte[2 * 2 * 3 / 2];
+        nv21[0] = (byte) 255;
+        nv21[1] = (byte) 255;
+        nv21[2] = 0;
+        nv21[3] = 0;
+        nv21[4] = (byte) 128;
+        nv21[5] = (byte) 128;
+        int[] pixels = new Nv21ArgbConverter().convert(ByteBuffer.wrap(nv21), 2, 2, 0, false);
+        assertEquals(0xffffffff, pixels[0]);
+        assertEquals(0xffffffff, pixels[1]);
+        assertEquals(0xff000000, pixels[2]);
+        assertEquals(0xff000000, pixels[3]);
+    }
+
+    @Test
+    public void parallelConversion_matchesSerial() {
+        byte[] nv21 = randomNV21(WIDTH, HEIGHT, 42);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(nv21.length);
+        buffer.put(nv21);
+        buffer.flip();
+        int[] serial = new Nv21ArgbConverter().convert(buffer, WIDTH, HEIGHT, 270, true).clone();
+
+        Nv21ArgbConverter parallel = new Nv21ArgbConverter();
+        parallel.setParallelism(4, 0);
+        int[] actual = parallel.convert(buffer, WIDTH, HEIGHT, 270, true);
+        parallel.release();
+
+        for (int i = 0; i < WIDTH * HEIGHT; i++) {
+            assertEquals(serial[i], actual[i]);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.yx.eyeapp.util;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+public class Nv21CropperTest {
+
+    /** 每个像素的值由坐标决定，便于检查裁剪结果 */
+    private static ByteBuffer pattern(int width, int height) {
+        ByteBuffer nv21 = ByteBuffer.allocateDirect(width * height * 3 / 2);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                nv21.put((byte) (x * 7 + y * 13));
+            }
+        }
+        for (int y = 0; y < height / 2; y++) {
+            for (int x = 0; x < width; x++) {
+                nv21.put((byte) (x * 3 + y * 5 + 1));
+            }
+        }
+        nv21.flip();
+        return nv21;
+    }
+
+    @Test
+    public void crop_matchesSourcePixels() {
+        int width = 40;
+        int height = 30;
+        ByteBuffer src = pattern(width, height);
+        ByteBuffer dst = ByteBuffer.allocateDirect(Nv21Cropper.getCroppedSize(width, height));
+        int left = 6;
+        int top = 4;
+        int cw = 20;
+        int ch = 12;
+        Nv21Cropper.crop(src, width, height, left, top, cw, ch, dst);
+
+        assertEquals(0, src.position());
+        assertEquals(0, dst.position());
+        assertEquals(Nv21Cropper.getCroppedSize(cw, ch), dst.limit());
+        for (int y = 0; y < ch; y++) {
+            for (int x = 0; x < cw; x++) {
+                assertEquals(src.get((top + y) * width + left + x), dst.get(y * cw + x));
+            }
+        }
+        for (int y = 0; y < ch / 2; y++) {
+            for (int x = 0; x < cw; x++) {
+                assertEquals(src.get(width * height + (top / 2 + y) * width + left + x),
+                        dst.get(cw * ch + y * cw + x));
+            }
+        }
+    }
+
+    @Test
+    public void crop_fullFrameIsIdentity() {
+        ByteBuffer src = pattern(16, 8);
+        ByteBuffer dst = ByteBuffer.allocate(src.capacity());
+        Nv21Cropper.crop(src, 16, 8, 0, 0, 16, 8, dst);
+        assertEquals(src, dst);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void crop_rejectsOddOffset() {
+        ByteBuffer src = pattern(16, 8);
+        Nv21Cropper.crop(src, 16, 8, 1, 0, 8, 4, ByteBuffer.allocate(src.capacity()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void crop_rejectsOutOfBounds() {
+        ByteBuffer src = pattern(16, 8);
+        Nv21Cropper.crop(src, 16, 8, 10, 0, 8, 4, ByteBuffer.allocate(src.capacity()));
+    }
+}
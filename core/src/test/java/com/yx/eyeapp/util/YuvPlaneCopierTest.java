@@ -0,0 +1,246 @@
+package com.yx.eyeapp.util;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * 用合成的YUV_420_888平面验证各种布局拷贝为NV21的结果。
+ */
+public class YuvPlaneCopierTest {
+    private static final int WIDTH = 64;
+    private static final int HEIGHT = 48;
+
+    /** 参考NV21帧 */
+    private static byte[] referenceNV21(int width, int height, long seed) {
+        byte[] nv21 = new byte[width * height * 3 / 2];
+        new Random(seed).nextBytes(nv21);
+        return nv21;
+    }
+
+    private static byte u(byte[] nv21, int width, int height, int row, int col) {
+        return nv21[width * height + row * width + col * 2 + 1];
+    }
+
+    private static byte v(byte[] nv21, int width, int height, int row, int col) {
+        return nv21[width * height + row * width + col * 2];
+    }
+
+    private static ByteBuffer yPlane(byte[] nv21, int width, int height, int rowStride,
+                                     boolean direct) {
+        ByteBuffer y = allocate(rowStride * (height - 1) + width, direct);
+        for (int row = 0; row < height; row++) {
+            for (int col = 0; col < width; col++) {
+                y.put(row * rowStride + col, nv21[row * width + col]);
+            }
+        }
+        return y;
+    }
+
+    /**
+     * 模拟交错的色度平面：两个平面共用一块内存，vFirst为true时V在前（NV21），否则U在前（NV12）。
+     * 返回{U, V}。
+     */
+    private static ByteBuffer[] semiPlanar(byte[] nv21, int width, int height, int rowStride,
+                                           boolean vFirst, boolean direct) {
+        int chromaHeight = height / 2;
+        int chromaWidth = width / 2;
+        int size = rowStride * (chromaHeight - 1) + width;
+        ByteBuffer memory = allocate(size, direct);
+        for (int row = 0; row < chromaHeight; row++) {
+            for (int col = 0; col < chromaWidth; col++) {
+                int pos = row * rowStride + col * 2;
+                byte first = vFirst ? v(nv21, width, height, row, col) : u(nv21, width, height, row, col);
+                byte second = vFirst ? u(nv21, width, height, row, col) : v(nv21, width, height, row, col);
+                memory.put(pos, first);
+                memory.put(pos + 1, second);
+            }
+        }
+        ByteBuffer head = memory.duplicate();
+        head.limit(size - 1);
+        ByteBuffer shifted = memory.duplicate();
+        shifted.position(1);
+        ByteBuffer tail = shifted.slice();
+        return vFirst ? new ByteBuffer[] {tail, head.slice()} : new ByteBuffer[] {head.slice(), tail};
+    }
+
+    /** 模拟独立的色度平面，返回{U, V} */
+    private static ByteBuffer[] planar(byte[] nv21, int width, int height, int rowStride,
+                                       int pixelStride, boolean direct) {
+        int chromaHeight = height / 2;
+        int chromaWidth = width / 2;
+        int size = rowStride * (chromaHeight - 1) + (chromaWidth - 1) * pixelStride + 1;
+        ByteBuffer u = allocate(size, direct);
+        ByteBuffer v = allocate(size, direct);
+        for (int row = 0; row < chromaHeight; row++) {
+            for (int col = 0; col < chromaWidth; col++) {
+                int pos = row * rowStride + col * pixelStride;
+                u.put(pos, u(nv21, width, height, row, col));
+                v.put(pos, v(nv21, width, height, row, col));
+            }
+        }
+        return new ByteBuffer[] {u, v};
+    }
+
+    private static ByteBuffer allocate(int size, boolean direct) {
+        return direct ? ByteBuffer.allocateDirect(size) : ByteBuffer.allocate(size);
+    }
+
+    private static byte[] toArray(ByteBuffer buffer) {
+        byte[] out = new byte[buffer.remaining()];
+        buffer.duplicate().get(out);
+        return out;
+    }
+
+    private static void assertSemiPlanar(boolean vFirst, int rowStride, boolean direct) {
+        byte[] expected = referenceNV21(WIDTH, HEIGHT, rowStride);
+        ByteBuffer y = yPlane(expected, WIDTH, HEIGHT, rowStride, direct);
+        ByteBuffer[] uv = semiPlanar(expected, WIDTH, HEIGHT, rowStride, vFirst, direct);
+        YuvPlaneCopier copier = new YuvPlaneCopier();
+        ByteBuffer out = ByteBuffer.allocateDirect(expected.length);
+
+        copier.copyToNV21(y, rowStride, uv[0], uv[1], rowStride, 2, WIDTH, HEIGHT, out);
+
+        assertEquals(vFirst ? YuvPlaneCopier.Layout.NV21 : YuvPlaneCopier.Layout.NV12,
+                copier.getLayout());
+        assertEquals(rowStride > WIDTH, copier.isPaddedRows());
+        assertArrayEquals(expected, toArray(out));
+    }
+
+    @Test
+    public void nv21_packed() {
+        assertSemiPlanar(true, WIDTH, true);
+    }
+
+    @Test
+    public void nv21_paddedRows() {
+        assertSemiPlanar(true, WIDTH + 16, true);
+    }
+
+    @Test
+    public void nv12_packed() {
+        assertSemiPlanar(false, WIDTH, true);
+    }
+
+    @Test
+    public void nv12_paddedRows_heapBuffers() {
+        assertSemiPlanar(false, WIDTH + 16, false);
+    }
+
+    @Test
+    public void i420_paddedRows() {
+        byte[] expected = referenceNV21(WIDTH, HEIGHT, 7);
+        int rowStride = WIDTH + 8;
+        int chromaRowStride = WIDTH / 2 + 8;
+        ByteBuffer y = yPlane(expected, WIDTH, HEIGHT, rowStride, true);
+        ByteBuffer[] uv = planar(expected, WIDTH, HEIGHT, chromaRowStride, 1, true);
+        YuvPlaneCopier copier = new YuvPlaneCopier();
+        ByteBuffer out = ByteBuffer.allocateDirect(expected.length);
+
+        copier.copyToNV21(y, rowStride, uv[0], uv[1], chromaRowStride, 1, WIDTH, HEIGHT, out);
+
+        assertEquals(YuvPlaneCopier.Layout.I420, copier.getLayout());
+        assertArrayEquals(expected, toArray(out));
+    }
+
+    @Test
+    public void yuvPlanes_sameAsBuffers() {
+        byte[] expected = referenceNV21(WIDTH, HEIGHT, 9);
+        int rowStride = WIDTH + 16;
+        ByteBuffer y = yPlane(expected, WIDTH, HEIGHT, rowStride, true);
+        ByteBuffer[] uv = semiPlanar(expected, WIDTH, HEIGHT, rowStride, true, true);
+        YuvPlane[] planes = {
+                plane(y, rowStride, 1), plane(uv[0], rowStride, 2), plane(uv[1], rowStride, 2)};
+        ByteBuffer out = ByteBuffer.allocateDirect(expected.length);
+
+        new YuvPlaneCopier().copyToNV21(planes, WIDTH, HEIGHT, out);
+
+        assertArrayEquals(expected, toArray(out));
+    }
+
+    private static YuvPlane plane(ByteBuffer buffer, int rowStride, int pixelStride) {
+        return new YuvPlane() {
+            @Override
+            public ByteBuffer getBuffer() {
+                return buffer;
+            }
+
+            @Override
+            public int getRowStride() {
+                return rowStride;
+            }
+
+            @Override
+            public int getPixelStride() {
+                return pixelStride;
+            }
+        };
+    }
+
+    @Test
+    public void separatePlanesWithPixelStride2_areGeneric() {
+        byte[] expected = referenceNV21(WIDTH, HEIGHT, 11);
+        ByteBuffer y = yPlane(expected, WIDTH, HEIGHT, WIDTH, true);
+        ByteBuffer[] uv = planar(expected, WIDTH, HEIGHT, WIDTH, 2, true);
+        YuvPlaneCopier copier = new YuvPlaneCopier();
+        ByteBuffer out = ByteBuffer.allocateDirect(expected.length);
+
+        copier.copyToNV21(y, WIDTH, uv[0], uv[1], WIDTH, 2, WIDTH, HEIGHT, out);
+
+        assertEquals(YuvPlaneCopier.Layout.GENERIC, copier.getLayout());
+        assertArrayEquals(expected, toArray(out));
+    }
+
+    @Test
+    public void layoutIsDetectedOncePerConfiguration() {
+        byte[] expected = referenceNV21(WIDTH, HEIGHT, 3);
+        ByteBuffer y = yPlane(expected, WIDTH, HEIGHT, WIDTH, true);
+        ByteBuffer[] uv = semiPlanar(expected, WIDTH, HEIGHT, WIDTH, true, true);
+        YuvPlaneCopier copier = new YuvPlaneCopier();
+        ByteBuffer out = ByteBuffer.allocateDirect(expected.length);
+
+        for (int i = 0; i < 5; i++) {
+            copier.copyToNV21(y, WIDTH, uv[0], uv[1], WIDTH, 2, WIDTH, HEIGHT, out);
+        }
+        assertEquals(1, copier.getDetections());
+
+        copier.copyToNV21(y, WIDTH, uv[0], uv[1], WIDTH, 2, WIDTH, HEIGHT - 2, out);
+        assertEquals(2, copier.getDetections());
+    }
+
+    @Test
+    public void uniformChroma_isNotCached() {
+        byte[] expected = referenceNV21(WIDTH, HEIGHT, 5);
+        for (int i = WIDTH * HEIGHT; i < expected.length; i++) {
+            expected[i] = (byte) 128;
+        }
+        ByteBuffer y = yPlane(expected, WIDTH, HEIGHT, WIDTH, true);
+        ByteBuffer[] uv = semiPlanar(expected, WIDTH, HEIGHT, WIDTH, true, true);
+        YuvPlaneCopier copier = new YuvPlaneCopier();
+        ByteBuffer out = ByteBuffer.allocateDirect(expected.length);
+
+        copier.copyToNV21(y, WIDTH, uv[0], uv[1], WIDTH, 2, WIDTH, HEIGHT, out);
+
+        assertNull(copier.getLayout());
+        assertArrayEquals(expected, toArray(out));
+    }
+
+    @Test
+    public void parallelCopy_matchesSerialCopy() {
+        byte[] expected = referenceNV21(WIDTH, HEIGHT, 13);
+        int rowStride = WIDTH + 16;
+        ByteBuffer y = yPlane(expected, WIDTH, HEIGHT, rowStride, true);
+        ByteBuffer[] uv = semiPlanar(expected, WIDTH, HEIGHT, rowStride, false, true);
+        YuvPlaneCopier copier = new YuvPlaneCopier();
+        copier.setParallelism(3, 0);
+        ByteBuffer out = ByteBuffer.allocateDirect(expected.length);
+
+        copier.copyToNV21(y, rowStride, uv[0], uv[1], rowStride, 2, WIDTH, HEIGHT, out);
+        copier.release();
+
+        assertArrayEquals(expected, toArray(out));
+    }
+}